@@ -16,7 +16,7 @@ public class AopConfig {
     @Value("${logging.level.ServicePerformance.override:${logging.level.ServicePerformance.default}}")
     private String loggingLevel;
 
-    @Pointcut("execution(* com.kapia.ocr.OCRService.processImage(..))")
+    @Pointcut("execution(* com.kapia.ocr.OCRService.processImage(..)) || execution(* com.kapia.ocr.OCRService.processImageBytes(..)) || execution(* com.kapia.ocr.OCRService.processRegions(..)) || execution(* com.kapia.ocr.OCRService.submitImage(..)) || execution(* com.kapia.ocr.OCRService.submitImageBytes(..)) || execution(* com.kapia.ocr.OCRService.submitImageBuffer(..)) || execution(* com.kapia.ocr.OCRService.submitRegions(..)) || execution(* com.kapia.ocr.OCRService.submitStructured(..))")
     public void monitorService() {
     }
 
@@ -9,6 +9,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StopWatch;
 
+import java.util.concurrent.CompletableFuture;
+
 @Aspect
 @Component
 public class ControllerLoggingAspect {
@@ -26,11 +28,18 @@ public class ControllerLoggingAspect {
 
         stopWatch.start();
         Object result = proceedingJoinPoint.proceed();
-        stopWatch.stop();
 
-        LOGGER.info("Execution time of " + className + "." + methodName + " :: " + stopWatch.getTotalTimeMillis() + " ms");
+        if (result instanceof CompletableFuture<?> future) {
+            return future.whenComplete((value, ex) -> logExecutionTime(stopWatch, className, methodName));
+        }
 
+        logExecutionTime(stopWatch, className, methodName);
         return result;
     }
 
+    private void logExecutionTime(StopWatch stopWatch, String className, String methodName) {
+        stopWatch.stop();
+        LOGGER.info("Execution time of " + className + "." + methodName + " :: " + stopWatch.getTotalTimeMillis() + " ms");
+    }
+
 }
@@ -0,0 +1,118 @@
+package com.kapia.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.kapia.util.HashingService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+/*
+
+    Results are keyed by the digest of the raw image bytes and the OCR configuration, so a hit can be served
+    before the image is decoded. The in-heap tier is bounded by the total size of the stored text,
+    the optional Redis tier shares results between nodes.
+
+ */
+
+@Component
+public class OCRResultCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OCRResultCache.class);
+
+    private static final String CACHE_NAME = "ocr.results";
+
+    private final boolean enabled;
+    private final HashingService hashingService;
+    private final Cache<String, String> cache;
+    private final RedisResultCache redisResultCache;
+
+    private final Counter redisHits;
+    private final Counter redisMisses;
+
+    @Autowired
+    public OCRResultCache(@Value("${ocr.cache.enabled:true}") boolean enabled,
+                          @Value("${ocr.cache.capacity.in.megabytes:32}") long capacityInMegabytes,
+                          HashingService hashingService,
+                          ObjectProvider<RedisResultCache> redisResultCache,
+                          MeterRegistry meterRegistry) {
+        this(enabled, capacityInMegabytes * 1024 * 1024, hashingService, redisResultCache.getIfAvailable(), meterRegistry);
+    }
+
+    public OCRResultCache(boolean enabled, long capacityInBytes, HashingService hashingService, MeterRegistry meterRegistry) {
+        this(enabled, capacityInBytes, hashingService, (RedisResultCache) null, meterRegistry);
+    }
+
+    public OCRResultCache(boolean enabled, long capacityInBytes, HashingService hashingService, RedisResultCache redisResultCache, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.hashingService = hashingService;
+        this.redisResultCache = redisResultCache;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(capacityInBytes)
+                .weigher((String key, String text) -> 2 * (key.length() + text.length()))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        this.redisHits = Counter.builder("ocr.results.redis.hits")
+                .description("OCR results found in Redis")
+                .register(meterRegistry);
+        this.redisMisses = Counter.builder("ocr.results.redis.misses")
+                .description("OCR results not found in Redis")
+                .register(meterRegistry);
+
+        LOGGER.info("OCR result cache enabled: " + enabled + ", shared in Redis: " + (redisResultCache != null));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String key(byte[] image, String configuration) {
+        return key(ByteBuffer.wrap(image), configuration);
+    }
+
+    public String key(ByteBuffer image, String configuration) {
+        return hashingService.hash(image) + ":" + hashingService.hash(configuration);
+    }
+
+    public Optional<String> get(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        String text = cache.getIfPresent(key);
+        if (text != null || redisResultCache == null) {
+            return Optional.ofNullable(text);
+        }
+
+        Optional<String> shared = redisResultCache.get(key);
+        if (shared.isPresent()) {
+            redisHits.increment();
+            cache.put(key, shared.get());
+        } else {
+            redisMisses.increment();
+        }
+        return shared;
+    }
+
+    public void put(String key, String text) {
+        if (!enabled || text == null) {
+            return;
+        }
+        cache.put(key, text);
+        if (redisResultCache != null) {
+            redisResultCache.put(key, text);
+        }
+    }
+
+}
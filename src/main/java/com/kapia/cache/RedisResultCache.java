@@ -0,0 +1,58 @@
+package com.kapia.cache;
+
+import io.lettuce.core.RedisException;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/*
+
+    Shared tier of the result cache, so that a result computed on one node can be served by the others.
+    Redis being unavailable must not fail the OCR request, so errors are logged and treated as misses.
+
+ */
+
+@Component
+@ConditionalOnProperty(name = "ocr.cache.redis.enabled", havingValue = "true")
+public class RedisResultCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisResultCache.class);
+
+    private static final String KEY_PREFIX = "ocr:result:";
+
+    private final RedisCommands<String, String> redisCommands;
+    private final long timeToLiveInSeconds;
+
+    @Autowired
+    public RedisResultCache(@Qualifier("redisCacheConnection") StatefulRedisConnection<String, String> redisCacheConnection,
+                            @Value("${ocr.cache.redis.ttl.in.minutes:60}") long timeToLiveInMinutes) {
+        this.redisCommands = redisCacheConnection.sync();
+        this.timeToLiveInSeconds = timeToLiveInMinutes * 60;
+    }
+
+    public Optional<String> get(String key) {
+        try {
+            return Optional.ofNullable(redisCommands.get(KEY_PREFIX + key));
+        } catch (RedisException e) {
+            LOGGER.warn("Could not read OCR result from Redis: " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public void put(String key, String text) {
+        try {
+            redisCommands.setex(KEY_PREFIX + key, timeToLiveInSeconds, text);
+        } catch (RedisException e) {
+            LOGGER.warn("Could not write OCR result to Redis: " + e.getMessage());
+        }
+    }
+
+}
@@ -1,9 +1,22 @@
 package com.kapia.exceptionhandling;
 
+import com.kapia.imaging.ImageTooLargeException;
+import com.kapia.imaging.InvalidPreprocessingException;
+import com.kapia.jobs.OCRJobController;
+import com.kapia.ocr.DocumentTooLargeException;
+import com.kapia.ocr.InvalidDeadlineException;
+import com.kapia.ocr.InvalidLanguageException;
+import com.kapia.ocr.InvalidOutputFormatException;
+import com.kapia.ocr.InvalidProfileException;
+import com.kapia.ocr.InvalidRegionException;
 import com.kapia.ocr.OCRController;
+import com.kapia.ocr.OCRTimeoutException;
+import com.kapia.ratelimiting.RateLimitExceededException;
 import net.sourceforge.tess4j.TesseractException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -12,8 +25,9 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
 import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
 
-@ControllerAdvice(assignableTypes = {OCRController.class})
+@ControllerAdvice(assignableTypes = {OCRController.class, OCRJobController.class})
 public class ResponseExceptionHandler extends ResponseEntityExceptionHandler {
 
     private final static Logger LOGGER = LoggerFactory.getLogger(ResponseExceptionHandler.class);
@@ -21,6 +35,10 @@ public class ResponseExceptionHandler extends ResponseEntityExceptionHandler {
     private final static String ERROR_PROCESSING_IMAGE = "Error processing the image";
     private final static String ERROR_READING_IMAGE = "Error during image reading";
     private final static String MULTIPART_FILE_CANNOT_BE_NULL = "MultipartFile cannot be null";
+    private final static String OCR_QUEUE_FULL = "Server is busy, try again later";
+
+    @Value("${ocr.executor.retry.after.in.seconds:5}")
+    private long retryAfterInSeconds;
 
     @ExceptionHandler(TesseractException.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -43,6 +61,59 @@ public class ResponseExceptionHandler extends ResponseEntityExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(MULTIPART_FILE_CANNOT_BE_NULL);
     }
 
+    @ExceptionHandler({InvalidRegionException.class, InvalidPreprocessingException.class, InvalidLanguageException.class, InvalidProfileException.class, InvalidOutputFormatException.class, InvalidDeadlineException.class})
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    protected ResponseEntity<Object> handleInvalidRequestParameterException(IllegalArgumentException ex) {
+        LOGGER.warn(ex.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
+    @ExceptionHandler({DocumentTooLargeException.class, ImageTooLargeException.class})
+    @ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+    protected ResponseEntity<Object> handleTooLargeException(RuntimeException ex) {
+        LOGGER.warn(ex.getMessage());
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(RateLimitExceededException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    protected ResponseEntity<Object> handleRateLimitExceededException(RateLimitExceededException ex) {
+        LOGGER.warn(ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(OCRTimeoutException.class)
+    @ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+    protected ResponseEntity<Object> handleOCRTimeoutException(OCRTimeoutException ex) {
+        LOGGER.warn(ex.getMessage());
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    protected ResponseEntity<Object> handleRejectedExecutionException(RejectedExecutionException ex) {
+        LOGGER.warn(OCR_QUEUE_FULL);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterInSeconds))
+                .body(OCR_QUEUE_FULL);
+    }
+
+    public static String getErrorMessage(Throwable ex) {
+        if (ex instanceof IOException) {
+            return ERROR_READING_IMAGE;
+        }
+        if (ex instanceof RejectedExecutionException) {
+            return OCR_QUEUE_FULL;
+        }
+        if (ex instanceof OCRTimeoutException || ex instanceof ImageTooLargeException) {
+            return ex.getMessage();
+        }
+        if (ex instanceof IllegalArgumentException) {
+            return MULTIPART_FILE_CANNOT_BE_NULL;
+        }
+        return ERROR_PROCESSING_IMAGE;
+    }
+
     public static String getErrorProcessingImage() {
         return ERROR_PROCESSING_IMAGE;
     }
@@ -55,4 +126,8 @@ public class ResponseExceptionHandler extends ResponseEntityExceptionHandler {
         return MULTIPART_FILE_CANNOT_BE_NULL;
     }
 
+    public static String getOcrQueueFull() {
+        return OCR_QUEUE_FULL;
+    }
+
 }
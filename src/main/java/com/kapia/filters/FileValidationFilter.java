@@ -4,15 +4,18 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import com.kapia.ocr.OCRRegion;
 import jakarta.servlet.http.Part;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 
 @Component
 public class FileValidationFilter extends OncePerRequestFilter {
@@ -21,13 +24,23 @@ public class FileValidationFilter extends OncePerRequestFilter {
 
     private static final String ACCEPTED_CONTENT_TYPES = "image/png,image/jpeg";
     private static final String ACCEPTED_EXTENSIONS = ".png,.jpeg,.jpg";
+    private static final String ACCEPTED_DOCUMENT_CONTENT_TYPES = "image/tiff,application/pdf";
+    private static final String ACCEPTED_DOCUMENT_EXTENSIONS = ".tif,.tiff,.pdf";
     private static final String ACCEPTED_REQUEST_CONTENT_TYPE = "multipart/form-data";
-    private static final String MULTIPART_FILE_NAME = "image";
+    private static final String MULTIPART_FILE_NAME = OCREndpoints.IMAGE_PART_NAME;
+    private static final String MULTIPART_DOCUMENT_NAME = OCREndpoints.DOCUMENT_PART_NAME;
+    private static final String REGIONS_PARAMETER_NAME = "regions";
+
+    @Value("${ocr.batch.max.images:20}")
+    private int maxBatchImages;
+
+    @Value("${ocr.regions.max:20}")
+    private int maxRegions;
 
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request,@NonNull HttpServletResponse response,@NonNull FilterChain filterChain) throws ServletException, IOException {
 
-        if (!request.getRequestURI().equals("/getOCR")) {
+        if (!OCREndpoints.isSubmission(request)) {
             filterChain.doFilter(request, response);
             return;
         }
@@ -44,7 +57,14 @@ public class FileValidationFilter extends OncePerRequestFilter {
 
     private void validateRequest(HttpServletRequest request) throws ValidationException, IOException, ServletException {
         validateContentType(request);
-        validateImagePart(request);
+        if (OCREndpoints.isBatch(request)) {
+            validateImageParts(request);
+        } else if (OCREndpoints.isDocument(request)) {
+            validateDocumentPart(request.getPart(MULTIPART_DOCUMENT_NAME));
+        } else {
+            validateImagePart(request.getPart(MULTIPART_FILE_NAME));
+            validateRegions(request.getParameter(REGIONS_PARAMETER_NAME));
+        }
     }
 
     private void validateContentType(HttpServletRequest request) throws ValidationException {
@@ -54,8 +74,20 @@ public class FileValidationFilter extends OncePerRequestFilter {
         }
     }
 
-    private void validateImagePart(HttpServletRequest request) throws ValidationException, IOException, ServletException {
-        Part image = request.getPart(MULTIPART_FILE_NAME);
+    private void validateImageParts(HttpServletRequest request) throws ValidationException, IOException, ServletException {
+        List<Part> images = OCREndpoints.getImageParts(request);
+        if (images.isEmpty()) {
+            throw new ValidationException(HttpServletResponse.SC_BAD_REQUEST, "Image is null or empty");
+        }
+        if (images.size() > maxBatchImages) {
+            throw new ValidationException(HttpServletResponse.SC_BAD_REQUEST, "Batch cannot contain more than " + maxBatchImages + " images");
+        }
+        for (Part image : images) {
+            validateImagePart(image);
+        }
+    }
+
+    private void validateImagePart(Part image) throws ValidationException {
         if (image == null || image.getSize() == 0) {
             throw new ValidationException(HttpServletResponse.SC_BAD_REQUEST, "Image is null or empty");
         }
@@ -71,8 +103,34 @@ public class FileValidationFilter extends OncePerRequestFilter {
         }
     }
 
+    private void validateRegions(String regions) throws ValidationException {
+        if (regions != null && regions.split(OCRRegion.REGION_SEPARATOR).length > maxRegions) {
+            throw new ValidationException(HttpServletResponse.SC_BAD_REQUEST, "Request cannot contain more than " + maxRegions + " regions");
+        }
+    }
+
+    private void validateDocumentPart(Part document) throws ValidationException {
+        if (document == null || document.getSize() == 0) {
+            throw new ValidationException(HttpServletResponse.SC_BAD_REQUEST, "Document is null or empty");
+        }
+
+        String fileName = document.getSubmittedFileName();
+        if (fileName == null || !hasExtension(fileName, ACCEPTED_DOCUMENT_EXTENSIONS)) {
+            throw new ValidationException(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE, "Document is not a TIFF or PDF file with proper extension");
+        }
+
+        String contentTypeOfDocument = document.getContentType();
+        if (contentTypeOfDocument == null || !ACCEPTED_DOCUMENT_CONTENT_TYPES.contains(contentTypeOfDocument)) {
+            throw new ValidationException(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE, "Document is not a TIFF or PDF file with proper content type");
+        }
+    }
+
     private boolean isValidImageExtension(String fileName) {
-        return Arrays.stream(ACCEPTED_EXTENSIONS.split(",")).anyMatch(fileName::endsWith);
+        return hasExtension(fileName, ACCEPTED_EXTENSIONS);
+    }
+
+    private boolean hasExtension(String fileName, String acceptedExtensions) {
+        return Arrays.stream(acceptedExtensions.split(",")).anyMatch(fileName::endsWith);
     }
 
     private static class ValidationException extends Exception {
@@ -0,0 +1,66 @@
+package com.kapia.filters;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.Part;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+final class OCREndpoints {
+
+    static final String IMAGE_PART_NAME = "image";
+    static final String DOCUMENT_PART_NAME = "document";
+
+    private static final String BATCH_ENDPOINT = "/getOCR/batch";
+    private static final String DOCUMENT_ENDPOINT = "/getOCR/document";
+
+    private static final Set<String> SUBMISSION_ENDPOINTS = Set.of(
+            "/getOCR",
+            BATCH_ENDPOINT,
+            DOCUMENT_ENDPOINT,
+            "/ocr/jobs"
+    );
+
+    private OCREndpoints() {
+    }
+
+    static boolean isSubmission(HttpServletRequest request) {
+        return SUBMISSION_ENDPOINTS.contains(request.getRequestURI());
+    }
+
+    static boolean isBatch(HttpServletRequest request) {
+        return BATCH_ENDPOINT.equals(request.getRequestURI());
+    }
+
+    static boolean isDocument(HttpServletRequest request) {
+        return DOCUMENT_ENDPOINT.equals(request.getRequestURI());
+    }
+
+    static List<Part> getImageParts(HttpServletRequest request) throws IOException, ServletException {
+        return request.getParts().stream()
+                .filter(part -> IMAGE_PART_NAME.equals(part.getName()))
+                .toList();
+    }
+
+    /*
+
+        A batch is charged one token per image. If the parts cannot be read, a single token is charged
+        and the request is rejected later by the file validation. A document is charged one token here
+        and the rest of its pages once the controller has counted them.
+
+     */
+
+    static long countImages(HttpServletRequest request) {
+        if (!isBatch(request)) {
+            return 1;
+        }
+        try {
+            return Math.max(1, getImageParts(request).size());
+        } catch (IOException | ServletException | IllegalStateException e) {
+            return 1;
+        }
+    }
+
+}
@@ -1,7 +1,10 @@
 package com.kapia.filters;
 
 import com.kapia.keys.KeyService;
+import com.kapia.ocr.OCRPriority;
+import com.kapia.ratelimiting.PricingPlan;
 import com.kapia.ratelimiting.RateLimitingService;
+import com.kapia.ratelimiting.TokenCharge;
 import com.kapia.util.HashingService;
 import com.kapia.util.IpResolverService;
 import jakarta.servlet.FilterChain;
@@ -45,31 +48,35 @@ public class RateLimitingFilter extends OncePerRequestFilter {
     @Override
     public void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain chain) throws IOException, ServletException {
 
-        if (!request.getRequestURI().equals("/getOCR")) {
+        if (!OCREndpoints.isSubmission(request)) {
             chain.doFilter(request, response);
             return;
         }
         if (hasPrivilegedRole(request)) {
             LOGGER.info("Resolved rate limiting for admin or superuser");
+            request.setAttribute(OCRPriority.REQUEST_ATTRIBUTE, OCRPriority.ADMIN);
             chain.doFilter(request, response);
             return;
         }
         if (hasValidKey(request)) {
             String key = hashingService.hashKey(extractApiKey(request));
             LOGGER.info("Trying to resolve limit for API key: " + key);
-            if (!canConsumeTokenWithKey(response, key)) {
+            if (!canConsumeTokensWithKey(response, key, OCREndpoints.countImages(request))) {
                 LOGGER.info("Over limit for API key: " + key);
                 return;
             }
             LOGGER.info("Resolved rate limiting for API key: " + key);
+            request.setAttribute(OCRPriority.REQUEST_ATTRIBUTE, OCRPriority.of(PricingPlan.resolvePlanFromKey(extractApiKey(request))));
+            request.setAttribute(TokenCharge.REQUEST_ATTRIBUTE, (TokenCharge) (tokens, chargedResponse) -> canConsumeTokensWithKey(chargedResponse, key, tokens));
         } else if (hasValidIp(ipResolverService.extractIpFromRequest(request))) {
             String ip = hashingService.hash(ipResolverService.extractIpFromRequestIfValid(request));
             LOGGER.info("Trying to resolve limit for IP address: " + ip);
-            if (!canConsumeTokenWithIp(response, ip)) {
+            if (!canConsumeTokensWithIp(response, ip, OCREndpoints.countImages(request))) {
                 LOGGER.info("Over limit for IP address: " + ip);
                 return;
             }
             LOGGER.info("Resolved rate limiting for IP address: " + ip);
+            request.setAttribute(TokenCharge.REQUEST_ATTRIBUTE, (TokenCharge) (tokens, chargedResponse) -> canConsumeTokensWithIp(chargedResponse, ip, tokens));
         } else {
             LOGGER.info("Request did not have a valid API key or IP address");
             response.setStatus(HttpStatus.UNAUTHORIZED.value());
@@ -106,12 +113,12 @@ public class RateLimitingFilter extends OncePerRequestFilter {
         return ipResolverService.isIpAddressValid(ip);
     }
 
-    private boolean canConsumeTokenWithKey(HttpServletResponse response, String key) {
-        return rateLimitingService.tryConsumeTokenWithKey(key, response);
+    private boolean canConsumeTokensWithKey(HttpServletResponse response, String key, long tokens) {
+        return rateLimitingService.tryConsumeTokensWithKey(key, tokens, response);
     }
 
-    private boolean canConsumeTokenWithIp(HttpServletResponse response, String ip) {
-        return rateLimitingService.tryConsumeTokenWithIp(ip, response);
+    private boolean canConsumeTokensWithIp(HttpServletResponse response, String ip, long tokens) {
+        return rateLimitingService.tryConsumeTokensWithIp(ip, tokens, response);
     }
 
 }
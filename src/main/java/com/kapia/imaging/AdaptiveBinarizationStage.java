@@ -0,0 +1,95 @@
+package com.kapia.imaging;
+
+import java.awt.image.BufferedImage;
+
+/*
+
+    Local binarization for unevenly lit photos: a pixel becomes black when it is darker than the mean
+    of the window around it by more than the given percentage (Bradley's method).
+    The window sums are kept per column and slid along every row, so only one int per column is needed
+    instead of an integral image of the whole picture.
+
+ */
+
+class AdaptiveBinarizationStage implements PreprocessingStage {
+
+    static final String NAME = "adaptive";
+
+    private final int radius;
+    private final int percentage;
+
+    AdaptiveBinarizationStage(int windowSize, int percentage) {
+        this.radius = Math.max(1, windowSize / 2);
+        this.percentage = percentage;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getFingerprint() {
+        return NAME + ":" + radius + ":" + percentage;
+    }
+
+    @Override
+    public BufferedImage apply(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        byte[] pixels = GrayImages.pixels(image);
+        byte[] out = ScratchBuffers.bytes(width * height);
+        int[] columnSums = ScratchBuffers.ints(width);
+
+        for (int x = 0; x < width; x++) {
+            columnSums[x] = 0;
+        }
+        for (int y = 0; y < Math.min(radius, height); y++) {
+            addRow(pixels, columnSums, y * width, width, 1);
+        }
+
+        for (int y = 0; y < height; y++) {
+            int bottom = y + radius;
+            int top = y - radius - 1;
+            if (bottom < height) {
+                addRow(pixels, columnSums, bottom * width, width, 1);
+            }
+            if (top >= 0) {
+                addRow(pixels, columnSums, top * width, width, -1);
+            }
+            int rows = Math.min(bottom, height - 1) - Math.max(y - radius, 0) + 1;
+            binarizeRow(pixels, out, columnSums, y * width, width, rows);
+        }
+
+        System.arraycopy(out, 0, pixels, 0, width * height);
+        return image;
+    }
+
+    private static void addRow(byte[] pixels, int[] columnSums, int offset, int width, int sign) {
+        for (int x = 0; x < width; x++) {
+            columnSums[x] += sign * (pixels[offset + x] & 0xff);
+        }
+    }
+
+    private void binarizeRow(byte[] pixels, byte[] out, int[] columnSums, int offset, int width, int rows) {
+        long windowSum = 0;
+        for (int x = 0; x < Math.min(radius, width); x++) {
+            windowSum += columnSums[x];
+        }
+        for (int x = 0; x < width; x++) {
+            int right = x + radius;
+            int left = x - radius - 1;
+            if (right < width) {
+                windowSum += columnSums[right];
+            }
+            if (left >= 0) {
+                windowSum -= columnSums[left];
+            }
+            int columns = Math.min(right, width - 1) - Math.max(x - radius, 0) + 1;
+            long count = (long) rows * columns;
+            boolean dark = (pixels[offset + x] & 0xff) * count * 100 <= windowSum * (100 - percentage);
+            out[offset + x] = dark ? 0 : (byte) 255;
+        }
+    }
+
+}
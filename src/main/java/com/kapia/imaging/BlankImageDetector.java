@@ -0,0 +1,169 @@
+package com.kapia.imaging;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.concurrent.TimeUnit;
+
+/*
+
+    Empty scanner pages, separator sheets and black frames contain no text, yet a recognition of them
+    takes as long as one of a full page. Every stroke of a letter crosses the rows above and below its
+    middle, so text shows up as many sharp steps in brightness along rows. Evenly spaced rows of the image
+    are read at a fixed number of columns, at most a quarter of a million pixels in total, and the image
+    counts as blank when fewer steps than configured are found. Dust and JPEG noise stay below the threshold,
+    and the scan stops as soon as enough steps are seen, so pages with text are recognized almost at once.
+
+    The pixels are read straight from the backing arrays of the common image types without converting
+    the image. Other types fall back to reading one pixel at a time.
+
+ */
+
+@Component
+public class BlankImageDetector {
+
+    private static final int MAX_SAMPLES = 1 << 18;
+    private static final int MAX_ROW_SAMPLES = 2048;
+
+    private final boolean enabled;
+    private final int minEdges;
+    private final int edgeContrast;
+
+    private final Timer duration;
+    private final Counter blankImages;
+
+    @Autowired
+    public BlankImageDetector(@Value("${ocr.blank.enabled:true}") boolean enabled,
+                              @Value("${ocr.blank.min.edges:16}") int minEdges,
+                              @Value("${ocr.blank.edge.contrast:48}") int edgeContrast,
+                              MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.minEdges = Math.max(1, minEdges);
+        this.edgeContrast = Math.max(1, edgeContrast);
+
+        this.duration = Timer.builder("ocr.blank.analysis")
+                .description("Time spent checking images for content")
+                .register(meterRegistry);
+        this.blankImages = Counter.builder("ocr.blank.images")
+                .description("Blank images answered without a recognition")
+                .register(meterRegistry);
+    }
+
+    /*
+
+        Settings that decide which images are answered with an empty text, for the cache key.
+
+     */
+
+    public String fingerprint() {
+        return enabled ? "|blank=" + minEdges + ":" + edgeContrast : "";
+    }
+
+    public boolean isBlank(BufferedImage image) {
+        if (!enabled) {
+            return false;
+        }
+        long start = System.nanoTime();
+        boolean blank = countEdges(image, edgeContrast, minEdges) < minEdges;
+        duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (blank) {
+            blankImages.increment();
+        }
+        return blank;
+    }
+
+    static int countEdges(BufferedImage image, int edgeContrast, int limit) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int columnStep = Math.max(1, (width + MAX_ROW_SAMPLES - 1) / MAX_ROW_SAMPLES);
+        int columns = (width + columnStep - 1) / columnStep;
+        int rowStep = Math.max(1, height / Math.max(1, MAX_SAMPLES / columns));
+
+        RowReader reader = RowReader.of(image);
+        int[] row = new int[columns];
+        int edges = 0;
+        for (int y = rowStep / 2; y < height; y += rowStep) {
+            reader.read(y, columnStep, row);
+            for (int i = 1; i < columns; i++) {
+                if (Math.abs(row[i] - row[i - 1]) >= edgeContrast && ++edges >= limit) {
+                    return edges;
+                }
+            }
+        }
+        return edges;
+    }
+
+    private static int luminance(int red, int green, int blue) {
+        return (299 * red + 587 * green + 114 * blue) / 1000;
+    }
+
+    @FunctionalInterface
+    private interface RowReader {
+
+        void read(int y, int columnStep, int[] row);
+
+        static RowReader of(BufferedImage image) {
+            Raster raster = image.getRaster();
+            boolean untranslated = raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0
+                    && raster.getDataBuffer().getOffset() == 0;
+
+            if (untranslated && raster.getDataBuffer() instanceof DataBufferByte buffer
+                    && raster.getSampleModel() instanceof PixelInterleavedSampleModel sampleModel
+                    && image.getColorModel() instanceof ComponentColorModel colorModel
+                    && (colorModel.getNumColorComponents() == 1 || colorModel.getNumColorComponents() == 3)) {
+                byte[] pixels = buffer.getData();
+                int pixelStride = sampleModel.getPixelStride();
+                int scanlineStride = sampleModel.getScanlineStride();
+                int[] offsets = sampleModel.getBandOffsets();
+                if (colorModel.getNumColorComponents() == 1) {
+                    return (y, columnStep, row) -> {
+                        int index = y * scanlineStride + offsets[0];
+                        for (int i = 0; i < row.length; i++, index += columnStep * pixelStride) {
+                            row[i] = pixels[index] & 0xff;
+                        }
+                    };
+                }
+                return (y, columnStep, row) -> {
+                    int index = y * scanlineStride;
+                    for (int i = 0; i < row.length; i++, index += columnStep * pixelStride) {
+                        row[i] = luminance(pixels[index + offsets[0]] & 0xff, pixels[index + offsets[1]] & 0xff, pixels[index + offsets[2]] & 0xff);
+                    }
+                };
+            }
+
+            int type = image.getType();
+            if (untranslated && raster.getDataBuffer() instanceof DataBufferInt buffer
+                    && raster.getSampleModel() instanceof SinglePixelPackedSampleModel sampleModel
+                    && (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)) {
+                int[] pixels = buffer.getData();
+                int scanlineStride = sampleModel.getScanlineStride();
+                return (y, columnStep, row) -> {
+                    int index = y * scanlineStride;
+                    for (int i = 0; i < row.length; i++, index += columnStep) {
+                        int pixel = pixels[index];
+                        row[i] = luminance((pixel >> 16) & 0xff, (pixel >> 8) & 0xff, pixel & 0xff);
+                    }
+                };
+            }
+
+            return (y, columnStep, row) -> {
+                for (int i = 0; i < row.length; i++) {
+                    int pixel = image.getRGB(i * columnStep, y);
+                    row[i] = luminance((pixel >> 16) & 0xff, (pixel >> 8) & 0xff, pixel & 0xff);
+                }
+            };
+        }
+    }
+
+}
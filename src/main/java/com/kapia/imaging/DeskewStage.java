@@ -0,0 +1,143 @@
+package com.kapia.imaging;
+
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/*
+
+    Estimates the skew of the text lines with projection profiles: a sample of the dark pixels is projected
+    onto the vertical axis for every candidate angle, and the angle whose profile has the sharpest peaks,
+    measured as the sum of squared bin counts, is the one at which the lines are horizontal.
+    The image is then rotated back around its center.
+
+ */
+
+class DeskewStage implements PreprocessingStage {
+
+    static final String NAME = "deskew";
+
+    private static final int MAX_SAMPLES = 50_000;
+    private static final double ANGLE_STEP_IN_DEGREES = 0.25;
+    private static final double MIN_ANGLE_IN_DEGREES = 0.25;
+    private static final byte WHITE = (byte) 255;
+
+    private final double maxAngleInDegrees;
+
+    DeskewStage(double maxAngleInDegrees) {
+        this.maxAngleInDegrees = maxAngleInDegrees;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getFingerprint() {
+        return NAME + ":" + maxAngleInDegrees;
+    }
+
+    @Override
+    public BufferedImage apply(BufferedImage image) {
+        return applyWithTransform(image).image();
+    }
+
+    /*
+
+        Every pixel of the result is read from the given image rotated by the angle around the center,
+        so the same rotation maps coordinates of the result back to the given image.
+
+     */
+
+    @Override
+    public PreprocessedImage applyWithTransform(BufferedImage image) {
+        double angle = estimateAngle(image);
+        if (Math.abs(angle) < MIN_ANGLE_IN_DEGREES) {
+            return PreprocessedImage.unchanged(image);
+        }
+        double radians = Math.toRadians(angle);
+        AffineTransform toSource = AffineTransform.getRotateInstance(radians, image.getWidth() / 2.0, image.getHeight() / 2.0);
+        return new PreprocessedImage(rotate(image, radians), toSource);
+    }
+
+    double estimateAngle(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        byte[] pixels = GrayImages.pixels(image);
+        int threshold = OtsuBinarizationStage.threshold(pixels);
+        int step = Math.max(1, (int) Math.sqrt((double) width * height / MAX_SAMPLES));
+
+        int[] points = ScratchBuffers.ints(2 * ((width / step + 1) * (height / step + 1)));
+        int pointCount = 0;
+        for (int y = 0; y < height; y += step) {
+            int row = y * width;
+            for (int x = 0; x < width; x += step) {
+                if ((pixels[row + x] & 0xff) <= threshold) {
+                    points[pointCount++] = x;
+                    points[pointCount++] = y;
+                }
+            }
+        }
+        if (pointCount == 0) {
+            return 0;
+        }
+
+        int[] bins = new int[width + height + 2];
+        double bestAngle = 0;
+        long bestScore = -1;
+        for (double angle = -maxAngleInDegrees; angle <= maxAngleInDegrees + 1e-9; angle += ANGLE_STEP_IN_DEGREES) {
+            long score = score(points, pointCount, bins, width, Math.toRadians(angle));
+            if (score > bestScore || (score == bestScore && Math.abs(angle) < Math.abs(bestAngle))) {
+                bestScore = score;
+                bestAngle = angle;
+            }
+        }
+        return bestAngle;
+    }
+
+    private static long score(int[] points, int pointCount, int[] bins, int width, double angle) {
+        double sin = Math.sin(angle);
+        double cos = Math.cos(angle);
+        Arrays.fill(bins, 0);
+        for (int i = 0; i < pointCount; i += 2) {
+            int bin = (int) (points[i + 1] * cos - points[i] * sin) + width;
+            if (bin >= 0 && bin < bins.length) {
+                bins[bin]++;
+            }
+        }
+        long score = 0;
+        for (int count : bins) {
+            score += (long) count * count;
+        }
+        return score;
+    }
+
+    private static BufferedImage rotate(BufferedImage image, double angle) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        byte[] pixels = GrayImages.pixels(image);
+        BufferedImage rotated = GrayImages.create(width, height);
+        byte[] out = GrayImages.pixels(rotated);
+
+        double sin = Math.sin(angle);
+        double cos = Math.cos(angle);
+        double centerX = width / 2.0;
+        double centerY = height / 2.0;
+
+        int index = 0;
+        for (int y = 0; y < height; y++) {
+            double dy = y - centerY;
+            for (int x = 0; x < width; x++) {
+                double dx = x - centerX;
+                int sourceX = (int) Math.round(centerX + dx * cos - dy * sin);
+                int sourceY = (int) Math.round(centerY + dx * sin + dy * cos);
+                out[index++] = sourceX >= 0 && sourceX < width && sourceY >= 0 && sourceY < height
+                        ? pixels[sourceY * width + sourceX]
+                        : WHITE;
+            }
+        }
+        return rotated;
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.kapia.imaging;
+
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/*
+
+    Uploads rarely carry a reliable resolution, so the image is assumed to show a full A4 page and is scaled
+    so that its longer side matches the length of an A4 page at the target resolution. Large phone photos
+    are scaled down with area averaging, small images are scaled up bilinearly by at most a factor of two.
+
+ */
+
+class DpiNormalizationStage implements PreprocessingStage {
+
+    static final String NAME = "dpi";
+
+    private static final double A4_LONG_SIDE_IN_INCHES = 11.69;
+    private static final double MAX_UPSCALE = 2.0;
+    private static final double TOLERANCE = 0.1;
+
+    private final int targetLongSide;
+
+    DpiNormalizationStage(int targetDpi) {
+        this.targetLongSide = (int) Math.round(A4_LONG_SIDE_IN_INCHES * targetDpi);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getFingerprint() {
+        return NAME + ":" + targetLongSide;
+    }
+
+    @Override
+    public PreprocessedImage applyWithTransform(BufferedImage image) {
+        BufferedImage scaled = apply(image);
+        if (scaled == image) {
+            return PreprocessedImage.unchanged(image);
+        }
+        AffineTransform toSource = AffineTransform.getScaleInstance((double) image.getWidth() / scaled.getWidth(), (double) image.getHeight() / scaled.getHeight());
+        return new PreprocessedImage(scaled, toSource);
+    }
+
+    @Override
+    public BufferedImage apply(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double scale = Math.min(MAX_UPSCALE, (double) targetLongSide / Math.max(width, height));
+        if (Math.abs(scale - 1) < TOLERANCE) {
+            return image;
+        }
+
+        int scaledWidth = Math.max(1, (int) Math.round(width * scale));
+        int scaledHeight = Math.max(1, (int) Math.round(height * scale));
+        BufferedImage scaled = GrayImages.create(scaledWidth, scaledHeight);
+        if (scale < 1) {
+            downscale(GrayImages.pixels(image), width, height, GrayImages.pixels(scaled), scaledWidth, scaledHeight);
+        } else {
+            upscale(GrayImages.pixels(image), width, height, GrayImages.pixels(scaled), scaledWidth, scaledHeight);
+        }
+        return scaled;
+    }
+
+    private static void downscale(byte[] pixels, int width, int height, byte[] out, int scaledWidth, int scaledHeight) {
+        int[] columnBounds = bounds(width, scaledWidth);
+        int[] rowBounds = bounds(height, scaledHeight);
+
+        int index = 0;
+        for (int y = 0; y < scaledHeight; y++) {
+            for (int x = 0; x < scaledWidth; x++) {
+                int sum = 0;
+                for (int sourceY = rowBounds[y]; sourceY < rowBounds[y + 1]; sourceY++) {
+                    int row = sourceY * width;
+                    for (int sourceX = columnBounds[x]; sourceX < columnBounds[x + 1]; sourceX++) {
+                        sum += pixels[row + sourceX] & 0xff;
+                    }
+                }
+                int count = (rowBounds[y + 1] - rowBounds[y]) * (columnBounds[x + 1] - columnBounds[x]);
+                out[index++] = (byte) (sum / count);
+            }
+        }
+    }
+
+    private static int[] bounds(int size, int scaledSize) {
+        int[] bounds = new int[scaledSize + 1];
+        for (int i = 0; i <= scaledSize; i++) {
+            bounds[i] = (int) ((long) i * size / scaledSize);
+        }
+        for (int i = 1; i <= scaledSize; i++) {
+            bounds[i] = Math.min(size, Math.max(bounds[i], bounds[i - 1] + 1));
+        }
+        return bounds;
+    }
+
+    private static void upscale(byte[] pixels, int width, int height, byte[] out, int scaledWidth, int scaledHeight) {
+        double ratioX = (double) (width - 1) / Math.max(1, scaledWidth - 1);
+        double ratioY = (double) (height - 1) / Math.max(1, scaledHeight - 1);
+
+        int index = 0;
+        for (int y = 0; y < scaledHeight; y++) {
+            double sourceY = y * ratioY;
+            int top = (int) sourceY;
+            int bottom = Math.min(top + 1, height - 1);
+            double weightY = sourceY - top;
+            for (int x = 0; x < scaledWidth; x++) {
+                double sourceX = x * ratioX;
+                int left = (int) sourceX;
+                int right = Math.min(left + 1, width - 1);
+                double weightX = sourceX - left;
+
+                double upper = (pixels[top * width + left] & 0xff) * (1 - weightX) + (pixels[top * width + right] & 0xff) * weightX;
+                double lower = (pixels[bottom * width + left] & 0xff) * (1 - weightX) + (pixels[bottom * width + right] & 0xff) * weightX;
+                out[index++] = (byte) Math.round(upper * (1 - weightY) + lower * weightY);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.kapia.imaging;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.WritableRaster;
+
+final class GrayImages {
+
+    private GrayImages() {
+    }
+
+    static BufferedImage create(int width, int height) {
+        return new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+    }
+
+    static byte[] pixels(BufferedImage image) {
+        return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /*
+
+        Only images whose backing array holds exactly their own pixels, row after row, can be processed
+        through the array. Sub-images share the array of their parent and are converted first.
+
+     */
+
+    static boolean isCompactGray(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_BYTE_GRAY) {
+            return false;
+        }
+        WritableRaster raster = image.getRaster();
+        return raster.getSampleModelTranslateX() == 0
+                && raster.getSampleModelTranslateY() == 0
+                && raster.getDataBuffer().getOffset() == 0
+                && raster.getDataBuffer().getSize() == image.getWidth() * image.getHeight();
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.kapia.imaging;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
+
+/*
+
+    Converts the decoded image to 8-bit grayscale by reading the backing arrays of the common
+    JPEG and PNG layouts directly. Other layouts are read row by row through getRGB.
+
+ */
+
+class GrayscaleStage implements PreprocessingStage {
+
+    static final String NAME = "grayscale";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public BufferedImage apply(BufferedImage image) {
+        if (GrayImages.isCompactGray(image)) {
+            return image;
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage gray = GrayImages.create(width, height);
+        byte[] out = GrayImages.pixels(gray);
+        WritableRaster raster = image.getRaster();
+        boolean compact = raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0
+                && raster.getDataBuffer().getOffset() == 0;
+
+        switch (image.getType()) {
+            case BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_ARGB_PRE -> {
+                if (compact) {
+                    fromPackedRgb(((DataBufferInt) raster.getDataBuffer()).getData(), out, width * height);
+                    return gray;
+                }
+            }
+            case BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_4BYTE_ABGR_PRE -> {
+                if (compact) {
+                    fromInterleavedBytes(((DataBufferByte) raster.getDataBuffer()).getData(), (ComponentSampleModel) raster.getSampleModel(), out, width, height);
+                    return gray;
+                }
+            }
+            default -> {
+            }
+        }
+
+        fromRgbRows(image, out, width, height);
+        return gray;
+    }
+
+    private static void fromPackedRgb(int[] pixels, byte[] out, int length) {
+        for (int i = 0; i < length; i++) {
+            int rgb = pixels[i];
+            out[i] = luminance((rgb >> 16) & 0xff, (rgb >> 8) & 0xff, rgb & 0xff);
+        }
+    }
+
+    private static void fromInterleavedBytes(byte[] data, ComponentSampleModel sampleModel, byte[] out, int width, int height) {
+        int[] bandOffsets = sampleModel.getBandOffsets();
+        int pixelStride = sampleModel.getPixelStride();
+        int scanlineStride = sampleModel.getScanlineStride();
+        int redOffset = bandOffsets[0];
+        int greenOffset = bandOffsets[1];
+        int blueOffset = bandOffsets[2];
+
+        int index = 0;
+        for (int y = 0; y < height; y++) {
+            int offset = y * scanlineStride;
+            for (int x = 0; x < width; x++, offset += pixelStride) {
+                out[index++] = luminance(data[offset + redOffset] & 0xff, data[offset + greenOffset] & 0xff, data[offset + blueOffset] & 0xff);
+            }
+        }
+    }
+
+    private static void fromRgbRows(BufferedImage image, byte[] out, int width, int height) {
+        int[] row = ScratchBuffers.ints(width);
+        int index = 0;
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                out[index++] = luminance((rgb >> 16) & 0xff, (rgb >> 8) & 0xff, rgb & 0xff);
+            }
+        }
+    }
+
+    private static byte luminance(int red, int green, int blue) {
+        return (byte) ((red * 77 + green * 150 + blue * 29) >> 8);
+    }
+
+}
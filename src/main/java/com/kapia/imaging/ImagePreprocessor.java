@@ -0,0 +1,125 @@
+package com.kapia.imaging;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+
+    Stages are selected by name, either per request or with the default list from the configuration.
+    Stages that need a grayscale image are always preceded by the grayscale conversion,
+    and the time spent in every stage is recorded separately.
+
+ */
+
+@Component
+public class ImagePreprocessor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImagePreprocessor.class);
+
+    private static final String NO_STAGES = "none";
+    private static final String STAGE_SEPARATOR = ",";
+    private static final int ADAPTIVE_PERCENTAGE = 15;
+
+    private final Map<String, PreprocessingStage> stages = new LinkedHashMap<>();
+    private final Map<String, Timer> timers = new HashMap<>();
+    private final PreprocessingPipeline defaultPipeline;
+
+    @Autowired
+    public ImagePreprocessor(@Value("${ocr.preprocessing.stages:}") String defaultStages,
+                             @Value("${ocr.preprocessing.dpi:300}") int targetDpi,
+                             @Value("${ocr.preprocessing.deskew.max.angle:5}") double maxDeskewAngle,
+                             @Value("${ocr.preprocessing.adaptive.window:31}") int adaptiveWindow,
+                             MeterRegistry meterRegistry) {
+        register(new GrayscaleStage(), meterRegistry);
+        register(new DpiNormalizationStage(targetDpi), meterRegistry);
+        register(new DeskewStage(maxDeskewAngle), meterRegistry);
+        register(new MedianDenoiseStage(), meterRegistry);
+        register(new OtsuBinarizationStage(), meterRegistry);
+        register(new AdaptiveBinarizationStage(adaptiveWindow, ADAPTIVE_PERCENTAGE), meterRegistry);
+
+        this.defaultPipeline = parse(defaultStages);
+        LOGGER.info("Default preprocessing stages: " + (defaultPipeline.isEmpty() ? NO_STAGES : defaultPipeline.name()));
+    }
+
+    private void register(PreprocessingStage stage, MeterRegistry meterRegistry) {
+        stages.put(stage.getName(), stage);
+        timers.put(stage.getName(), Timer.builder("ocr.preprocessing")
+                .description("Time spent in an image preprocessing stage")
+                .tag("stage", stage.getName())
+                .register(meterRegistry));
+    }
+
+    public PreprocessingPipeline getDefaultPipeline() {
+        return defaultPipeline;
+    }
+
+    public PreprocessingPipeline pipeline(String stageNames) {
+        return stageNames == null ? defaultPipeline : parse(stageNames);
+    }
+
+    public BufferedImage process(BufferedImage image, PreprocessingPipeline pipeline) {
+        BufferedImage result = image;
+        for (PreprocessingStage stage : pipeline.stages()) {
+            BufferedImage input = result;
+            result = timers.get(stage.getName()).record(() -> stage.apply(input));
+        }
+        return result;
+    }
+
+    /*
+
+        Used when the result reports positions, such as the boxes of structured output, which have to be
+        mapped back to the upload after stages that scale or rotate the image.
+
+     */
+
+    public PreprocessedImage processWithTransform(BufferedImage image, PreprocessingPipeline pipeline) {
+        BufferedImage result = image;
+        AffineTransform toSource = new AffineTransform();
+        for (PreprocessingStage stage : pipeline.stages()) {
+            BufferedImage input = result;
+            PreprocessedImage stageResult = timers.get(stage.getName()).record(() -> stage.applyWithTransform(input));
+            result = stageResult.image();
+            toSource.concatenate(stageResult.toSource());
+        }
+        return new PreprocessedImage(result, toSource);
+    }
+
+    private PreprocessingPipeline parse(String stageNames) {
+        if (stageNames.isBlank() || NO_STAGES.equalsIgnoreCase(stageNames.trim())) {
+            return PreprocessingPipeline.NONE;
+        }
+
+        List<PreprocessingStage> pipeline = new ArrayList<>();
+        for (String stageName : stageNames.split(STAGE_SEPARATOR)) {
+            String name = stageName.trim().toLowerCase();
+            if (name.isEmpty()) {
+                continue;
+            }
+            PreprocessingStage stage = stages.get(name);
+            if (stage == null) {
+                throw new InvalidPreprocessingException("Unknown preprocessing stage: " + name + ", available stages: " + String.join(STAGE_SEPARATOR, stages.keySet()));
+            }
+            pipeline.add(stage);
+        }
+
+        if (!pipeline.isEmpty() && !GrayscaleStage.NAME.equals(pipeline.get(0).getName())) {
+            pipeline.add(0, stages.get(GrayscaleStage.NAME));
+        }
+        return new PreprocessingPipeline(List.copyOf(pipeline));
+    }
+
+}
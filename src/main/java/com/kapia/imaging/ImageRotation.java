@@ -0,0 +1,82 @@
+package com.kapia.imaging;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
+
+/*
+
+    Turns images by quarter turns without resampling, for any image type. A half turn keeps the size of
+    the image and is done in place by swapping rows from both ends. A quarter turn swaps width and height,
+    so every row of the image becomes a column of a new image of the same type.
+
+ */
+
+public final class ImageRotation {
+
+    private ImageRotation() {
+    }
+
+    public static BufferedImage rotate(BufferedImage image, int clockwiseDegrees) {
+        return switch (Math.floorMod(clockwiseDegrees, 360)) {
+            case 0 -> image;
+            case 90 -> quarterTurn(image, true);
+            case 180 -> halfTurn(image);
+            case 270 -> quarterTurn(image, false);
+            default -> throw new IllegalArgumentException("Images can only be rotated by multiples of 90 degrees");
+        };
+    }
+
+    private static BufferedImage halfTurn(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int bands = raster.getNumBands();
+        int[] upper = new int[width * bands];
+        int[] lower = new int[width * bands];
+        for (int top = 0, bottom = height - 1; top <= bottom; top++, bottom--) {
+            raster.getPixels(0, top, width, 1, upper);
+            raster.getPixels(0, bottom, width, 1, lower);
+            reverse(upper, bands);
+            if (top == bottom) {
+                raster.setPixels(0, top, width, 1, upper);
+                break;
+            }
+            reverse(lower, bands);
+            raster.setPixels(0, top, width, 1, lower);
+            raster.setPixels(0, bottom, width, 1, upper);
+        }
+        return image;
+    }
+
+    private static BufferedImage quarterTurn(BufferedImage image, boolean clockwise) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        ColorModel colorModel = image.getColorModel();
+        WritableRaster raster = image.getRaster();
+        WritableRaster rotatedRaster = colorModel.createCompatibleWritableRaster(height, width);
+        int bands = raster.getNumBands();
+        int[] row = new int[width * bands];
+        for (int y = 0; y < height; y++) {
+            raster.getPixels(0, y, width, 1, row);
+            if (clockwise) {
+                rotatedRaster.setPixels(height - 1 - y, 0, 1, width, row);
+            } else {
+                reverse(row, bands);
+                rotatedRaster.setPixels(y, 0, 1, width, row);
+            }
+        }
+        return new BufferedImage(colorModel, rotatedRaster, colorModel.isAlphaPremultiplied(), null);
+    }
+
+    private static void reverse(int[] samples, int bands) {
+        for (int left = 0, right = samples.length - bands; left < right; left += bands, right -= bands) {
+            for (int band = 0; band < bands; band++) {
+                int sample = samples[left + band];
+                samples[left + band] = samples[right + band];
+                samples[right + band] = sample;
+            }
+        }
+    }
+
+}
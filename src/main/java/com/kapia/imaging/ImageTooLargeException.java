@@ -0,0 +1,9 @@
+package com.kapia.imaging;
+
+public class ImageTooLargeException extends RuntimeException {
+
+    public ImageTooLargeException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.kapia.imaging;
+
+public class InvalidPreprocessingException extends IllegalArgumentException {
+
+    public InvalidPreprocessingException(String message) {
+        super(message);
+    }
+
+}
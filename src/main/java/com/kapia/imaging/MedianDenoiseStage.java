@@ -0,0 +1,68 @@
+package com.kapia.imaging;
+
+import java.awt.image.BufferedImage;
+
+/*
+
+    3x3 median filter that removes salt-and-pepper noise of phone cameras and fax scans
+    while keeping the edges of the characters. Border pixels are left as they are.
+
+ */
+
+class MedianDenoiseStage implements PreprocessingStage {
+
+    static final String NAME = "denoise";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public BufferedImage apply(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (width < 3 || height < 3) {
+            return image;
+        }
+
+        byte[] pixels = GrayImages.pixels(image);
+        byte[] out = ScratchBuffers.bytes(width * height);
+        System.arraycopy(pixels, 0, out, 0, width * height);
+
+        int[] window = new int[9];
+        for (int y = 1; y < height - 1; y++) {
+            int row = y * width;
+            for (int x = 1; x < width - 1; x++) {
+                int index = row + x;
+                window[0] = pixels[index - width - 1] & 0xff;
+                window[1] = pixels[index - width] & 0xff;
+                window[2] = pixels[index - width + 1] & 0xff;
+                window[3] = pixels[index - 1] & 0xff;
+                window[4] = pixels[index] & 0xff;
+                window[5] = pixels[index + 1] & 0xff;
+                window[6] = pixels[index + width - 1] & 0xff;
+                window[7] = pixels[index + width] & 0xff;
+                window[8] = pixels[index + width + 1] & 0xff;
+                out[index] = (byte) median(window);
+            }
+        }
+
+        System.arraycopy(out, 0, pixels, 0, width * height);
+        return image;
+    }
+
+    private static int median(int[] window) {
+        for (int i = 1; i < window.length; i++) {
+            int value = window[i];
+            int j = i - 1;
+            while (j >= 0 && window[j] > value) {
+                window[j + 1] = window[j];
+                j--;
+            }
+            window[j + 1] = value;
+        }
+        return window[4];
+    }
+
+}
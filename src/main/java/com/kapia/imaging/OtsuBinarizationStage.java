@@ -0,0 +1,68 @@
+package com.kapia.imaging;
+
+import java.awt.image.BufferedImage;
+
+/*
+
+    Global binarization with the threshold that maximizes the variance between the foreground
+    and the background classes of the histogram. Works well for evenly lit scans.
+
+ */
+
+class OtsuBinarizationStage implements PreprocessingStage {
+
+    static final String NAME = "otsu";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public BufferedImage apply(BufferedImage image) {
+        byte[] pixels = GrayImages.pixels(image);
+        int threshold = threshold(pixels);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (pixels[i] & 0xff) > threshold ? (byte) 255 : 0;
+        }
+        return image;
+    }
+
+    static int threshold(byte[] pixels) {
+        int[] histogram = new int[256];
+        for (byte pixel : pixels) {
+            histogram[pixel & 0xff]++;
+        }
+
+        long total = pixels.length;
+        long sum = 0;
+        for (int i = 0; i < 256; i++) {
+            sum += (long) i * histogram[i];
+        }
+
+        long backgroundSum = 0;
+        long backgroundWeight = 0;
+        double maxVariance = -1;
+        int threshold = 127;
+        for (int i = 0; i < 256; i++) {
+            backgroundWeight += histogram[i];
+            if (backgroundWeight == 0) {
+                continue;
+            }
+            long foregroundWeight = total - backgroundWeight;
+            if (foregroundWeight == 0) {
+                break;
+            }
+            backgroundSum += (long) i * histogram[i];
+            double backgroundMean = (double) backgroundSum / backgroundWeight;
+            double foregroundMean = (double) (sum - backgroundSum) / foregroundWeight;
+            double variance = (double) backgroundWeight * foregroundWeight * (backgroundMean - foregroundMean) * (backgroundMean - foregroundMean);
+            if (variance > maxVariance) {
+                maxVariance = variance;
+                threshold = i;
+            }
+        }
+        return threshold;
+    }
+
+}
@@ -0,0 +1,143 @@
+package com.kapia.imaging;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/*
+
+    Limiting the number of threads does not bound the memory of decoded images: five 50 megapixel photos
+    take more heap than fifty receipts. Every image therefore acquires as many permits of a shared weighted
+    semaphore as it has thousands of pixels once decoded, before it is decoded, and keeps them until its
+    recognition is finished. The size is read from the header of the image without decoding it.
+
+    Images larger than the whole budget could never be admitted and are rejected with 413 at once.
+    The semaphore is fair, so a large image waiting for permits is not overtaken by a stream of small ones,
+    and images that wait longer than the timeout are rejected with 503. Images wait on the thread that
+    submits them, before they are queued for an OCR worker, and no longer than their deadline allows.
+    The OCR workers themselves must not sit idle waiting for memory, so anything decoded on a worker
+    without a permit only tries to acquire one and is rejected with 503 right away.
+
+ */
+
+@Component
+public class PixelBudget {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PixelBudget.class);
+
+    private static final int PIXELS_PER_PERMIT = 1000;
+
+    private final int permits;
+    private final Semaphore semaphore;
+    private final Duration waitTimeout;
+
+    private final Timer waitTimer;
+    private final Counter timeouts;
+    private final Counter oversizedImages;
+
+    @Autowired
+    public PixelBudget(@Value("${ocr.decode.pixel.budget.in.megapixels:100}") int budgetInMegapixels,
+                       @Value("${ocr.decode.pixel.budget.wait.timeout.in.seconds:10}") long waitTimeoutInSeconds,
+                       MeterRegistry meterRegistry) {
+        this(budgetInMegapixels * 1_000_000L, Duration.ofSeconds(waitTimeoutInSeconds), meterRegistry);
+    }
+
+    public PixelBudget(long budgetInPixels, Duration waitTimeout, MeterRegistry meterRegistry) {
+        this.permits = (int) Math.min(Integer.MAX_VALUE, Math.max(1, budgetInPixels / PIXELS_PER_PERMIT));
+        this.semaphore = new Semaphore(permits, true);
+        this.waitTimeout = waitTimeout;
+
+        Gauge.builder("ocr.decode.pixel.budget.utilization", this, PixelBudget::getUtilization)
+                .description("Share of the pixel budget held by decoded images")
+                .register(meterRegistry);
+        Gauge.builder("ocr.decode.pixel.budget.queued", semaphore, Semaphore::getQueueLength)
+                .description("Images waiting for the pixel budget before decoding")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("ocr.decode.pixel.budget.wait")
+                .description("Time images waited for the pixel budget before decoding")
+                .register(meterRegistry);
+        this.timeouts = Counter.builder("ocr.decode.pixel.budget.rejected")
+                .description("Images rejected by the pixel budget")
+                .tag("reason", "timeout")
+                .register(meterRegistry);
+        this.oversizedImages = Counter.builder("ocr.decode.pixel.budget.rejected")
+                .description("Images rejected by the pixel budget")
+                .tag("reason", "too_large")
+                .register(meterRegistry);
+    }
+
+    public Permit acquire(long pixels) {
+        return acquire(pixels, Long.MAX_VALUE);
+    }
+
+    /*
+
+        Waits for the configured timeout or the given time, whichever is shorter.
+
+     */
+
+    public Permit acquire(long pixels, long maxWaitInNanos) {
+        return acquireWeighted(pixels, Math.min(waitTimeout.toNanos(), maxWaitInNanos));
+    }
+
+    public Permit tryAcquire(long pixels) {
+        return acquireWeighted(pixels, 0);
+    }
+
+    private Permit acquireWeighted(long pixels, long timeoutInNanos) {
+        int weight = (int) Math.min(Integer.MAX_VALUE, Math.max(1, (pixels + PIXELS_PER_PERMIT - 1) / PIXELS_PER_PERMIT));
+        if (weight > permits) {
+            oversizedImages.increment();
+            throw new ImageTooLargeException("Image cannot have more than " + (long) permits * PIXELS_PER_PERMIT / 1_000_000 + " megapixels");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!semaphore.tryAcquire(weight, timeoutInNanos, TimeUnit.NANOSECONDS)) {
+                timeouts.increment();
+                LOGGER.warn("Pixel budget exhausted, rejecting image of " + pixels + " pixels");
+                throw new RejectedExecutionException("Pixel budget exhausted");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for the pixel budget", e);
+        } finally {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return new Permit(weight);
+    }
+
+    public double getUtilization() {
+        return 1.0 - (double) semaphore.availablePermits() / permits;
+    }
+
+    public class Permit implements AutoCloseable {
+
+        private final int weight;
+        private boolean released;
+
+        private Permit(int weight) {
+            this.weight = weight;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                semaphore.release(weight);
+            }
+        }
+    }
+
+}
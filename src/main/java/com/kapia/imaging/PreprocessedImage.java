@@ -0,0 +1,19 @@
+package com.kapia.imaging;
+
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/*
+
+    A preprocessed image together with the transform that maps its coordinates back to the image it was
+    made from, so boxes found on the preprocessed image can be reported where they are in the upload.
+
+ */
+
+public record PreprocessedImage(BufferedImage image, AffineTransform toSource) {
+
+    static PreprocessedImage unchanged(BufferedImage image) {
+        return new PreprocessedImage(image, new AffineTransform());
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.kapia.imaging;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+public record PreprocessingPipeline(List<PreprocessingStage> stages) {
+
+    public static final PreprocessingPipeline NONE = new PreprocessingPipeline(List.of());
+
+    public boolean isEmpty() {
+        return stages.isEmpty();
+    }
+
+    public String name() {
+        return stages.stream().map(PreprocessingStage::getName).collect(Collectors.joining(","));
+    }
+
+    public String fingerprint() {
+        return stages.stream().map(PreprocessingStage::getFingerprint).collect(Collectors.joining(","));
+    }
+
+}
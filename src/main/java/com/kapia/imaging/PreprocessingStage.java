@@ -0,0 +1,40 @@
+package com.kapia.imaging;
+
+import java.awt.image.BufferedImage;
+
+/*
+
+    Every stage except the grayscale conversion receives an 8-bit grayscale image and works directly
+    on its backing byte array. A stage may modify the given image in place or return a new one.
+
+ */
+
+public interface PreprocessingStage {
+
+    String getName();
+
+    /*
+
+        Name of the stage together with the settings that change its output, so that cached results of
+        different settings are told apart.
+
+     */
+
+    default String getFingerprint() {
+        return getName();
+    }
+
+    BufferedImage apply(BufferedImage image);
+
+    /*
+
+        Like apply, but also tells where the pixels of the result come from in the given image.
+        Stages that scale or rotate the image override it, the others keep the coordinates.
+
+     */
+
+    default PreprocessedImage applyWithTransform(BufferedImage image) {
+        return PreprocessedImage.unchanged(apply(image));
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.kapia.imaging;
+
+/*
+
+    OCR runs on a fixed pool of worker threads, so every worker keeps its own scratch arrays and reuses them
+    between images instead of allocating a new array of the size of the image for every stage.
+    The arrays only grow, their contents are undefined when they are handed out.
+
+    Like the direct buffers of the upload path, arrays larger than 32 MB are allocated for the image at hand
+    and not kept, so a single poster-sized image does not pin its arrays on every worker it ran on.
+
+ */
+
+final class ScratchBuffers {
+
+    static final int MAX_RETAINED_BYTES = 32 * 1024 * 1024;
+
+    private static final ThreadLocal<byte[]> BYTES = ThreadLocal.withInitial(() -> new byte[0]);
+    private static final ThreadLocal<int[]> INTS = ThreadLocal.withInitial(() -> new int[0]);
+
+    private ScratchBuffers() {
+    }
+
+    static byte[] bytes(int size) {
+        byte[] buffer = BYTES.get();
+        if (buffer.length < size) {
+            buffer = new byte[size];
+            if (size <= MAX_RETAINED_BYTES) {
+                BYTES.set(buffer);
+            }
+        }
+        return buffer;
+    }
+
+    static int[] ints(int size) {
+        int[] buffer = INTS.get();
+        if (buffer.length < size) {
+            buffer = new int[size];
+            if ((long) size * Integer.BYTES <= MAX_RETAINED_BYTES) {
+                INTS.set(buffer);
+            }
+        }
+        return buffer;
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.kapia.jobs;
+
+import java.time.Instant;
+
+public record OCRJob(String id, OCRJobStatus status, String text, String error, Instant createdAt, Instant completedAt) {
+
+    static OCRJob pending(String id) {
+        return new OCRJob(id, OCRJobStatus.PENDING, null, null, Instant.now(), null);
+    }
+
+    OCRJob done(String text) {
+        return new OCRJob(id, OCRJobStatus.DONE, text, null, createdAt, Instant.now());
+    }
+
+    OCRJob failed(String error) {
+        return new OCRJob(id, OCRJobStatus.FAILED, null, error, createdAt, Instant.now());
+    }
+
+    long estimatedSize() {
+        long size = 2L * id.length();
+        if (text != null) {
+            size += 2L * text.length();
+        }
+        if (error != null) {
+            size += 2L * error.length();
+        }
+        return size;
+    }
+
+}
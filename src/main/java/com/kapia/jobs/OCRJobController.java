@@ -0,0 +1,64 @@
+package com.kapia.jobs;
+
+import com.kapia.ocr.OCRPriority;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.security.SecurityRequirements;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+
+@RestController
+@RequestMapping("/ocr/jobs")
+@SecurityRequirements({
+        @SecurityRequirement(name = "basicAuth"), @SecurityRequirement(name = "x-api-key")
+})
+public class OCRJobController {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OCRJobController.class);
+
+    private final OCRJobService ocrJobService;
+
+    @Autowired
+    public OCRJobController(OCRJobService ocrJobService) {
+        this.ocrJobService = ocrJobService;
+    }
+
+    @Operation(summary = "Submit an OCR job", description = "Endpoint that accepts the image and returns the id of the job that processes it.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Job accepted", content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "400", description = "Bad request", content = @Content(mediaType = "text/plain")),
+            @ApiResponse(responseCode = "503", description = "OCR queue is full, retry after the time given in the Retry-After header", content = @Content(mediaType = "text/plain"))
+    })
+    @PostMapping(consumes = "multipart/form-data", produces = "application/json")
+    public ResponseEntity<OCRJob> submitJob(@RequestParam("image") @Parameter(name = "image", description = "Image to be processed") MultipartFile image,
+                                            HttpServletRequest request) throws IOException {
+        LOGGER.info("Submitting OCR job from request");
+        OCRJob job = ocrJobService.submit(image, OCRPriority.of(request));
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(job.id()).toUri();
+        return ResponseEntity.accepted().location(location).body(job);
+    }
+
+    @Operation(summary = "Get an OCR job", description = "Endpoint that returns the status of the job and, once it is done, the text found in the image.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Job found", content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "404", description = "Job does not exist or has expired", content = @Content(mediaType = "text/plain"))
+    })
+    @GetMapping(value = "/{id}", produces = "application/json")
+    public ResponseEntity<OCRJob> getJob(@PathVariable("id") @Parameter(name = "id", description = "Id of the job") String id) {
+        return ResponseEntity.of(ocrJobService.find(id));
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.kapia.jobs;
+
+import com.kapia.exceptionhandling.ResponseExceptionHandler;
+import com.kapia.ocr.OCRPriority;
+import com.kapia.ocr.OCRService;
+import com.kapia.util.PooledBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+
+@Service
+public class OCRJobService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OCRJobService.class);
+
+    private final OCRService ocrService;
+    private final OCRJobStore jobStore;
+    private final RedisJobQueue jobQueue;
+
+    @Autowired
+    public OCRJobService(OCRService ocrService, OCRJobStore jobStore, ObjectProvider<RedisJobQueue> jobQueue) {
+        this(ocrService, jobStore, jobQueue.getIfAvailable());
+    }
+
+    public OCRJobService(OCRService ocrService, OCRJobStore jobStore) {
+        this(ocrService, jobStore, (RedisJobQueue) null);
+    }
+
+    public OCRJobService(OCRService ocrService, OCRJobStore jobStore, RedisJobQueue jobQueue) {
+        this.ocrService = ocrService;
+        this.jobStore = jobStore;
+        this.jobQueue = jobQueue;
+    }
+
+    public OCRJob submit(MultipartFile image) throws IOException {
+        return submit(image, OCRPriority.FREE);
+    }
+
+    public OCRJob submit(MultipartFile image, OCRPriority priority) throws IOException {
+
+        if (image == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+
+        // With the Redis job queue the job is run by a worker node, which stores the result in Redis
+        if (jobQueue != null) {
+            OCRJob job = jobQueue.submit(image.getBytes(), priority);
+            LOGGER.info("Queued OCR job " + job.id());
+            return job;
+        }
+
+        // The multipart file is deleted when the request completes, so the job works on its own copy,
+        // which is returned to the buffer pool once the job is finished
+        PooledBuffer upload = ocrService.readUpload(image);
+        OCRJob job = OCRJob.pending(UUID.randomUUID().toString());
+        jobStore.add(job);
+
+        try {
+            ocrService.submitImageBuffer(upload.buffer(), priority)
+                    .whenComplete((text, ex) -> {
+                        upload.close();
+                        if (ex == null) {
+                            jobStore.complete(job.done(text));
+                            return;
+                        }
+                        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                        LOGGER.warn("OCR job " + job.id() + " failed: " + cause.getMessage());
+                        jobStore.complete(job.failed(ResponseExceptionHandler.getErrorMessage(cause)));
+                    });
+        } catch (IOException | RuntimeException e) {
+            upload.close();
+            jobStore.remove(job.id());
+            throw e;
+        }
+
+        LOGGER.info("Submitted OCR job " + job.id());
+        return job;
+    }
+
+    public Optional<OCRJob> find(String id) {
+        return jobQueue != null ? jobQueue.find(id) : jobStore.find(id);
+    }
+
+}
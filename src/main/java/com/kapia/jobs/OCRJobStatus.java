@@ -0,0 +1,7 @@
+package com.kapia.jobs;
+
+public enum OCRJobStatus {
+    PENDING,
+    DONE,
+    FAILED
+}
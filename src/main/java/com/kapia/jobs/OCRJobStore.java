@@ -0,0 +1,125 @@
+package com.kapia.jobs;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+
+    Results of finished jobs are kept in memory until they expire or until the total size of stored results
+    exceeds the configured capacity, in which case the oldest finished jobs are dropped first.
+    Because every job has the same time to live, the order in which jobs finish is also the order in which
+    they expire, so a single queue serves both purposes.
+
+ */
+
+@Component
+public class OCRJobStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OCRJobStore.class);
+
+    private final Map<String, OCRJob> jobs = new ConcurrentHashMap<>();
+    private final Deque<OCRJob> finishedJobs = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Duration timeToLive;
+    private final long capacityInBytes;
+    private final Clock clock;
+
+    private long storedBytes;
+
+    @Autowired
+    public OCRJobStore(@Value("${ocr.jobs.ttl.in.minutes:10}") long timeToLiveInMinutes,
+                       @Value("${ocr.jobs.capacity.in.megabytes:64}") long capacityInMegabytes,
+                       MeterRegistry meterRegistry) {
+        this(Duration.ofMinutes(timeToLiveInMinutes), capacityInMegabytes * 1024 * 1024, Clock.systemUTC(), meterRegistry);
+    }
+
+    OCRJobStore(Duration timeToLive, long capacityInBytes, Clock clock, MeterRegistry meterRegistry) {
+        this.timeToLive = timeToLive;
+        this.capacityInBytes = capacityInBytes;
+        this.clock = clock;
+
+        Gauge.builder("ocr.jobs.stored", jobs, Map::size)
+                .description("OCR jobs kept in memory")
+                .register(meterRegistry);
+        Gauge.builder("ocr.jobs.stored.bytes", this, OCRJobStore::getStoredBytes)
+                .description("Estimated size of stored OCR results")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public void add(OCRJob job) {
+        jobs.put(job.id(), job);
+        evictExpired();
+    }
+
+    public void complete(OCRJob job) {
+        lock.lock();
+        try {
+            if (jobs.replace(job.id(), job) == null) {
+                return;
+            }
+            finishedJobs.addLast(job);
+            storedBytes += job.estimatedSize();
+            while (storedBytes > capacityInBytes && !finishedJobs.isEmpty()) {
+                OCRJob evicted = removeOldest();
+                LOGGER.info("Evicted result of job " + evicted.id() + " because the job store is full");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Optional<OCRJob> find(String id) {
+        evictExpired();
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    public void remove(String id) {
+        jobs.remove(id);
+    }
+
+    private void evictExpired() {
+        Instant expiration = clock.instant().minus(timeToLive);
+        lock.lock();
+        try {
+            while (!finishedJobs.isEmpty() && finishedJobs.peekFirst().completedAt().isBefore(expiration)) {
+                removeOldest();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private OCRJob removeOldest() {
+        OCRJob oldest = finishedJobs.removeFirst();
+        jobs.remove(oldest.id());
+        storedBytes -= oldest.estimatedSize();
+        return oldest;
+    }
+
+    public long getStoredBytes() {
+        lock.lock();
+        try {
+            return storedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
@@ -0,0 +1,322 @@
+package com.kapia.jobs;
+
+import com.kapia.exceptionhandling.ResponseExceptionHandler;
+import com.kapia.ocr.OCRExecutor;
+import com.kapia.ocr.OCRService;
+import io.lettuce.core.RedisException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/*
+
+    Runs OCR jobs from the Redis job queue on nodes started with the worker profile. The worker takes only
+    as many jobs from the stream as it has free slots, so jobs it cannot start yet stay in the stream for
+    the other workers, and it runs them on the OCR executor with the priority they were submitted with.
+    The loop waits for the pixel budget of a job before queuing it, so the OCR workers never do.
+
+    Before reading new jobs the worker periodically claims jobs that other workers, or an earlier run of
+    this one, received but never acknowledged. The idle time after which a job is claimed must be longer
+    than the longest recognition, or jobs still running are started a second time.
+
+    A job that the node rejects because its OCR queue or memory budget is exhausted is deferred: it is left
+    unacknowledged, gets its attempt back, and becomes claimable again by this worker or another one at
+    the next claim pass instead of after the full idle time. A job that fails is acknowledged with its
+    error, since running the same image again would fail in the same way.
+
+    The loop is started once the application is ready, after the OCR warm-up. On shutdown it stops reading
+    and waits for running jobs to store their results; jobs still running after that are claimed by the
+    other workers.
+
+ */
+
+@Component
+@Profile("worker")
+public class OCRJobWorker implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OCRJobWorker.class);
+
+    private static final Duration READ_TIMEOUT = Duration.ofSeconds(1);
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(5);
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(30);
+    private static final String CURSOR_START = "0-0";
+
+    private final RedisJobQueue jobQueue;
+    private final OCRService ocrService;
+    private final String consumer;
+    private final int concurrency;
+    private final Semaphore slots;
+    private final Duration claimIdleTime;
+    private final Duration deferredIdleTime;
+    private final long claimIntervalInNanos;
+    private final int maxAttempts;
+
+    private final Counter doneJobs;
+    private final Counter failedJobs;
+    private final Counter expiredJobs;
+    private final Counter deferredJobs;
+    private final Counter claimedJobs;
+
+    private volatile boolean running;
+    private Thread thread;
+    private boolean groupCreated;
+    private String claimCursor = CURSOR_START;
+    private long lastClaim;
+
+    @Autowired
+    public OCRJobWorker(RedisJobQueue jobQueue,
+                        OCRService ocrService,
+                        OCRExecutor ocrExecutor,
+                        @Value("${ocr.worker.name:}") String name,
+                        @Value("${ocr.worker.concurrency:0}") int concurrency,
+                        @Value("${ocr.worker.claim.idle.in.seconds:300}") long claimIdleTimeInSeconds,
+                        @Value("${ocr.worker.claim.interval.in.seconds:30}") long claimIntervalInSeconds,
+                        @Value("${ocr.worker.max.attempts:3}") int maxAttempts,
+                        MeterRegistry meterRegistry) {
+        this(jobQueue, ocrService, name.isBlank() ? defaultName() : name,
+                concurrency > 0 ? concurrency : ocrExecutor.getWorkerCount(),
+                Duration.ofSeconds(claimIdleTimeInSeconds), Duration.ofSeconds(claimIntervalInSeconds), maxAttempts, meterRegistry);
+    }
+
+    OCRJobWorker(RedisJobQueue jobQueue, OCRService ocrService, String consumer, int concurrency,
+                 Duration claimIdleTime, Duration claimInterval, int maxAttempts, MeterRegistry meterRegistry) {
+        this.jobQueue = jobQueue;
+        this.ocrService = ocrService;
+        this.consumer = consumer;
+        this.concurrency = Math.max(1, concurrency);
+        this.slots = new Semaphore(this.concurrency);
+        this.claimIdleTime = claimIdleTime;
+        this.deferredIdleTime = claimIdleTime.compareTo(claimInterval) > 0 ? claimIdleTime.minus(claimInterval) : Duration.ZERO;
+        this.claimIntervalInNanos = claimInterval.toNanos();
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.lastClaim = System.nanoTime() - claimIntervalInNanos;
+
+        Gauge.builder("ocr.worker.active", this, OCRJobWorker::getActiveJobs)
+                .description("OCR jobs from the Redis job queue running on this worker")
+                .register(meterRegistry);
+        this.doneJobs = jobCounter("done", meterRegistry);
+        this.failedJobs = jobCounter("failed", meterRegistry);
+        this.expiredJobs = jobCounter("expired", meterRegistry);
+        this.deferredJobs = jobCounter("deferred", meterRegistry);
+        this.claimedJobs = Counter.builder("ocr.worker.claimed")
+                .description("Unacknowledged OCR jobs taken over from idle consumers")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = Thread.ofPlatform()
+                .name("ocr-job-worker")
+                .daemon(true)
+                .start(this::run);
+        LOGGER.info("Started OCR job worker " + consumer + " with " + concurrency + " slots");
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        Thread worker;
+        synchronized (this) {
+            running = false;
+            worker = thread;
+        }
+        if (worker == null) {
+            return;
+        }
+        worker.join(READ_TIMEOUT.multipliedBy(2).toMillis());
+        if (slots.tryAcquire(concurrency, SHUTDOWN_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS)) {
+            slots.release(concurrency);
+        } else {
+            LOGGER.warn("Stopped OCR job worker " + consumer + " with " + getActiveJobs() + " jobs still running");
+        }
+    }
+
+    public int getActiveJobs() {
+        return concurrency - slots.availablePermits();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                poll();
+            } catch (RedisException e) {
+                groupCreated = false;
+                LOGGER.warn("Could not read OCR jobs from Redis: " + e.getMessage());
+                sleep(RETRY_DELAY);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /*
+
+        Waits for a free slot, takes all slots that are free, fills them with claimed and new jobs and
+        gives back the slots that were not used. Every started job gives its slot back when it is finished.
+
+     */
+
+    void poll() throws InterruptedException {
+        if (!slots.tryAcquire(READ_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS)) {
+            return;
+        }
+        int free = 1 + slots.drainPermits();
+
+        List<RedisJobQueue.QueuedJob> jobs;
+        try {
+            jobs = fetch(free);
+        } catch (RuntimeException e) {
+            slots.release(free);
+            throw e;
+        }
+        slots.release(free - jobs.size());
+
+        for (RedisJobQueue.QueuedJob job : jobs) {
+            process(job);
+        }
+    }
+
+    private List<RedisJobQueue.QueuedJob> fetch(int count) {
+        if (!groupCreated) {
+            jobQueue.createGroup();
+            groupCreated = true;
+        }
+
+        List<RedisJobQueue.QueuedJob> jobs = new ArrayList<>(count);
+        if (System.nanoTime() - lastClaim >= claimIntervalInNanos) {
+            RedisJobQueue.ClaimedJobs claimed = jobQueue.claim(consumer, claimIdleTime, claimCursor, count);
+            claimCursor = claimed.cursor();
+            if (CURSOR_START.equals(claimCursor)) {
+                lastClaim = System.nanoTime();
+            }
+            if (!claimed.jobs().isEmpty()) {
+                claimedJobs.increment(claimed.jobs().size());
+                LOGGER.info("Claimed " + claimed.jobs().size() + " unacknowledged OCR jobs");
+            }
+            jobs.addAll(claimed.jobs());
+        }
+        if (jobs.size() < count) {
+            jobs.addAll(jobQueue.read(consumer, count - jobs.size(), READ_TIMEOUT));
+        }
+        return jobs;
+    }
+
+    private void process(RedisJobQueue.QueuedJob job) {
+        try {
+            long attempt = jobQueue.startAttempt(job);
+            if (attempt == 0) {
+                expiredJobs.increment();
+                LOGGER.info("Dropping expired OCR job " + job.jobId());
+                jobQueue.acknowledge(job);
+                slots.release();
+                return;
+            }
+            if (attempt > maxAttempts) {
+                failedJobs.increment();
+                LOGGER.warn("OCR job " + job.jobId() + " failed after " + maxAttempts + " attempts");
+                jobQueue.fail(job, "OCR job failed after " + maxAttempts + " attempts");
+                slots.release();
+                return;
+            }
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Could not start OCR job " + job.jobId() + ": " + e.getMessage());
+            slots.release();
+            return;
+        }
+
+        try {
+            ocrService.submitImageBytes(job.image(), job.priority())
+                    .whenComplete((text, ex) -> finish(job, text, ex));
+        } catch (IOException | RuntimeException e) {
+            finish(job, null, e);
+        }
+    }
+
+    private void finish(RedisJobQueue.QueuedJob job, String text, Throwable ex) {
+        try {
+            if (ex == null) {
+                jobQueue.complete(job, text);
+                doneJobs.increment();
+                return;
+            }
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            if (cause instanceof RejectedExecutionException) {
+                defer(job, cause.getMessage());
+                return;
+            }
+            LOGGER.warn("OCR job " + job.jobId() + " failed: " + cause.getMessage());
+            jobQueue.fail(job, ResponseExceptionHandler.getErrorMessage(cause));
+            failedJobs.increment();
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Could not store result of OCR job " + job.jobId() + ": " + e.getMessage());
+        } finally {
+            slots.release();
+        }
+    }
+
+    /*
+
+        Leaves the job unacknowledged without counting the attempt. If the job cannot be deferred, it is
+        still claimed after the full idle time.
+
+     */
+
+    private void defer(RedisJobQueue.QueuedJob job, String reason) {
+        deferredJobs.increment();
+        LOGGER.warn("Leaving OCR job " + job.jobId() + " for another attempt: " + reason);
+        try {
+            jobQueue.defer(job, consumer, deferredIdleTime);
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Could not defer OCR job " + job.jobId() + ": " + e.getMessage());
+        }
+    }
+
+    private void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private static Counter jobCounter(String result, MeterRegistry meterRegistry) {
+        return Counter.builder("ocr.worker.jobs")
+                .description("OCR jobs from the Redis job queue handled by this worker")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static String defaultName() {
+        try {
+            return InetAddress.getLocalHost().getHostName() + "-" + ProcessHandle.current().pid();
+        } catch (UnknownHostException e) {
+            return UUID.randomUUID().toString();
+        }
+    }
+
+}
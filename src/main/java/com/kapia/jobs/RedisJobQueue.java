@@ -0,0 +1,324 @@
+package com.kapia.jobs;
+
+import com.kapia.ocr.OCRPriority;
+import io.lettuce.core.Consumer;
+import io.lettuce.core.RedisBusyException;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.StreamMessage;
+import io.lettuce.core.XAutoClaimArgs;
+import io.lettuce.core.XClaimArgs;
+import io.lettuce.core.XGroupCreateArgs;
+import io.lettuce.core.XReadArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.models.stream.ClaimedMessages;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/*
+
+    Job queue shared by the front-end nodes and the worker nodes. A front end stores the pending job in a
+    hash and appends the image to a Redis Stream; workers read the stream through a consumer group, so every
+    job is delivered to one worker, and write the result into the hash of the job, where any front end can
+    find it. An entry is acknowledged and deleted from the stream once its result is stored, so the stream
+    only holds the images of jobs that are not finished yet.
+
+    A job that stays unacknowledged, because its worker died or could not run it, remains in the pending
+    list of the group and is claimed by another worker with XAUTOCLAIM once it has been idle long enough.
+    Every delivery a worker starts counts as an attempt, so an image that keeps crashing workers is failed
+    eventually. A job the worker could not start yet is deferred: it gets its attempt back and its idle time
+    is raised, so it is claimed again soon instead of after the full idle time.
+
+    The capacity check and the XADD run in one script, so front ends submitting at the same time cannot
+    overfill the stream. Redis errors on the paths of a request are reported as RejectedExecutionException,
+    which the API answers with 503.
+
+    Blocking reads hold their connection until the timeout, so they use a connection of their own, which is
+    opened on the first read and therefore only by worker nodes.
+
+ */
+
+@Component
+@ConditionalOnProperty(name = "ocr.jobs.queue.enabled", havingValue = "true")
+public class RedisJobQueue implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisJobQueue.class);
+
+    static final String STREAM = "ocr:jobs:queue";
+    static final String GROUP = "ocr-workers";
+    private static final String JOB_PREFIX = "ocr:job:";
+
+    private static final String ID = "id";
+    private static final String PRIORITY = "priority";
+    private static final String IMAGE = "image";
+    private static final String STATUS = "status";
+    private static final String TEXT = "text";
+    private static final String ERROR = "error";
+    private static final String CREATED_AT = "createdAt";
+    private static final String COMPLETED_AT = "completedAt";
+    private static final String ATTEMPTS = "attempts";
+
+    private static final RedisCodec<String, byte[]> CODEC = RedisCodec.of(StringCodec.UTF8, ByteArrayCodec.INSTANCE);
+
+    private static final String BOUNDED_XADD = """
+            if redis.call('XLEN', KEYS[1]) >= tonumber(ARGV[1]) then
+                return false
+            end
+            return redis.call('XADD', KEYS[1], '*', ARGV[2], ARGV[3], ARGV[4], ARGV[5], ARGV[6], ARGV[7])
+            """;
+
+    private final RedisClient redisClient;
+    private final StatefulRedisConnection<String, byte[]> connection;
+    private final RedisCommands<String, byte[]> redisCommands;
+    private final long timeToLiveInSeconds;
+    private final long capacity;
+
+    private final Counter submittedJobs;
+    private final Counter rejectedJobs;
+
+    private StatefulRedisConnection<String, byte[]> blockingConnection;
+
+    @Autowired
+    public RedisJobQueue(@Qualifier("redisQueueClient") RedisClient redisClient,
+                         @Value("${ocr.jobs.ttl.in.minutes:10}") long timeToLiveInMinutes,
+                         @Value("${ocr.jobs.queue.capacity:1000}") long capacity,
+                         MeterRegistry meterRegistry) {
+        this(redisClient, Duration.ofMinutes(timeToLiveInMinutes), capacity, meterRegistry);
+    }
+
+    RedisJobQueue(RedisClient redisClient, Duration timeToLive, long capacity, MeterRegistry meterRegistry) {
+        this.redisClient = redisClient;
+        this.connection = redisClient.connect(CODEC);
+        this.redisCommands = connection.sync();
+        this.timeToLiveInSeconds = Math.max(1, timeToLive.toSeconds());
+        this.capacity = capacity;
+
+        this.submittedJobs = Counter.builder("ocr.jobs.queue.submitted")
+                .description("OCR jobs added to the Redis job queue")
+                .register(meterRegistry);
+        this.rejectedJobs = Counter.builder("ocr.jobs.queue.rejected")
+                .description("OCR jobs rejected because the Redis job queue was full or unavailable")
+                .register(meterRegistry);
+    }
+
+    public OCRJob submit(byte[] image, OCRPriority priority) {
+        OCRJob job = OCRJob.pending(UUID.randomUUID().toString());
+        byte[] messageId;
+        try {
+            save(job);
+            messageId = redisCommands.eval(BOUNDED_XADD, ScriptOutputType.VALUE, new String[]{STREAM},
+                    bytes(Long.toString(capacity)), bytes(ID), bytes(job.id()), bytes(PRIORITY), bytes(priority.name()), bytes(IMAGE), image);
+            if (messageId == null) {
+                redisCommands.del(JOB_PREFIX + job.id());
+            }
+        } catch (RedisException e) {
+            rejectedJobs.increment();
+            LOGGER.warn("Could not add OCR job to Redis: " + e.getMessage());
+            throw new RejectedExecutionException("OCR job queue is unavailable", e);
+        }
+        if (messageId == null) {
+            rejectedJobs.increment();
+            throw new RejectedExecutionException("OCR job queue is full");
+        }
+        submittedJobs.increment();
+        return job;
+    }
+
+    public Optional<OCRJob> find(String id) {
+        Map<String, byte[]> fields = call(() -> redisCommands.hgetall(JOB_PREFIX + id));
+        if (fields == null || !fields.containsKey(STATUS)) {
+            return Optional.empty();
+        }
+        return Optional.of(new OCRJob(id,
+                OCRJobStatus.valueOf(string(fields.get(STATUS))),
+                string(fields.get(TEXT)),
+                string(fields.get(ERROR)),
+                instant(fields.get(CREATED_AT)),
+                instant(fields.get(COMPLETED_AT))));
+    }
+
+    public void createGroup() {
+        try {
+            redisCommands.xgroupCreate(XReadArgs.StreamOffset.from(STREAM, "0"), GROUP, XGroupCreateArgs.Builder.mkstream());
+            LOGGER.info("Created consumer group " + GROUP + " on " + STREAM);
+        } catch (RedisBusyException e) {
+            // The group was created by another worker
+        }
+    }
+
+    // xreadgroup takes the stream offsets as generic varargs, of which only one is passed
+    @SuppressWarnings("unchecked")
+    public List<QueuedJob> read(String consumer, int count, Duration timeout) {
+        List<StreamMessage<String, byte[]>> messages = blockingCommands().xreadgroup(Consumer.from(GROUP, consumer),
+                XReadArgs.Builder.block(timeout).count(count), XReadArgs.StreamOffset.lastConsumed(STREAM));
+        return toJobs(messages);
+    }
+
+    /*
+
+        Takes over at most count jobs that have been delivered to any worker, including this one, and not
+        acknowledged for at least minIdleTime. The pending list is scanned from the cursor on, and the
+        returned cursor continues the scan, wrapping around to 0-0 at its end.
+
+     */
+
+    public ClaimedJobs claim(String consumer, Duration minIdleTime, String cursor, int count) {
+        ClaimedMessages<String, byte[]> claimed = redisCommands.xautoclaim(STREAM,
+                XAutoClaimArgs.Builder.<String>xautoclaim(Consumer.from(GROUP, consumer), minIdleTime, cursor).count(count));
+        return new ClaimedJobs(claimed.getId(), toJobs(claimed.getMessages()));
+    }
+
+    /*
+
+        Counts an attempt of the job. Returns the number of the attempt, or 0 when the job has expired.
+
+     */
+
+    public long startAttempt(QueuedJob job) {
+        String key = JOB_PREFIX + job.jobId();
+        return call(() -> redisCommands.exists(key) == 0 ? 0 : redisCommands.hincrby(key, ATTEMPTS, 1));
+    }
+
+    /*
+
+        Gives back the attempt of a job that could not be started and sets the idle time of its entry, so
+        it is claimed again once it has been idle for the claim idle time.
+
+     */
+
+    public void defer(QueuedJob job, String consumer, Duration idleTime) {
+        String key = JOB_PREFIX + job.jobId();
+        call(() -> {
+            if (redisCommands.exists(key) > 0) {
+                redisCommands.hincrby(key, ATTEMPTS, -1);
+            }
+            return redisCommands.xclaim(STREAM, Consumer.from(GROUP, consumer),
+                    XClaimArgs.Builder.justid().idle(idleTime), job.messageId());
+        });
+    }
+
+    public void complete(QueuedJob job, String text) {
+        finish(job, current -> current.done(text));
+    }
+
+    public void fail(QueuedJob job, String error) {
+        finish(job, current -> current.failed(error));
+    }
+
+    public void acknowledge(QueuedJob job) {
+        call(() -> {
+            redisCommands.xack(STREAM, GROUP, job.messageId());
+            return redisCommands.xdel(STREAM, job.messageId());
+        });
+    }
+
+    @Override
+    public synchronized void close() {
+        if (blockingConnection != null) {
+            blockingConnection.close();
+        }
+        connection.close();
+    }
+
+    private void finish(QueuedJob job, UnaryOperator<OCRJob> transition) {
+        find(job.jobId()).map(transition).ifPresent(updated -> call(() -> {
+            save(updated);
+            return null;
+        }));
+        acknowledge(job);
+    }
+
+    private static <T> T call(Supplier<T> command) {
+        try {
+            return command.get();
+        } catch (RedisException e) {
+            LOGGER.warn("Could not reach the OCR job queue in Redis: " + e.getMessage());
+            throw new RejectedExecutionException("OCR job queue is unavailable", e);
+        }
+    }
+
+    private void save(OCRJob job) {
+        String key = JOB_PREFIX + job.id();
+        Map<String, byte[]> fields = new HashMap<>();
+        fields.put(STATUS, bytes(job.status().name()));
+        fields.put(CREATED_AT, bytes(Long.toString(job.createdAt().toEpochMilli())));
+        if (job.text() != null) {
+            fields.put(TEXT, bytes(job.text()));
+        }
+        if (job.error() != null) {
+            fields.put(ERROR, bytes(job.error()));
+        }
+        if (job.completedAt() != null) {
+            fields.put(COMPLETED_AT, bytes(Long.toString(job.completedAt().toEpochMilli())));
+        }
+        redisCommands.hset(key, fields);
+        redisCommands.expire(key, timeToLiveInSeconds);
+    }
+
+    private synchronized RedisCommands<String, byte[]> blockingCommands() {
+        if (blockingConnection == null) {
+            blockingConnection = redisClient.connect(CODEC);
+        }
+        return blockingConnection.sync();
+    }
+
+    private List<QueuedJob> toJobs(List<StreamMessage<String, byte[]>> messages) {
+        List<QueuedJob> jobs = new ArrayList<>(messages.size());
+        for (StreamMessage<String, byte[]> message : messages) {
+            Map<String, byte[]> body = message.getBody();
+            if (body == null || !body.containsKey(ID) || !body.containsKey(IMAGE)) {
+                LOGGER.warn("Dropping malformed entry " + message.getId() + " from " + STREAM);
+                redisCommands.xack(STREAM, GROUP, message.getId());
+                redisCommands.xdel(STREAM, message.getId());
+                continue;
+            }
+            OCRPriority priority = body.containsKey(PRIORITY) ? OCRPriority.valueOf(string(body.get(PRIORITY))) : OCRPriority.FREE;
+            jobs.add(new QueuedJob(message.getId(), string(body.get(ID)), priority, body.get(IMAGE)));
+        }
+        return jobs;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static Instant instant(byte[] value) {
+        return value == null ? null : Instant.ofEpochMilli(Long.parseLong(string(value)));
+    }
+
+    public record QueuedJob(String messageId, String jobId, OCRPriority priority, byte[] image) {
+    }
+
+    public record ClaimedJobs(String cursor, List<QueuedJob> jobs) {
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.kapia.ocr;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchItemResult(int index, String filename, String text, Boolean partial, String error) {
+
+    static BatchItemResult success(int index, String filename, String text) {
+        return new BatchItemResult(index, filename, text, null, null);
+    }
+
+    static BatchItemResult partial(int index, String filename, String text) {
+        return new BatchItemResult(index, filename, text, true, null);
+    }
+
+    static BatchItemResult failure(int index, String filename, String error) {
+        return new BatchItemResult(index, filename, null, null, error);
+    }
+
+}
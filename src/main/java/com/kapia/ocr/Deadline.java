@@ -0,0 +1,25 @@
+package com.kapia.ocr;
+
+import java.time.Duration;
+
+public record Deadline(long expiresAtNanos) {
+
+    public static final Deadline NONE = new Deadline(Long.MAX_VALUE);
+
+    public static Deadline after(Duration timeout) {
+        return new Deadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    public boolean isBounded() {
+        return expiresAtNanos != Long.MAX_VALUE;
+    }
+
+    public boolean isExpired() {
+        return isBounded() && System.nanoTime() - expiresAtNanos >= 0;
+    }
+
+    public long remainingNanos() {
+        return isBounded() ? Math.max(0, expiresAtNanos - System.nanoTime()) : Long.MAX_VALUE;
+    }
+
+}
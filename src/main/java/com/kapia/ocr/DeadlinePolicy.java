@@ -0,0 +1,82 @@
+package com.kapia.ocr;
+
+import com.kapia.ratelimiting.PricingPlan;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/*
+
+    Every OCR request gets the deadline of the pricing plan verified by the rate limiting filter, counted from the moment the request arrives,
+    so time spent waiting for a worker counts too. A client can ask for a different deadline in milliseconds
+    with the X-OCR-Deadline header, which is capped at the configured maximum. Admins get the maximum.
+
+ */
+
+@Component
+public class DeadlinePolicy {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeadlinePolicy.class);
+
+    public static final String DEADLINE_HEADER = "X-OCR-Deadline";
+    public static final String PARTIAL_RESULTS_HEADER = "X-OCR-Partial-Results";
+
+    private final Environment environment;
+    private final Duration maxDeadline;
+
+    @Autowired
+    public DeadlinePolicy(Environment environment, @Value("${ocr.deadline.max.in.seconds:120}") long maxDeadlineInSeconds) {
+        this(environment, Duration.ofSeconds(maxDeadlineInSeconds));
+    }
+
+    public DeadlinePolicy(Environment environment, Duration maxDeadline) {
+        this.environment = environment;
+        this.maxDeadline = maxDeadline;
+    }
+
+    public Deadline resolve(HttpServletRequest request) {
+        return Deadline.after(resolveTimeout(request));
+    }
+
+    public Duration resolveTimeout(HttpServletRequest request) {
+        String requested = request.getHeader(DEADLINE_HEADER);
+        if (requested == null || requested.isBlank()) {
+            Duration planDeadline = planDeadline(OCRPriority.of(request));
+            return planDeadline.compareTo(maxDeadline) > 0 ? maxDeadline : planDeadline;
+        }
+
+        long milliseconds;
+        try {
+            milliseconds = Long.parseLong(requested.trim());
+        } catch (NumberFormatException e) {
+            throw new InvalidDeadlineException("Invalid " + DEADLINE_HEADER + " header: " + requested);
+        }
+        if (milliseconds <= 0) {
+            throw new InvalidDeadlineException(DEADLINE_HEADER + " header must be a positive number of milliseconds");
+        }
+        Duration timeout = Duration.ofMillis(milliseconds);
+        if (timeout.compareTo(maxDeadline) > 0) {
+            LOGGER.debug("Requested deadline of " + milliseconds + " ms capped at " + maxDeadline.toMillis() + " ms");
+            return maxDeadline;
+        }
+        return timeout;
+    }
+
+    private Duration planDeadline(OCRPriority priority) {
+        if (priority == OCRPriority.ADMIN) {
+            return maxDeadline;
+        }
+        return PricingPlan.valueOf(priority.name()).getDeadline(environment);
+    }
+
+    public boolean acceptsPartialResults(HttpServletRequest request) {
+        return Boolean.parseBoolean(request.getHeader(PARTIAL_RESULTS_HEADER));
+    }
+
+}
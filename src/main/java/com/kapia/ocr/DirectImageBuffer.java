@@ -0,0 +1,144 @@
+package com.kapia.ocr;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
+
+/*
+
+    Tess4J passes a BufferedImage to Tesseract by copying its raster twice on the heap and once more into
+    a new direct buffer. For the layouts produced by the PNG and JPEG decoders and by the preprocessing,
+    the pixels are instead written once, row by row, straight from the raster into a direct buffer
+    in the layout expected by TessBaseAPISetImage: 8-bit gray, or 24-bit RGB. Subimages, such as the strips
+    of a large page, are read in place from the raster of their parent, so only their own rows are copied.
+    The buffer belongs to one engine and is reused between images, unless it would be too large to keep.
+
+ */
+
+final class DirectImageBuffer {
+
+    static final int UNSUPPORTED = 0;
+
+    private static final int MAX_RETAINED_BYTES = 32 * 1024 * 1024;
+
+    private ByteBuffer retainedBuffer;
+    private ByteBuffer buffer;
+    private byte[] row = new byte[0];
+
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    int write(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+
+        return switch (image.getType()) {
+            case BufferedImage.TYPE_BYTE_GRAY -> writeGray(image, raster);
+            case BufferedImage.TYPE_3BYTE_BGR -> writeBgr(image, raster);
+            case BufferedImage.TYPE_INT_RGB -> writePackedRgb(image, raster);
+            default -> UNSUPPORTED;
+        };
+    }
+
+    private int writeGray(BufferedImage image, WritableRaster raster) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+        DataBufferByte dataBuffer = (DataBufferByte) raster.getDataBuffer();
+        byte[] data = dataBuffer.getData();
+        int offset = dataBuffer.getOffset() + sampleModel.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+        int scanlineStride = sampleModel.getScanlineStride();
+
+        ByteBuffer target = allocate(width * height);
+        for (int y = 0; y < height; y++) {
+            target.put(data, offset + y * scanlineStride, width);
+        }
+        target.flip();
+        return 8;
+    }
+
+    private int writeBgr(BufferedImage image, WritableRaster raster) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+        DataBufferByte dataBuffer = (DataBufferByte) raster.getDataBuffer();
+        byte[] data = dataBuffer.getData();
+        int[] bandOffsets = sampleModel.getBandOffsets();
+        int pixelStride = sampleModel.getPixelStride();
+        int scanlineStride = sampleModel.getScanlineStride();
+        int baseOffset = dataBuffer.getOffset() - raster.getSampleModelTranslateY() * scanlineStride - raster.getSampleModelTranslateX() * pixelStride;
+
+        ByteBuffer target = allocate(width * height * 3);
+        byte[] rgbRow = row(width * 3);
+        for (int y = 0; y < height; y++) {
+            int source = baseOffset + y * scanlineStride;
+            int index = 0;
+            for (int x = 0; x < width; x++, source += pixelStride) {
+                rgbRow[index++] = data[source + bandOffsets[0]];
+                rgbRow[index++] = data[source + bandOffsets[1]];
+                rgbRow[index++] = data[source + bandOffsets[2]];
+            }
+            target.put(rgbRow, 0, width * 3);
+        }
+        target.flip();
+        return 24;
+    }
+
+    private int writePackedRgb(BufferedImage image, WritableRaster raster) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+        DataBufferInt dataBuffer = (DataBufferInt) raster.getDataBuffer();
+        int[] data = dataBuffer.getData();
+        int scanlineStride = sampleModel.getScanlineStride();
+        int baseOffset = dataBuffer.getOffset() - raster.getSampleModelTranslateY() * scanlineStride - raster.getSampleModelTranslateX();
+
+        ByteBuffer target = allocate(width * height * 3);
+        byte[] rgbRow = row(width * 3);
+        for (int y = 0; y < height; y++) {
+            int source = baseOffset + y * scanlineStride;
+            int index = 0;
+            for (int x = 0; x < width; x++) {
+                int rgb = data[source + x];
+                rgbRow[index++] = (byte) (rgb >> 16);
+                rgbRow[index++] = (byte) (rgb >> 8);
+                rgbRow[index++] = (byte) rgb;
+            }
+            target.put(rgbRow, 0, width * 3);
+        }
+        target.flip();
+        return 24;
+    }
+
+    private ByteBuffer allocate(int size) {
+        if (retainedBuffer != null && retainedBuffer.capacity() >= size) {
+            buffer = retainedBuffer;
+        } else {
+            buffer = ByteBuffer.allocateDirect(size);
+            if (size <= MAX_RETAINED_BYTES) {
+                retainedBuffer = buffer;
+            }
+        }
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    private byte[] row(int size) {
+        if (row.length < size) {
+            row = new byte[size];
+        }
+        return row;
+    }
+
+    void release() {
+        retainedBuffer = null;
+        buffer = null;
+        row = new byte[0];
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.kapia.ocr;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record DocumentPageResult(int page, String text, Boolean partial, String error) {
+
+    static DocumentPageResult success(int page, String text) {
+        return new DocumentPageResult(page, text, null, null);
+    }
+
+    static DocumentPageResult partial(int page, String text) {
+        return new DocumentPageResult(page, text, true, null);
+    }
+
+    static DocumentPageResult failure(int page, String error) {
+        return new DocumentPageResult(page, null, null, error);
+    }
+
+}
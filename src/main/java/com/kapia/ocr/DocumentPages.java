@@ -0,0 +1,23 @@
+package com.kapia.ocr;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+
+/*
+
+    Pages of a multi-page document are decoded one at a time, when they are requested,
+    so only the pages that are currently being recognized are held in memory. The number of pixels
+    of a page is known before it is decoded, so it can be admitted by the pixel budget first.
+
+ */
+
+public interface DocumentPages extends Closeable {
+
+    int getPageCount();
+
+    long getPagePixels(int pageIndex) throws IOException;
+
+    BufferedImage readPage(int pageIndex) throws IOException;
+
+}
@@ -0,0 +1,165 @@
+package com.kapia.ocr;
+
+import com.kapia.exceptionhandling.ResponseExceptionHandler;
+import com.kapia.imaging.PixelBudget;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+/*
+
+    Pages are decoded one by one on the thread writing the response and recognized on the OCR executor.
+    At most a window of pages is decoded or being recognized at any time. Once the window is full,
+    the oldest page is awaited and written before the next page is decoded, so results are streamed
+    in page order and memory does not grow with the length of the document.
+
+    Every page takes its share of the pixel budget before it is decoded, waiting on the thread writing
+    the response, and gives it back once it is recognized, so documents are admitted like uploads.
+
+    All pages share the deadline of the request. A page still running when it passes is reported as
+    timed out, or with its partial text when the client accepts partial results, and the pages after it
+    time out without being decoded.
+
+ */
+
+@Service
+public class DocumentService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DocumentService.class);
+
+    private static final String PDF_CONTENT_TYPE = "application/pdf";
+    private static final String PDF_EXTENSION = ".pdf";
+
+    private final OCRService ocrService;
+    private final OCRExecutor ocrExecutor;
+    private final PixelBudget pixelBudget;
+    private final int maxPages;
+    private final int window;
+    private final float pdfDpi;
+
+    @Autowired
+    public DocumentService(OCRService ocrService,
+                           OCRExecutor ocrExecutor,
+                           PixelBudget pixelBudget,
+                           @Value("${ocr.document.max.pages:200}") int maxPages,
+                           @Value("${ocr.document.window:0}") int window,
+                           @Value("${ocr.document.pdf.dpi:300}") float pdfDpi) {
+        this.ocrService = ocrService;
+        this.ocrExecutor = ocrExecutor;
+        this.pixelBudget = pixelBudget;
+        this.maxPages = maxPages;
+        this.window = window;
+        this.pdfDpi = pdfDpi;
+    }
+
+    public DocumentPages open(MultipartFile document) throws IOException {
+
+        if (document == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+
+        DocumentPages pages = isPdf(document)
+                ? new PdfDocumentPages(document.getInputStream(), pdfDpi)
+                : new TiffDocumentPages(document.getInputStream());
+
+        if (pages.getPageCount() > maxPages) {
+            pages.close();
+            throw new DocumentTooLargeException("Document cannot have more than " + maxPages + " pages");
+        }
+
+        LOGGER.info("Opened document with " + pages.getPageCount() + " pages");
+        return pages;
+    }
+
+    public void processPages(DocumentPages pages, PageResultConsumer consumer) throws IOException {
+        processPages(pages, OCRPriority.FREE, Deadline.NONE, false, consumer);
+    }
+
+    public void processPages(DocumentPages pages, OCRPriority priority, Deadline deadline, boolean partialResults, PageResultConsumer consumer) throws IOException {
+
+        int pageWindow = getWindow();
+        Deque<CompletableFuture<DocumentPageResult>> pending = new ArrayDeque<>(pageWindow);
+
+        for (int pageIndex = 0; pageIndex < pages.getPageCount(); pageIndex++) {
+            if (pending.size() >= pageWindow) {
+                consumer.accept(pending.removeFirst().join());
+            }
+            pending.addLast(submitPage(pages, pageIndex, priority, deadline, partialResults));
+        }
+        while (!pending.isEmpty()) {
+            consumer.accept(pending.removeFirst().join());
+        }
+    }
+
+    private CompletableFuture<DocumentPageResult> submitPage(DocumentPages pages, int pageIndex, OCRPriority priority, Deadline deadline, boolean partialResults) {
+
+        int page = pageIndex + 1;
+        CompletableFuture<String> text;
+        try {
+            PixelBudget.Permit permit = acquire(pages.getPagePixels(pageIndex), deadline);
+            try {
+                BufferedImage image = pages.readPage(pageIndex);
+                text = ocrExecutor.submit(() -> ocrService.processPage(image, deadline), priority);
+            } catch (IOException | RuntimeException e) {
+                permit.close();
+                throw e;
+            }
+            text = text.whenComplete((result, ex) -> permit.close());
+        } catch (IOException | RuntimeException e) {
+            text = CompletableFuture.failedFuture(e);
+        }
+
+        return text.handle((result, ex) -> {
+            if (ex == null) {
+                return DocumentPageResult.success(page, result);
+            }
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            if (partialResults && cause instanceof OCRTimeoutException timeoutException) {
+                return DocumentPageResult.partial(page, timeoutException.getPartialText());
+            }
+            LOGGER.warn("Page " + page + " of the document failed: " + cause.getMessage());
+            return DocumentPageResult.failure(page, ResponseExceptionHandler.getErrorMessage(cause));
+        });
+    }
+
+    private PixelBudget.Permit acquire(long pixels, Deadline deadline) {
+        if (deadline.isExpired()) {
+            throw new OCRTimeoutException("");
+        }
+        try {
+            return pixelBudget.acquire(pixels, deadline.remainingNanos());
+        } catch (RejectedExecutionException e) {
+            if (deadline.isExpired()) {
+                throw new OCRTimeoutException("");
+            }
+            throw e;
+        }
+    }
+
+    private int getWindow() {
+        return window > 0 ? window : ocrExecutor.getWorkerCount();
+    }
+
+    private static boolean isPdf(MultipartFile document) {
+        String filename = document.getOriginalFilename();
+        return PDF_CONTENT_TYPE.equals(document.getContentType())
+                || (filename != null && filename.toLowerCase().endsWith(PDF_EXTENSION));
+    }
+
+    @FunctionalInterface
+    public interface PageResultConsumer {
+        void accept(DocumentPageResult result) throws IOException;
+    }
+
+}
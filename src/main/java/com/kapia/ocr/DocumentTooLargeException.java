@@ -0,0 +1,9 @@
+package com.kapia.ocr;
+
+public class DocumentTooLargeException extends RuntimeException {
+
+    public DocumentTooLargeException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.kapia.ocr;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+
+public record EngineConfig(String datapath, String language, int pageSegMode, int ocrEngineMode, String characterWhitelist) {
+
+    public static final String DEFAULT_LANGUAGE = "eng";
+    // Leaves the page segmentation mode of Tesseract unchanged, which is fully automatic
+    public static final int DEFAULT_PAGE_SEG_MODE = -1;
+    public static final int DEFAULT_OCR_ENGINE_MODE = 3;
+
+    private static final String TRAINEDDATA_EXTENSION = ".traineddata";
+    private static final String MODEL_SEPARATOR = "\\+";
+
+    public EngineConfig {
+        if (datapath == null || datapath.isEmpty()) {
+            throw new IllegalArgumentException("Tessdata path is not set");
+        }
+        if (language == null || language.isEmpty()) {
+            language = DEFAULT_LANGUAGE;
+        }
+        if (pageSegMode < DEFAULT_PAGE_SEG_MODE || pageSegMode > 13) {
+            throw new IllegalArgumentException("Page segmentation mode must be between 0 and 13");
+        }
+        if (ocrEngineMode < 0 || ocrEngineMode > 3) {
+            throw new IllegalArgumentException("OCR engine mode must be between 0 and 3");
+        }
+        if (characterWhitelist == null) {
+            characterWhitelist = "";
+        }
+    }
+
+    public EngineConfig(String datapath, String language) {
+        this(datapath, language, DEFAULT_PAGE_SEG_MODE, DEFAULT_OCR_ENGINE_MODE, "");
+    }
+
+    public EngineConfig withLanguage(String language) {
+        return new EngineConfig(datapath, language, pageSegMode, ocrEngineMode, characterWhitelist);
+    }
+
+    public List<String> models() {
+        return List.of(language.split(MODEL_SEPARATOR));
+    }
+
+    public Path modelPath(String model) {
+        return Path.of(datapath, model + TRAINEDDATA_EXTENSION);
+    }
+
+    public long modelSize() {
+        long size = 0;
+        for (String model : models()) {
+            try {
+                size += Files.size(modelPath(model));
+            } catch (IOException e) {
+                // A missing model fails when the engine is initialized
+            }
+        }
+        return size;
+    }
+
+    /*
+
+        Tells the engine pools apart in metrics: the languages, followed by a short hash of the other settings,
+        so a profile or a language pool reading the same languages as the default pool gets meters of its own.
+
+     */
+
+    public String poolName() {
+        return language + "@" + Integer.toHexString(Objects.hash(datapath, pageSegMode, ocrEngineMode, characterWhitelist));
+    }
+
+    /*
+
+        Identifies the models and settings used by this configuration, so that cached results are not reused
+        after the traineddata files are replaced.
+
+     */
+
+    public String fingerprint() {
+        StringBuilder fingerprint = new StringBuilder(language);
+        for (String model : models()) {
+            Path path = modelPath(model);
+            fingerprint.append('|').append(model);
+            try {
+                fingerprint.append(':').append(Files.size(path))
+                        .append(':').append(Files.getLastModifiedTime(path).toMillis());
+            } catch (IOException e) {
+                fingerprint.append(":missing");
+            }
+        }
+        fingerprint.append("|psm=").append(pageSegMode)
+                .append("|oem=").append(ocrEngineMode)
+                .append("|whitelist=").append(characterWhitelist);
+        return fingerprint.toString();
+    }
+
+}
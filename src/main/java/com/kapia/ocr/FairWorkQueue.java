@@ -0,0 +1,269 @@
+package com.kapia.ocr;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+
+    Wait queue of the OCR workers with one queue per priority. Workers take jobs by stride scheduling:
+    every priority advances its pass by the inverse of its weight whenever one of its jobs is taken, and
+    the non-empty priority with the lowest pass goes next, so under load the priorities share the workers
+    in proportion to their weights. A priority that was idle resumes at the current pass instead of
+    catching up on the turns it missed.
+
+    When the queue is full, a job evicts the newest job of the lowest priority below its own, which is
+    shed, so FREE traffic is turned away first. Runnables without a priority, such as the helpers of
+    parallel strips, only continue work that was already admitted and are taken like ADMIN jobs, but they
+    only use free space and never evict a queued job, since their caller finishes the work on its own.
+
+ */
+
+class FairWorkQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    private static final OCRPriority[] PRIORITIES = OCRPriority.values();
+
+    private final int capacity;
+    private final double[] strides = new double[PRIORITIES.length];
+    private final double[] passes = new double[PRIORITIES.length];
+    private final List<Deque<Runnable>> queues = new ArrayList<>(PRIORITIES.length);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    private double virtualTime;
+    private int count;
+
+    FairWorkQueue(int capacity, int[] weights) {
+        this.capacity = Math.max(1, capacity);
+        for (OCRPriority priority : PRIORITIES) {
+            strides[priority.ordinal()] = 1.0 / Math.max(1, weights[priority.ordinal()]);
+            queues.add(new ArrayDeque<>());
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable task) {
+        int index = priorityOf(task).ordinal();
+        PrioritizedTask shed = null;
+        lock.lock();
+        try {
+            if (count >= capacity) {
+                if (!(task instanceof PrioritizedTask)) {
+                    return false;
+                }
+                shed = evictBelow(index);
+                if (shed == null) {
+                    return false;
+                }
+            }
+            Deque<Runnable> queue = queues.get(index);
+            if (queue.isEmpty()) {
+                passes[index] = Math.max(passes[index], virtualTime);
+            }
+            queue.addLast(task);
+            count++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (shed != null) {
+            shed.onShed().run();
+        }
+        return true;
+    }
+
+    @Override
+    public void put(Runnable task) throws InterruptedException {
+        if (!offer(task)) {
+            throw new IllegalStateException("OCR queue is full");
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable task, long timeout, TimeUnit unit) {
+        return offer(task);
+    }
+
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return count == 0 ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            int index = next();
+            return index < 0 ? null : queues.get(index).peekFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object task) {
+        lock.lock();
+        try {
+            for (Deque<Runnable> queue : queues) {
+                if (queue.remove(task)) {
+                    count--;
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size(OCRPriority priority) {
+        lock.lock();
+        try {
+            return queues.get(priority.ordinal()).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return capacity - count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> target) {
+        return drainTo(target, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> target, int maxElements) {
+        lock.lock();
+        try {
+            int drained = 0;
+            while (count > 0 && drained < maxElements) {
+                target.add(dequeue());
+                drained++;
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Iterator<Runnable> iterator() {
+        lock.lock();
+        try {
+            List<Runnable> snapshot = new ArrayList<>(count);
+            queues.forEach(snapshot::addAll);
+            return snapshot.iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Runnable dequeue() {
+        int index = next();
+        virtualTime = passes[index];
+        passes[index] += strides[index];
+        count--;
+        return queues.get(index).pollFirst();
+    }
+
+    private int next() {
+        int next = -1;
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            if (!queues.get(i).isEmpty() && (next < 0 || passes[i] < passes[next])) {
+                next = i;
+            }
+        }
+        return next;
+    }
+
+    private PrioritizedTask evictBelow(int index) {
+        for (int i = PRIORITIES.length - 1; i > index; i--) {
+            Deque<Runnable> queue = queues.get(i);
+            for (Iterator<Runnable> iterator = queue.descendingIterator(); iterator.hasNext(); ) {
+                if (iterator.next() instanceof PrioritizedTask task) {
+                    iterator.remove();
+                    count--;
+                    return task;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static OCRPriority priorityOf(Runnable task) {
+        return task instanceof PrioritizedTask prioritizedTask ? prioritizedTask.priority() : OCRPriority.ADMIN;
+    }
+
+    record PrioritizedTask(OCRPriority priority, Runnable task, Runnable onShed) implements Runnable {
+
+        @Override
+        public void run() {
+            task.run();
+        }
+
+    }
+
+}
@@ -0,0 +1,144 @@
+package com.kapia.ocr;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/*
+
+    Identical images uploaded at the same moment, e.g. by a client retrying a slow request, share one
+    recognition. The first request submits the recognition to the OCR executor, the others join its future
+    before anything is queued, so they hold neither an OCR worker nor a share of the pixel budget while
+    they wait. Recognitions are keyed like cached results, by the digest of the image bytes and the OCR
+    configuration, and forgotten as soon as they finish.
+
+    Every waiting request keeps its own deadline, applied to its own copy of the shared future. A waiter
+    whose deadline passes first gives up with an empty timeout. When the recognition it joined times out
+    on the deadline of the first request, a waiter with time left starts over instead of taking that
+    timeout and its partial text as its own result. Starting over may wait for the pixel budget, so it
+    runs on a virtual thread rather than on the OCR worker that finished the first recognition.
+
+ */
+
+@Component
+public class InFlightRecognitions {
+
+    private final boolean enabled;
+    private final Map<String, CompletableFuture<String>> recognitions = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+
+    @Autowired
+    public InFlightRecognitions(@Value("${ocr.coalescing.enabled:true}") boolean enabled, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.coalesced = Counter.builder("ocr.coalesced")
+                .description("Requests that waited for the recognition of an identical image instead of starting their own")
+                .register(meterRegistry);
+        Gauge.builder("ocr.coalescing.in.flight", recognitions, Map::size)
+                .description("Recognitions that identical requests can join")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public CompletableFuture<String> submit(String key, Recognition recognition) throws IOException {
+        return submit(key, Deadline.NONE, recognition);
+    }
+
+    public CompletableFuture<String> submit(String key, Deadline deadline, Recognition recognition) throws IOException {
+        if (!enabled) {
+            return recognition.start();
+        }
+
+        CompletableFuture<String> own = new CompletableFuture<>();
+        CompletableFuture<String> inFlight = recognitions.putIfAbsent(key, own);
+        if (inFlight != null) {
+            coalesced.increment();
+            return withinDeadline(join(key, inFlight, deadline, recognition), deadline);
+        }
+
+        CompletableFuture<String> started;
+        try {
+            started = recognition.start();
+        } catch (IOException | RuntimeException e) {
+            recognitions.remove(key, own);
+            own.completeExceptionally(e);
+            throw e;
+        }
+        return started.whenComplete((text, e) -> {
+            recognitions.remove(key, own);
+            if (e == null) {
+                own.complete(text);
+            } else {
+                own.completeExceptionally(unwrap(e));
+            }
+        });
+    }
+
+    private CompletableFuture<String> join(String key, CompletableFuture<String> inFlight, Deadline deadline, Recognition recognition) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        inFlight.whenComplete((text, e) -> {
+            if (e == null) {
+                result.complete(text);
+                return;
+            }
+            Throwable cause = unwrap(e);
+            if (!(cause instanceof OCRTimeoutException)) {
+                result.completeExceptionally(cause);
+            } else if (deadline.isExpired()) {
+                result.completeExceptionally(new OCRTimeoutException(""));
+            } else {
+                recognitions.remove(key, inFlight);
+                Thread.startVirtualThread(() -> startOver(key, deadline, recognition, result));
+            }
+        });
+        return result;
+    }
+
+    private void startOver(String key, Deadline deadline, Recognition recognition, CompletableFuture<String> result) {
+        try {
+            submit(key, deadline, recognition).whenComplete((text, e) -> {
+                if (e == null) {
+                    result.complete(text);
+                } else {
+                    result.completeExceptionally(unwrap(e));
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    private static CompletableFuture<String> withinDeadline(CompletableFuture<String> result, Deadline deadline) {
+        if (!deadline.isBounded()) {
+            return result;
+        }
+        return result.orTimeout(deadline.remainingNanos(), TimeUnit.NANOSECONDS)
+                .exceptionallyCompose(e -> {
+                    Throwable cause = unwrap(e);
+                    return CompletableFuture.failedFuture(cause instanceof TimeoutException ? new OCRTimeoutException("") : cause);
+                });
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    @FunctionalInterface
+    public interface Recognition {
+        CompletableFuture<String> start() throws IOException;
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.kapia.ocr;
+
+public class InvalidDeadlineException extends IllegalArgumentException {
+
+    public InvalidDeadlineException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.kapia.ocr;
+
+public class InvalidLanguageException extends IllegalArgumentException {
+
+    public InvalidLanguageException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.kapia.ocr;
+
+public class InvalidOutputFormatException extends IllegalArgumentException {
+
+    public InvalidOutputFormatException(String message) {
+        super(message);
+    }
+
+}
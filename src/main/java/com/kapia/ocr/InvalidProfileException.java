@@ -0,0 +1,9 @@
+package com.kapia.ocr;
+
+public class InvalidProfileException extends IllegalArgumentException {
+
+    public InvalidProfileException(String message) {
+        super(message);
+    }
+
+}
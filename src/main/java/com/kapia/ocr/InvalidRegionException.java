@@ -0,0 +1,9 @@
+package com.kapia.ocr;
+
+public class InvalidRegionException extends IllegalArgumentException {
+
+    public InvalidRegionException(String message) {
+        super(message);
+    }
+
+}
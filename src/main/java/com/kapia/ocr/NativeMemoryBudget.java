@@ -0,0 +1,210 @@
+package com.kapia.ocr;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/*
+
+    Tesseract and Leptonica allocate outside of the JVM heap, so heap metrics do not show them. Every
+    recognition reserves an estimate of its native memory before an engine gets the image: Tess4J copies
+    the pixels into a Leptonica image, Tesseract keeps a grey and a binary copy of it and the line images
+    of the LSTM, which together take about the configured number of bytes per pixel for every engine
+    that recognizes the image. The models of the open engines are counted against the budget as well.
+
+    A recognition that does not fit waits until earlier ones release their memory and is rejected once
+    the wait times out. It runs on an OCR worker, so it never waits past its own deadline: a recognition
+    whose deadline passes while it waits times out instead, and one that is already late only takes
+    memory that is free at once. A recognition larger than the whole budget is admitted only when nothing else
+    is reserved, so large images are recognized one at a time instead of never. A budget of 0 only
+    keeps the accounting.
+
+    The resident set size of the process is read from /proc, so it includes the native memory that the
+    estimates do not cover.
+
+ */
+
+@Component
+public class NativeMemoryBudget {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NativeMemoryBudget.class);
+
+    private static final Path PROCESS_STATUS = Path.of("/proc/self/status");
+    private static final String RESIDENT_SET_SIZE = "VmRSS:";
+
+    private final long budgetInBytes;
+    private final long bytesPerPixel;
+    private final Duration waitTimeout;
+    private final LongSupplier modelMemory;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    private long reserved;
+    private int reservations;
+
+    private final Timer waitTimer;
+    private final Counter rejections;
+
+    @Autowired
+    public NativeMemoryBudget(TesseractEnginePoolRegistry enginePools,
+                              @Value("${ocr.native.memory.budget.in.megabytes:2048}") long budgetInMegabytes,
+                              @Value("${ocr.native.memory.bytes.per.pixel:8}") long bytesPerPixel,
+                              @Value("${ocr.native.memory.wait.timeout.in.seconds:10}") long waitTimeoutInSeconds,
+                              MeterRegistry meterRegistry) {
+        this(budgetInMegabytes * 1024 * 1024, bytesPerPixel, Duration.ofSeconds(waitTimeoutInSeconds), enginePools::getModelMemory, meterRegistry);
+    }
+
+    public NativeMemoryBudget(long budgetInBytes, long bytesPerPixel, Duration waitTimeout, LongSupplier modelMemory, MeterRegistry meterRegistry) {
+        this.budgetInBytes = Math.max(0, budgetInBytes);
+        this.bytesPerPixel = Math.max(1, bytesPerPixel);
+        this.waitTimeout = waitTimeout;
+        this.modelMemory = modelMemory;
+
+        Gauge.builder("ocr.native.memory.reserved", this, NativeMemoryBudget::getReserved)
+                .description("Estimated native memory of the running recognitions")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("ocr.native.memory.models", modelMemory, LongSupplier::getAsLong)
+                .description("Estimated native memory of the models loaded by open engines")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("ocr.native.memory.budget", this, budget -> budget.budgetInBytes)
+                .description("Native memory available to recognitions and models, 0 if unlimited")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("process.memory.rss", NativeMemoryBudget::readResidentSetSize)
+                .description("Resident set size of the process, including native memory")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("ocr.native.memory.wait")
+                .description("Time recognitions waited for native memory")
+                .register(meterRegistry);
+        this.rejections = Counter.builder("ocr.native.memory.rejected")
+                .description("Recognitions rejected because the native memory budget was exhausted")
+                .register(meterRegistry);
+    }
+
+    public Reservation reserve(BufferedImage image, int engines, Deadline deadline) {
+        return reserve(estimate(image, engines), deadline);
+    }
+
+    public long estimate(BufferedImage image, int engines) {
+        return (long) image.getWidth() * image.getHeight() * bytesPerPixel * Math.max(1, engines);
+    }
+
+    public Reservation reserve(long bytes) {
+        return reserve(bytes, Deadline.NONE);
+    }
+
+    public Reservation reserve(long bytes, Deadline deadline) {
+        long start = System.nanoTime();
+        long nanos = Math.min(waitTimeout.toNanos(), deadline.remainingNanos());
+        lock.lock();
+        try {
+            while (!fits(bytes)) {
+                if (nanos <= 0) {
+                    if (deadline.isExpired()) {
+                        throw new OCRTimeoutException("");
+                    }
+                    rejections.increment();
+                    LOGGER.warn("Native memory budget exhausted, rejecting recognition of " + bytes / 1024 / 1024 + " MB");
+                    throw new RejectedExecutionException("Native memory budget exhausted");
+                }
+                try {
+                    nanos = released.awaitNanos(nanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException("Interrupted while waiting for native memory", e);
+                }
+            }
+            reserved += bytes;
+            reservations++;
+        } finally {
+            lock.unlock();
+        }
+        waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return new Reservation(bytes);
+    }
+
+    public long getReserved() {
+        lock.lock();
+        try {
+            return reserved;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean fits(long bytes) {
+        return budgetInBytes == 0 || reservations == 0 || reserved + bytes + modelMemory.getAsLong() <= budgetInBytes;
+    }
+
+    private void release(long bytes) {
+        lock.lock();
+        try {
+            reserved -= bytes;
+            reservations--;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static double readResidentSetSize() {
+        try {
+            for (String line : Files.readAllLines(PROCESS_STATUS)) {
+                if (line.startsWith(RESIDENT_SET_SIZE)) {
+                    return parseKilobytes(line.substring(RESIDENT_SET_SIZE.length())) * 1024;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Not available outside of Linux
+        }
+        return Double.NaN;
+    }
+
+    private static double parseKilobytes(String value) {
+        return Double.parseDouble(value.trim().split("\\s+")[0]);
+    }
+
+    public class Reservation implements AutoCloseable {
+
+        private final long bytes;
+        private boolean closed;
+
+        private Reservation(long bytes) {
+            this.bytes = bytes;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(bytes);
+            }
+        }
+    }
+
+}
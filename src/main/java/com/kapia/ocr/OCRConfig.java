@@ -0,0 +1,73 @@
+package com.kapia.ocr;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import net.sourceforge.tess4j.TesseractException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class OCRConfig {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OCRConfig.class);
+
+    @Value("${tessdata.path}")
+    private String TESSDATA_PATH;
+
+    @Value("${ocr.pool.size:0}")
+    private int poolSize;
+
+    @Value("${ocr.pool.borrow.timeout.in.seconds:30}")
+    private long borrowTimeoutInSeconds;
+
+    @Value("${ocr.languages.pool.size:0}")
+    private int languagePoolSize;
+
+    @Value("${ocr.languages.max.pools:8}")
+    private int maxLanguagePools;
+
+    @Value("${ocr.languages.memory.budget.in.megabytes:1024}")
+    private long languageMemoryBudgetInMegabytes;
+
+    @Bean(destroyMethod = "close")
+    public TesseractEnginePool tesseractEnginePool(MeterRegistry meterRegistry) {
+        checkIfTesseractPathIsSet();
+        return new TesseractEnginePool(
+                new EngineConfig(TESSDATA_PATH, EngineConfig.DEFAULT_LANGUAGE),
+                resolvePoolSize(),
+                Duration.ofSeconds(borrowTimeoutInSeconds),
+                meterRegistry);
+    }
+
+    @Bean(destroyMethod = "close")
+    public TesseractEnginePoolRegistry tesseractEnginePoolRegistry(TesseractEnginePool tesseractEnginePool, OCRProfiles ocrProfiles, MeterRegistry meterRegistry) throws TesseractException {
+        TesseractEnginePoolRegistry registry = new TesseractEnginePoolRegistry(
+                tesseractEnginePool,
+                languagePoolSize > 0 ? languagePoolSize : resolvePoolSize(),
+                Duration.ofSeconds(borrowTimeoutInSeconds),
+                maxLanguagePools,
+                languageMemoryBudgetInMegabytes * 1024 * 1024,
+                meterRegistry);
+        for (OCRProfile profile : ocrProfiles.getProfiles()) {
+            registry.pin(profile.engineConfig());
+            LOGGER.info("Preloaded engines of OCR profile: " + profile.name());
+        }
+        return registry;
+    }
+
+    private int resolvePoolSize() {
+        return poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+    }
+
+    private void checkIfTesseractPathIsSet() {
+        if (TESSDATA_PATH == null || TESSDATA_PATH.isEmpty()) {
+            LOGGER.error("Tessdata path is not set");
+            throw new IllegalArgumentException("Tessdata path is not set");
+        }
+    }
+
+}
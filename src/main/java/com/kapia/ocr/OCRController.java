@@ -1,5 +1,9 @@
 package com.kapia.ocr;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kapia.exceptionhandling.ResponseExceptionHandler;
+import com.kapia.ratelimiting.RateLimitExceededException;
+import com.kapia.ratelimiting.TokenCharge;
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -10,18 +14,27 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.security.SecurityRequirements;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import net.sourceforge.tess4j.TesseractException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @OpenAPIDefinition(
@@ -34,24 +47,188 @@ import java.io.IOException;
 public class OCRController {
 
     private final OCRService ocrService;
+    private final OCRExecutor ocrExecutor;
+    private final DocumentService documentService;
+    private final ObjectMapper objectMapper;
+    private final DeadlinePolicy deadlinePolicy;
 
     private final static Logger LOGGER = LoggerFactory.getLogger(OCRController.class);
 
+    private final static String PARTIAL_HEADER = "X-OCR-Partial";
+
     @Autowired
-    public OCRController(OCRService ocrService) {
+    public OCRController(OCRService ocrService, OCRExecutor ocrExecutor, DocumentService documentService, ObjectMapper objectMapper, DeadlinePolicy deadlinePolicy) {
         this.ocrService = ocrService;
+        this.ocrExecutor = ocrExecutor;
+        this.documentService = documentService;
+        this.objectMapper = objectMapper;
+        this.deadlinePolicy = deadlinePolicy;
     }
 
     @Operation(summary = "Process the image", description = "Endpoint that processes the image and returns the text found in it.")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Image processed", content = @Content(mediaType = "text/plain")),
+            @ApiResponse(responseCode = "200", description = "Image processed, or partially processed when the X-OCR-Partial header is set", content = @Content(mediaType = "text/plain")),
             @ApiResponse(responseCode = "400", description = "Bad request", content = @Content(mediaType = "text/plain")),
-            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content(mediaType = "text/plain"))
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content(mediaType = "text/plain")),
+            @ApiResponse(responseCode = "503", description = "OCR queue is full, retry after the time given in the Retry-After header", content = @Content(mediaType = "text/plain")),
+            @ApiResponse(responseCode = "504", description = "OCR deadline exceeded", content = @Content(mediaType = "text/plain"))
     })
     @PostMapping(value = "/getOCR", consumes = "multipart/form-data", produces = "text/plain")
-    public ResponseEntity<String> processImage(@RequestParam("image") @Parameter(name = "image", description = "Image to be processed") MultipartFile image) throws IOException, TesseractException {
+    public CompletableFuture<ResponseEntity<String>> processImage(@RequestParam("image") @Parameter(name = "image", description = "Image to be processed") MultipartFile image,
+                                                                  @RequestParam(value = "preprocessing", required = false) @Parameter(name = "preprocessing", description = "Comma separated preprocessing stages: grayscale, dpi, deskew, denoise, otsu, adaptive or none") String preprocessing,
+                                                                  @RequestParam(value = "lang", required = false) @Parameter(name = "lang", description = "Language of the text, or languages joined with +, e.g. eng+deu. Defaults to eng") String language,
+                                                                  @RequestParam(value = "profile", required = false) @Parameter(name = "profile", description = "Name of a configured OCR profile, e.g. fast-digits") String profile,
+                                                                  HttpServletRequest request) throws IOException {
         LOGGER.info("Processing image from request");
-        return ResponseEntity.status(HttpStatus.OK).body(ocrService.processImage(image));
+        OCROptions options = createOptions(profile, language, preprocessing, request);
+        return ocrService.submitImage(image, options, OCRPriority.of(request))
+                .handle((text, e) -> {
+                    if (e == null) {
+                        return ResponseEntity.status(HttpStatus.OK).body(text);
+                    }
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (options.partialResults() && cause instanceof OCRTimeoutException timeoutException) {
+                        LOGGER.info("Returning partial text after the OCR deadline");
+                        return ResponseEntity.status(HttpStatus.OK).header(PARTIAL_HEADER, "true").body(timeoutException.getPartialText());
+                    }
+                    throw e instanceof CompletionException completionException ? completionException : new CompletionException(e);
+                });
+
+    }
+
+    @Operation(summary = "Process regions of the image", description = "Endpoint that recognizes only the given regions of the image and returns the text found in each of them, in the order of the request. Regions are given as x,y,width,height in pixels, separated with semicolons.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Regions processed", content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "400", description = "Bad request", content = @Content(mediaType = "text/plain")),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content(mediaType = "text/plain")),
+            @ApiResponse(responseCode = "503", description = "OCR queue is full, retry after the time given in the Retry-After header", content = @Content(mediaType = "text/plain")),
+            @ApiResponse(responseCode = "504", description = "OCR deadline exceeded", content = @Content(mediaType = "text/plain"))
+    })
+    @PostMapping(value = "/getOCR", params = "regions", consumes = "multipart/form-data", produces = "application/json")
+    public CompletableFuture<ResponseEntity<List<RegionResult>>> processRegions(@RequestParam("image") @Parameter(name = "image", description = "Image to be processed") MultipartFile image,
+                                                                                @RequestParam("regions") @Parameter(name = "regions", description = "Regions to be recognized, e.g. 0,0,600,80;0,900,600,120") String regions,
+                                                                                @RequestParam(value = "lang", required = false) @Parameter(name = "lang", description = "Language of the text, or languages joined with +, e.g. eng+deu. Defaults to eng") String language,
+                                                                                @RequestParam(value = "profile", required = false) @Parameter(name = "profile", description = "Name of a configured OCR profile, e.g. fast-digits") String profile,
+                                                                                HttpServletRequest request) throws IOException {
+        List<OCRRegion> parsedRegions = OCRRegion.parseAll(regions);
+        LOGGER.info("Processing " + parsedRegions.size() + " regions of image from request");
+        OCROptions options = createOptions(profile, language, null, request);
+        return ocrService.submitRegions(image, parsedRegions, options, OCRPriority.of(request))
+                .thenApply(results -> ResponseEntity.status(HttpStatus.OK).body(results));
+    }
+
+    @Operation(summary = "Process the image and return its layout", description = "Endpoint that recognizes the image once and returns its text together with the blocks, lines and words found in it, with their bounding boxes and confidences, as JSON or CBOR.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Image processed", content = {@Content(mediaType = "application/json"), @Content(mediaType = "application/cbor")}),
+            @ApiResponse(responseCode = "400", description = "Bad request", content = @Content(mediaType = "text/plain")),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content(mediaType = "text/plain")),
+            @ApiResponse(responseCode = "503", description = "OCR queue is full, retry after the time given in the Retry-After header", content = @Content(mediaType = "text/plain")),
+            @ApiResponse(responseCode = "504", description = "OCR deadline exceeded", content = @Content(mediaType = "text/plain"))
+    })
+    @PostMapping(value = "/getOCR", params = {"format", "!regions"}, consumes = "multipart/form-data", produces = {"application/json", "application/cbor"})
+    public CompletableFuture<ResponseEntity<byte[]>> processStructured(@RequestParam("image") @Parameter(name = "image", description = "Image to be processed") MultipartFile image,
+                                                                       @RequestParam("format") @Parameter(name = "format", description = "Format of the response, json or cbor") String format,
+                                                                       @RequestParam(value = "preprocessing", required = false) @Parameter(name = "preprocessing", description = "Comma separated preprocessing stages: grayscale, dpi, deskew, denoise, otsu, adaptive or none") String preprocessing,
+                                                                       @RequestParam(value = "lang", required = false) @Parameter(name = "lang", description = "Language of the text, or languages joined with +, e.g. eng+deu. Defaults to eng") String language,
+                                                                       @RequestParam(value = "profile", required = false) @Parameter(name = "profile", description = "Name of a configured OCR profile, e.g. fast-digits") String profile,
+                                                                       HttpServletRequest request) throws IOException {
+        StructuredFormat structuredFormat = StructuredFormat.parse(format);
+        LOGGER.info("Processing image from request as " + structuredFormat);
+        OCROptions options = createOptions(profile, language, preprocessing, request);
+        return ocrService.submitStructured(image, options, structuredFormat, OCRPriority.of(request))
+                .thenApply(result -> ResponseEntity.status(HttpStatus.OK).contentType(structuredFormat.getMediaType()).body(result));
+    }
+
+    @Operation(summary = "Process a batch of images", description = "Endpoint that processes many images in parallel and streams one JSON line per image, in the order of the request. Failures are reported per image. All images share the deadline of the request; an image not recognized in time is reported as timed out, or with its partial text when X-OCR-Partial-Results is true.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Images processed", content = @Content(mediaType = "application/x-ndjson")),
+            @ApiResponse(responseCode = "400", description = "Bad request", content = @Content(mediaType = "text/plain"))
+    })
+    @PostMapping(value = "/getOCR/batch", consumes = "multipart/form-data", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> processBatch(@RequestParam("image") @Parameter(name = "image", description = "Images to be processed") List<MultipartFile> images,
+                                                              HttpServletRequest request) {
+        LOGGER.info("Processing batch of " + images.size() + " images from request");
+
+        OCRPriority priority = OCRPriority.of(request);
+        OCROptions options = createOptions(null, null, null, request);
 
+        // At most one image per OCR worker is submitted at a time, like the pages of a document, so a batch
+        // larger than the OCR queue is processed instead of having its tail rejected
+        StreamingResponseBody body = outputStream -> {
+            int window = ocrExecutor.getWorkerCount();
+            Deque<CompletableFuture<String>> pending = new ArrayDeque<>(window);
+            int next = 0;
+            for (int i = 0; i < images.size(); i++) {
+                while (next < images.size() && pending.size() < window) {
+                    pending.addLast(submitBatchItem(images.get(next++), options, priority));
+                }
+                writeLine(outputStream, toBatchItemResult(i, images.get(i).getOriginalFilename(), pending.removeFirst(), options.partialResults()));
+            }
+        };
+        return ResponseEntity.status(HttpStatus.OK).contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
+
+    @Operation(summary = "Process a multi-page document", description = "Endpoint that processes a multi-page TIFF or PDF document and streams one JSON line per page, in page order, as soon as the page is recognized. Failures are reported per page. All pages share the deadline of the request; a page not recognized in time is reported as timed out, or with its partial text when X-OCR-Partial-Results is true.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Document processed", content = @Content(mediaType = "application/x-ndjson")),
+            @ApiResponse(responseCode = "400", description = "Bad request", content = @Content(mediaType = "text/plain")),
+            @ApiResponse(responseCode = "413", description = "Document has too many pages", content = @Content(mediaType = "text/plain")),
+            @ApiResponse(responseCode = "429", description = "Document has more pages than the remaining rate limit", content = @Content(mediaType = "text/plain"))
+    })
+    @PostMapping(value = "/getOCR/document", consumes = "multipart/form-data", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> processDocument(@RequestParam("document") @Parameter(name = "document", description = "TIFF or PDF document to be processed") MultipartFile document,
+                                                                 HttpServletRequest request,
+                                                                 HttpServletResponse response) throws IOException {
+        LOGGER.info("Processing document from request");
+
+        Deadline deadline = deadlinePolicy.resolve(request);
+        boolean partialResults = deadlinePolicy.acceptsPartialResults(request);
+        DocumentPages pages = documentService.open(document);
+        // The rate limiting filter charged one token for the request, every further page costs another one
+        int pageCount = pages.getPageCount();
+        if (pageCount > 1 && !TokenCharge.of(request).tryConsume(pageCount - 1, response)) {
+            pages.close();
+            throw new RateLimitExceededException("Document has more pages than the remaining rate limit");
+        }
+        OCRPriority priority = OCRPriority.of(request);
+
+        StreamingResponseBody body = outputStream -> {
+            try (pages) {
+                documentService.processPages(pages, priority, deadline, partialResults, page -> writeLine(outputStream, page));
+            }
+        };
+        return ResponseEntity.status(HttpStatus.OK).contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    private OCROptions createOptions(String profile, String language, String preprocessing, HttpServletRequest request) {
+        return new OCROptions(profile, language, preprocessing, deadlinePolicy.resolve(request), deadlinePolicy.acceptsPartialResults(request));
+    }
+
+    private CompletableFuture<String> submitBatchItem(MultipartFile image, OCROptions options, OCRPriority priority) {
+        try {
+            return ocrService.submitImage(image, options, priority);
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private BatchItemResult toBatchItemResult(int index, String filename, CompletableFuture<String> result, boolean partialResults) {
+        try {
+            return BatchItemResult.success(index, filename, result.join());
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (partialResults && cause instanceof OCRTimeoutException timeoutException) {
+                return BatchItemResult.partial(index, filename, timeoutException.getPartialText());
+            }
+            LOGGER.warn("Image " + index + " of the batch failed: " + cause.getMessage());
+            return BatchItemResult.failure(index, filename, ResponseExceptionHandler.getErrorMessage(cause));
+        }
+    }
+
+    private void writeLine(OutputStream outputStream, Object line) throws IOException {
+        outputStream.write(objectMapper.writeValueAsBytes(line));
+        outputStream.write('\n');
+        outputStream.flush();
+    }
+
 }
@@ -0,0 +1,205 @@
+package com.kapia.ocr;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+
+    OCR runs on its own bounded pool of worker threads instead of the servlet threads, so a burst of uploads
+    cannot occupy every Tomcat thread. Jobs that do not fit into the wait queue are rejected immediately.
+
+    Tesseract may additionally parallelize a single recognition with OpenMP. Unless OMP_THREAD_LIMIT is set,
+    every job can start one OpenMP thread per core, so the default number of workers is the number of
+    processors divided by OMP_THREAD_LIMIT.
+
+    Workers are always platform threads. When requests run on virtual threads, native Tesseract calls stay
+    on this small pool and never pin the carrier threads shared by the requests.
+
+    Waiting jobs are taken by the weights of their priorities, see FairWorkQueue, so paying plans and admins
+    keep their latency when FREE traffic saturates the workers.
+
+ */
+
+@Component
+public class OCRExecutor implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OCRExecutor.class);
+
+    private static final String OMP_THREAD_LIMIT = "OMP_THREAD_LIMIT";
+
+    private final ThreadPoolExecutor executor;
+    private final FairWorkQueue queue;
+    private final Counter rejections;
+    private final Map<OCRPriority, Timer> waits = new EnumMap<>(OCRPriority.class);
+    private final Map<OCRPriority, Counter> shedJobs = new EnumMap<>(OCRPriority.class);
+
+    @Autowired
+    public OCRExecutor(@Value("${ocr.executor.threads:0}") int threads,
+                       @Value("${ocr.executor.queue.capacity:50}") int queueCapacity,
+                       @Value("${ocr.scheduler.weights.admin:8}") int adminWeight,
+                       @Value("${ocr.scheduler.weights.pro:4}") int proWeight,
+                       @Value("${ocr.scheduler.weights.basic:2}") int basicWeight,
+                       @Value("${ocr.scheduler.weights.free:1}") int freeWeight,
+                       MeterRegistry meterRegistry) {
+        this(threads, queueCapacity, new int[]{adminWeight, proWeight, basicWeight, freeWeight}, meterRegistry);
+    }
+
+    public OCRExecutor(int threads, int queueCapacity, MeterRegistry meterRegistry) {
+        this(threads, queueCapacity, defaultWeights(), meterRegistry);
+    }
+
+    public OCRExecutor(int threads, int queueCapacity, int[] weights, MeterRegistry meterRegistry) {
+        int ompThreadLimit = resolveOmpThreadLimit();
+        int availableProcessors = Runtime.getRuntime().availableProcessors();
+        int workers = threads > 0 ? threads : Math.max(1, availableProcessors / ompThreadLimit);
+
+        if (workers * ompThreadLimit > availableProcessors) {
+            LOGGER.warn("OCR workers (" + workers + ") multiplied by " + OMP_THREAD_LIMIT + " (" + ompThreadLimit + ") exceed available processors (" + availableProcessors + ")");
+        }
+
+        this.queue = new FairWorkQueue(queueCapacity, weights);
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                queue,
+                new WorkerThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("ocr.executor.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("OCR jobs currently running")
+                .register(meterRegistry);
+        Gauge.builder("ocr.executor.queued", executor, e -> e.getQueue().size())
+                .description("OCR jobs waiting for a worker")
+                .register(meterRegistry);
+        this.rejections = Counter.builder("ocr.executor.rejected")
+                .description("OCR jobs rejected because the queue was full")
+                .register(meterRegistry);
+        for (OCRPriority priority : OCRPriority.values()) {
+            Gauge.builder("ocr.scheduler.queued", queue, q -> q.size(priority))
+                    .description("OCR jobs of a priority waiting for a worker")
+                    .tag("priority", priority.getTag())
+                    .register(meterRegistry);
+            waits.put(priority, Timer.builder("ocr.scheduler.wait")
+                    .description("Time OCR jobs of a priority waited for a worker")
+                    .tag("priority", priority.getTag())
+                    .register(meterRegistry));
+            shedJobs.put(priority, Counter.builder("ocr.scheduler.shed")
+                    .description("Queued OCR jobs of a priority dropped for jobs of a higher priority")
+                    .tag("priority", priority.getTag())
+                    .register(meterRegistry));
+        }
+
+        LOGGER.info("Created OCR executor with " + workers + " workers and queue capacity " + queueCapacity);
+    }
+
+    public <T> CompletableFuture<T> submit(OCRTask<T> task) {
+        return submit(task, OCRPriority.FREE);
+    }
+
+    public <T> CompletableFuture<T> submit(OCRTask<T> task, OCRPriority priority) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long submittedAt = System.nanoTime();
+        Runnable job = () -> {
+            waits.get(priority).record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+            try {
+                future.complete(task.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        };
+        Runnable onShed = () -> {
+            shedJobs.get(priority).increment();
+            LOGGER.warn("OCR queue is full, dropping queued " + priority + " job");
+            future.completeExceptionally(new RejectedExecutionException("OCR job was dropped for a job of a higher priority"));
+        };
+        try {
+            executor.execute(new FairWorkQueue.PrioritizedTask(priority, job, onShed));
+        } catch (RejectedExecutionException e) {
+            rejections.increment();
+            LOGGER.warn("OCR queue is full, rejecting " + priority + " job");
+            throw e;
+        }
+        return future;
+    }
+
+    /*
+
+        Runs a helper task if a worker can take it, without counting a rejection. The task only takes free
+        space in the queue and never sheds a queued job. The caller must be able to finish the work on its
+        own, because the task may wait in the queue or not be run at all.
+
+     */
+
+    public boolean offer(Runnable task) {
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    public int getIdleWorkerCount() {
+        return Math.max(0, executor.getMaximumPoolSize() - executor.getActiveCount());
+    }
+
+    public int getWorkerCount() {
+        return executor.getMaximumPoolSize();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private static int[] defaultWeights() {
+        int[] weights = new int[OCRPriority.values().length];
+        for (OCRPriority priority : OCRPriority.values()) {
+            weights[priority.ordinal()] = priority.getDefaultWeight();
+        }
+        return weights;
+    }
+
+    private static int resolveOmpThreadLimit() {
+        String value = System.getenv(OMP_THREAD_LIMIT);
+        if (value == null || value.isEmpty()) {
+            LOGGER.warn(OMP_THREAD_LIMIT + " is not set, Tesseract may start one OpenMP thread per core for every OCR job");
+            return 1;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid value of " + OMP_THREAD_LIMIT + ": " + value);
+            return 1;
+        }
+    }
+
+    @FunctionalInterface
+    public interface OCRTask<T> {
+        T call() throws Exception;
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return Thread.ofPlatform()
+                    .name("ocr-worker-" + counter.incrementAndGet())
+                    .daemon(true)
+                    .unstarted(runnable);
+        }
+    }
+
+}
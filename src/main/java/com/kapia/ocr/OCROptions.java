@@ -0,0 +1,17 @@
+package com.kapia.ocr;
+
+public record OCROptions(String profile, String language, String preprocessing, Deadline deadline, boolean partialResults) {
+
+    public static final OCROptions DEFAULT = new OCROptions(null, null, null);
+
+    public OCROptions {
+        if (deadline == null) {
+            deadline = Deadline.NONE;
+        }
+    }
+
+    public OCROptions(String profile, String language, String preprocessing) {
+        this(profile, language, preprocessing, Deadline.NONE, false);
+    }
+
+}
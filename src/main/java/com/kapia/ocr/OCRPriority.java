@@ -0,0 +1,48 @@
+package com.kapia.ocr;
+
+import com.kapia.ratelimiting.PricingPlan;
+import jakarta.servlet.http.HttpServletRequest;
+
+/*
+
+    Scheduling class of OCR work. The rate limiting filter stores the class in the request once it has
+    verified the API key or the role of the user, so requests without it are scheduled as FREE.
+
+ */
+
+public enum OCRPriority {
+
+    ADMIN(8),
+    PRO(4),
+    BASIC(2),
+    FREE(1);
+
+    public static final String REQUEST_ATTRIBUTE = OCRPriority.class.getName();
+
+    private final int defaultWeight;
+
+    OCRPriority(int defaultWeight) {
+        this.defaultWeight = defaultWeight;
+    }
+
+    public int getDefaultWeight() {
+        return defaultWeight;
+    }
+
+    public String getTag() {
+        return name().toLowerCase();
+    }
+
+    public static OCRPriority of(PricingPlan plan) {
+        return switch (plan) {
+            case PRO -> PRO;
+            case BASIC -> BASIC;
+            case FREE -> FREE;
+        };
+    }
+
+    public static OCRPriority of(HttpServletRequest request) {
+        return request.getAttribute(REQUEST_ATTRIBUTE) instanceof OCRPriority priority ? priority : FREE;
+    }
+
+}
@@ -0,0 +1,7 @@
+package com.kapia.ocr;
+
+public record OCRProfile(String name, EngineConfig engineConfig, String preprocessing) {
+
+    public static final String DEFAULT_NAME = "default";
+
+}
@@ -0,0 +1,89 @@
+package com.kapia.ocr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/*
+
+    A profile is a named set of engine settings, e.g. the fast models with a single line segmentation and
+    a digit whitelist for meter readings. Engines of every profile are created at startup with these settings
+    and kept in their own pool, so a request only picks a pool instead of reconfiguring an engine.
+
+ */
+
+@Component
+public class OCRProfiles {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OCRProfiles.class);
+
+    private static final String PROFILE_PREFIX = "ocr.profiles.";
+    private static final String NAME_SEPARATOR = ",";
+    private static final Pattern NAME_PATTERN = Pattern.compile("[a-z0-9][a-z0-9_-]*");
+
+    private final OCRProfile defaultProfile;
+    private final Map<String, OCRProfile> profiles = new LinkedHashMap<>();
+
+    @Autowired
+    public OCRProfiles(@Value("${tessdata.path}") String tessdataPath,
+                       @Value("${ocr.profiles.names:}") String names,
+                       Environment environment) {
+        this(new EngineConfig(tessdataPath, EngineConfig.DEFAULT_LANGUAGE), readProfiles(tessdataPath, names, environment));
+    }
+
+    public OCRProfiles(EngineConfig defaultConfig, List<OCRProfile> profiles) {
+        this.defaultProfile = new OCRProfile(OCRProfile.DEFAULT_NAME, defaultConfig, null);
+        for (OCRProfile profile : profiles) {
+            this.profiles.put(profile.name(), profile);
+        }
+        LOGGER.info("Configured OCR profiles: " + this.profiles.keySet());
+    }
+
+    public OCRProfile get(String name) {
+        if (name == null || name.isBlank() || name.equals(OCRProfile.DEFAULT_NAME)) {
+            return defaultProfile;
+        }
+        OCRProfile profile = profiles.get(name);
+        if (profile == null) {
+            throw new InvalidProfileException("Unknown OCR profile: " + name + ", available profiles: " + profiles.keySet());
+        }
+        return profile;
+    }
+
+    public Collection<OCRProfile> getProfiles() {
+        return profiles.values();
+    }
+
+    private static List<OCRProfile> readProfiles(String tessdataPath, String names, Environment environment) {
+        List<OCRProfile> profiles = new ArrayList<>();
+        for (String name : names.split(NAME_SEPARATOR)) {
+            name = name.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!NAME_PATTERN.matcher(name).matches() || name.equals(OCRProfile.DEFAULT_NAME)) {
+                throw new IllegalArgumentException("Invalid OCR profile name: " + name);
+            }
+            String prefix = PROFILE_PREFIX + name + ".";
+            EngineConfig engineConfig = new EngineConfig(
+                    environment.getProperty(prefix + "datapath", tessdataPath),
+                    environment.getProperty(prefix + "language", EngineConfig.DEFAULT_LANGUAGE),
+                    environment.getProperty(prefix + "psm", Integer.class, EngineConfig.DEFAULT_PAGE_SEG_MODE),
+                    environment.getProperty(prefix + "oem", Integer.class, EngineConfig.DEFAULT_OCR_ENGINE_MODE),
+                    environment.getProperty(prefix + "whitelist", ""));
+            profiles.add(new OCRProfile(name, engineConfig, environment.getProperty(prefix + "preprocessing")));
+        }
+        return profiles;
+    }
+
+}
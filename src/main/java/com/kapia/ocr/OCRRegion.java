@@ -0,0 +1,60 @@
+package com.kapia.ocr;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+
+    Regions are passed as "x,y,width,height" in pixels of the uploaded image, many regions are separated
+    with semicolons, e.g. "0,0,600,80;0,900,600,120".
+
+ */
+
+public record OCRRegion(int x, int y, int width, int height) {
+
+    public static final String REGION_SEPARATOR = ";";
+
+    private static final String COORDINATE_SEPARATOR = ",";
+
+    public static List<OCRRegion> parseAll(String regions) {
+        if (regions == null || regions.isBlank()) {
+            throw new InvalidRegionException("At least one region is required");
+        }
+        List<OCRRegion> parsed = new ArrayList<>();
+        for (String region : regions.split(REGION_SEPARATOR)) {
+            if (!region.isBlank()) {
+                parsed.add(parse(region));
+            }
+        }
+        if (parsed.isEmpty()) {
+            throw new InvalidRegionException("At least one region is required");
+        }
+        return parsed;
+    }
+
+    public static OCRRegion parse(String region) {
+        String[] coordinates = region.split(COORDINATE_SEPARATOR);
+        if (coordinates.length != 4) {
+            throw new InvalidRegionException("Region must be given as x,y,width,height: " + region.trim());
+        }
+        try {
+            OCRRegion parsed = new OCRRegion(
+                    Integer.parseInt(coordinates[0].trim()),
+                    Integer.parseInt(coordinates[1].trim()),
+                    Integer.parseInt(coordinates[2].trim()),
+                    Integer.parseInt(coordinates[3].trim()));
+            if (parsed.x < 0 || parsed.y < 0 || parsed.width <= 0 || parsed.height <= 0) {
+                throw new InvalidRegionException("Region must have a non-negative position and a positive size: " + region.trim());
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new InvalidRegionException("Region must be given as x,y,width,height: " + region.trim());
+        }
+    }
+
+    public Rectangle toRectangle() {
+        return new Rectangle(x, y, width, height);
+    }
+
+}
@@ -1,53 +1,341 @@
 package com.kapia.ocr;
 
-import jakarta.annotation.PostConstruct;
-import net.sourceforge.tess4j.ITesseract;
-import net.sourceforge.tess4j.Tesseract;
+import com.kapia.cache.OCRResultCache;
+import com.kapia.imaging.BlankImageDetector;
+import com.kapia.imaging.ImageDecoder;
+import com.kapia.imaging.ImagePreprocessor;
+import com.kapia.imaging.PixelBudget;
+import com.kapia.imaging.PreprocessedImage;
+import com.kapia.imaging.PreprocessingPipeline;
+import com.kapia.util.ByteBufferImageInputStream;
+import com.kapia.util.DirectBufferPool;
+import com.kapia.util.PooledBuffer;
 import net.sourceforge.tess4j.TesseractException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.imageio.ImageIO;
+import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 @Service
 public class OCRService {
 
-    @Value("${tessdata.path}")
-    private String TESSDATA_PATH;
-
     private static final Logger LOGGER = LoggerFactory.getLogger(OCRService.class);
 
-    @PostConstruct
-    public void init() {
-        checkIfTesseractPathIsSet();
+    private final TesseractEnginePoolRegistry enginePools;
+    private final OCRProfiles profiles;
+    private final OCRResultCache resultCache;
+    private final ImagePreprocessor imagePreprocessor;
+    private final DirectBufferPool bufferPool;
+    private final StripRecognizer stripRecognizer;
+    private final InFlightRecognitions inFlightRecognitions;
+    private final NativeMemoryBudget nativeMemoryBudget;
+    private final OrientationDetector orientationDetector;
+    private final BlankImageDetector blankImageDetector;
+    private final ImageDecoder imageDecoder;
+    private final PixelBudget pixelBudget;
+    private final OCRExecutor ocrExecutor;
+
+    @Autowired
+    public OCRService(TesseractEnginePoolRegistry enginePools, OCRProfiles profiles, OCRResultCache resultCache, ImagePreprocessor imagePreprocessor, DirectBufferPool bufferPool, StripRecognizer stripRecognizer, InFlightRecognitions inFlightRecognitions, NativeMemoryBudget nativeMemoryBudget, OrientationDetector orientationDetector, BlankImageDetector blankImageDetector, ImageDecoder imageDecoder, PixelBudget pixelBudget, OCRExecutor ocrExecutor) {
+        this.enginePools = enginePools;
+        this.profiles = profiles;
+        this.resultCache = resultCache;
+        this.imagePreprocessor = imagePreprocessor;
+        this.bufferPool = bufferPool;
+        this.stripRecognizer = stripRecognizer;
+        this.inFlightRecognitions = inFlightRecognitions;
+        this.nativeMemoryBudget = nativeMemoryBudget;
+        this.orientationDetector = orientationDetector;
+        this.blankImageDetector = blankImageDetector;
+        this.imageDecoder = imageDecoder;
+        this.pixelBudget = pixelBudget;
+        this.ocrExecutor = ocrExecutor;
     }
 
     public String processImage(MultipartFile image) throws IOException, TesseractException {
 
+        return processImage(image, OCROptions.DEFAULT);
+
+    }
+
+    public String processImage(MultipartFile image, OCROptions options) throws IOException, TesseractException {
+
+        return await(submitImage(image, options, OCRPriority.FREE));
+
+    }
+
+    /*
+
+        The submit methods run on the thread of the request. They read the upload, take the pixels of the decoded
+        image from the pixel budget, waiting there rather than on an OCR worker, and queue the recognition on the
+        OCR executor. Cached results and identical recognitions already in flight are answered without queuing
+        anything. The upload is kept until the recognition is finished.
+
+     */
+
+    public CompletableFuture<String> submitImage(MultipartFile image, OCROptions options, OCRPriority priority) throws IOException {
+
+        if (image == null) {
+            LOGGER.error("File could not be read");
+            throw new IOException("File could not be read");
+        }
+        OCRProfile profile = profiles.get(options.profile());
+        PreprocessingPipeline pipeline = imagePreprocessor.pipeline(options.preprocessing() != null ? options.preprocessing() : profile.preprocessing());
+        EngineConfig engineConfig = enginePools.resolveConfig(profile.engineConfig(), options.language());
+        return submitUpload(image, upload -> submitImageBuffer(upload, pipeline, engineConfig, options.deadline(), priority));
+
+    }
+
+    public String processImageBytes(byte[] image) throws IOException, TesseractException {
+
+        return await(submitImageBytes(image, OCRPriority.FREE));
+
+    }
+
+    public CompletableFuture<String> submitImageBytes(byte[] image, OCRPriority priority) throws IOException {
+
+        return submitImageBuffer(image == null ? null : ByteBuffer.wrap(image), priority);
+
+    }
+
+    public PooledBuffer readUpload(MultipartFile image) throws IOException {
+
+        return bufferPool.read(image.getInputStream(), image.getSize());
+
+    }
+
+    /*
+
+        The buffer must not be released before the returned future is complete.
+
+     */
+
+    public CompletableFuture<String> submitImageBuffer(ByteBuffer image, OCRPriority priority) throws IOException {
+
+        return submitImageBuffer(image, imagePreprocessor.getDefaultPipeline(), enginePools.getDefaultConfig(), Deadline.NONE, priority);
+
+    }
+
+    public CompletableFuture<String> submitImageBuffer(ByteBuffer image, PreprocessingPipeline pipeline, EngineConfig engineConfig, Deadline deadline, OCRPriority priority) throws IOException {
+
+        if (image == null) {
+            LOGGER.error("File could not be read");
+            throw new IOException("File could not be read");
+        }
+        if (!resultCache.isEnabled() && !inFlightRecognitions.isEnabled()) {
+            return submitDecoded(image, true, deadline, priority, bufferedImage -> runTesseract(bufferedImage, pipeline, engineConfig, deadline));
+        }
+
+        String cacheKey = resultCache.key(image, configurationOf(pipeline, engineConfig));
+        Optional<String> cachedText = resultCache.get(cacheKey);
+        if (cachedText.isPresent()) {
+            LOGGER.debug("Returning cached OCR result");
+            return CompletableFuture.completedFuture(cachedText.get());
+        }
+
+        // Identical requests join the recognition before it is queued, so they take no OCR worker while they wait
+        return inFlightRecognitions.submit(cacheKey, deadline, () -> submitDecoded(image, true, deadline, priority, bufferedImage -> {
+            String text = runTesseract(bufferedImage, pipeline, engineConfig, deadline);
+            resultCache.put(cacheKey, text);
+            return text;
+        }));
+
+    }
+
+    public List<RegionResult> processRegions(MultipartFile image, List<OCRRegion> regions) throws IOException, TesseractException {
+
+        return await(submitRegions(image, regions, OCROptions.DEFAULT, OCRPriority.FREE));
+
+    }
+
+    public CompletableFuture<List<RegionResult>> submitRegions(MultipartFile image, List<OCRRegion> regions, OCROptions options, OCRPriority priority) throws IOException {
+
+        if (image == null) {
+            LOGGER.error("File could not be read");
+            throw new IOException("File could not be read");
+        }
+        EngineConfig engineConfig = enginePools.resolveConfig(profiles.get(options.profile()).engineConfig(), options.language());
+        return submitUpload(image, upload -> submitDecoded(upload, false, options.deadline(), priority, bufferedImage -> recognizeRegions(bufferedImage, regions, engineConfig, options.deadline())));
+
+    }
+
+    public CompletableFuture<byte[]> submitStructured(MultipartFile image, OCROptions options, StructuredFormat format, OCRPriority priority) throws IOException {
+
+        if (image == null) {
+            LOGGER.error("File could not be read");
+            throw new IOException("File could not be read");
+        }
+        OCRProfile profile = profiles.get(options.profile());
+        PreprocessingPipeline pipeline = imagePreprocessor.pipeline(options.preprocessing() != null ? options.preprocessing() : profile.preprocessing());
+        EngineConfig engineConfig = enginePools.resolveConfig(profile.engineConfig(), options.language());
+        return submitUpload(image, upload -> submitDecoded(upload, false, options.deadline(), priority, bufferedImage -> recognizeStructured(bufferedImage, pipeline, engineConfig, format, options.deadline())));
+
+    }
+
+    public String processImageUncached(byte[] image, PreprocessingPipeline pipeline) throws IOException, TesseractException {
+
+        try (DecodedImage decodedImage = decode(ByteBuffer.wrap(image), true)) {
+            return runTesseract(decodedImage.image(), pipeline, enginePools.getDefaultConfig(), Deadline.NONE);
+        } catch (IllegalArgumentException e) {
+            LOGGER.error("File could not be read");
+            throw new IOException("File could not be read");
+        }
+
+    }
+
+    public String processPage(BufferedImage page, Deadline deadline) throws TesseractException {
+
+        return runTesseract(page, imagePreprocessor.getDefaultPipeline(), enginePools.getDefaultConfig(), deadline);
+
+    }
+
+    /*
+
+        Part of the cache key that describes everything besides the image that changes the recognized text.
+        Every setting that changes the text has to be part of it, or results of the old settings are served
+        after a change, also from the shared Redis tier.
+
+     */
+
+    String configurationOf(PreprocessingPipeline pipeline, EngineConfig engineConfig) {
+
+        StringBuilder configuration = new StringBuilder(engineConfig.fingerprint());
+        configuration.append(imageDecoder.fingerprint());
+        if (!pipeline.isEmpty()) {
+            configuration.append("|preprocessing=").append(pipeline.fingerprint());
+        }
+        configuration.append(orientationDetector.fingerprint(engineConfig));
+        configuration.append(blankImageDetector.fingerprint());
+        return configuration.toString();
+
+    }
+
+    private <T> CompletableFuture<T> submitUpload(MultipartFile image, UploadSubmission<T> submission) throws IOException {
+
+        PooledBuffer upload = readUpload(image);
+        CompletableFuture<T> result;
         try {
-            BufferedImage bufferedImage = convertToImage(image);
-            return runTesseract(bufferedImage);
+            result = submission.submit(upload.buffer());
+        } catch (IOException | RuntimeException e) {
+            upload.close();
+            throw e;
+        }
+        return result.whenComplete((value, e) -> upload.close());
+
+    }
+
+    /*
+
+        The permit is given back once the task is finished, or dropped from the queue for a job of a higher priority.
+        A request whose deadline passes while it waits for the pixel budget times out instead of being rejected,
+        and one whose deadline has already passed, e.g. the tail of a batch, times out without being decoded.
+
+     */
+
+    private <T> CompletableFuture<T> submitDecoded(ByteBuffer buffer, boolean atTargetResolution, Deadline deadline, OCRPriority priority, ImageTask<T> task) throws IOException {
+
+        if (deadline.isExpired()) {
+            throw new OCRTimeoutException("");
+        }
+        PixelBudget.Permit permit;
+        try {
+            permit = pixelBudget.acquire(imageDecoder.decodedPixels(new ByteBufferImageInputStream(buffer), atTargetResolution), deadline.remainingNanos());
         } catch (IllegalArgumentException e) {
             LOGGER.error("File could not be read");
             throw new IOException("File could not be read");
+        } catch (RejectedExecutionException e) {
+            if (deadline.isExpired()) {
+                throw new OCRTimeoutException("");
+            }
+            throw e;
+        }
+
+        CompletableFuture<T> result;
+        try {
+            result = ocrExecutor.submit(() -> {
+                BufferedImage bufferedImage;
+                try {
+                    bufferedImage = convertToImage(buffer, atTargetResolution);
+                } catch (IllegalArgumentException e) {
+                    LOGGER.error("File could not be read");
+                    throw new IOException("File could not be read");
+                }
+                return task.run(bufferedImage);
+            }, priority);
+        } catch (RuntimeException e) {
+            permit.close();
+            throw e;
         }
+        return result.whenComplete((value, e) -> permit.close());
 
     }
 
-    private BufferedImage convertToImage(MultipartFile multipartFile) throws IOException, IllegalArgumentException {
+    private static <T> T await(CompletableFuture<T> result) throws IOException, TesseractException {
+
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof TesseractException tesseractException) {
+                throw tesseractException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new TesseractException(cause);
+        }
+
+    }
+
+    /*
+
+        Decodes on an OCR worker for callers that did not take a permit before submitting, so the budget is not
+        waited for. The pixels of the decoded image are held in the pixel budget until the returned image is closed.
+
+     */
+
+    private DecodedImage decode(ByteBuffer buffer, boolean atTargetResolution) throws IOException {
 
-        if (multipartFile == null) {
+        if (buffer == null) {
             LOGGER.debug("File passed to convertToImage was null");
             throw new IllegalArgumentException("File cannot be null");
         }
-        byte[] array = multipartFile.getBytes();
-        BufferedImage bufferedImage = ImageIO.read(new ByteArrayInputStream(array));
+        PixelBudget.Permit permit = pixelBudget.tryAcquire(imageDecoder.decodedPixels(new ByteBufferImageInputStream(buffer), atTargetResolution));
+        try {
+            return new DecodedImage(convertToImage(buffer, atTargetResolution), permit);
+        } catch (IOException | RuntimeException e) {
+            permit.close();
+            throw e;
+        }
+
+    }
+
+    private BufferedImage convertToImage(ByteBuffer buffer, boolean atTargetResolution) throws IOException, IllegalArgumentException {
+
+        if (buffer == null) {
+            LOGGER.debug("File passed to convertToImage was null");
+            throw new IllegalArgumentException("File cannot be null");
+        }
+        BufferedImage bufferedImage = imageDecoder.decode(new ByteBufferImageInputStream(buffer), atTargetResolution);
         if (bufferedImage == null) {
             LOGGER.debug("Conversion result was null");
             throw new IOException("Result of conversion was null");
@@ -56,19 +344,88 @@ public class OCRService {
 
     }
 
-    private String runTesseract(BufferedImage bufferedImage) throws TesseractException {
+    private List<Rectangle> clipRegions(List<OCRRegion> regions, BufferedImage bufferedImage) {
+
+        Rectangle bounds = new Rectangle(bufferedImage.getWidth(), bufferedImage.getHeight());
+        List<Rectangle> rectangles = new ArrayList<>(regions.size());
+        for (OCRRegion region : regions) {
+            Rectangle clipped = region.toRectangle().intersection(bounds);
+            if (clipped.isEmpty()) {
+                throw new InvalidRegionException("Region lies outside of the image: " + region.x() + "," + region.y() + "," + region.width() + "," + region.height());
+            }
+            rectangles.add(clipped);
+        }
+        return rectangles;
+
+    }
+
+    /*
+
+        Regions and structured output are decoded at full resolution, as they need the coordinates of the upload.
+        Boxes of structured output are mapped back through preprocessing stages that scale or rotate the image.
+
+     */
+
+    private List<RegionResult> recognizeRegions(BufferedImage bufferedImage, List<OCRRegion> regions, EngineConfig engineConfig, Deadline deadline) throws TesseractException {
+
+        List<Rectangle> rectangles = clipRegions(regions, bufferedImage);
+        List<String> texts;
+        try (NativeMemoryBudget.Reservation reservation = nativeMemoryBudget.reserve(bufferedImage, 1, deadline)) {
+            texts = enginePools.execute(engineConfig, engine -> engine.recognizeRegions(bufferedImage, rectangles, deadline));
+        }
+
+        List<RegionResult> results = new ArrayList<>(regions.size());
+        for (int i = 0; i < regions.size(); i++) {
+            results.add(RegionResult.of(regions.get(i), texts.get(i)));
+        }
+        return results;
+
+    }
+
+    private byte[] recognizeStructured(BufferedImage bufferedImage, PreprocessingPipeline pipeline, EngineConfig engineConfig, StructuredFormat format, Deadline deadline) throws IOException, TesseractException {
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PreprocessedImage preprocessedImage = imagePreprocessor.processWithTransform(bufferedImage, pipeline);
+        try (NativeMemoryBudget.Reservation reservation = nativeMemoryBudget.reserve(preprocessedImage.image(), 1, deadline);
+             StructuredResultWriter writer = new StructuredResultWriter(format.createGenerator(output), preprocessedImage.toSource())) {
+            enginePools.execute(engineConfig, engine -> {
+                engine.recognizeStructured(preprocessedImage.image(), writer, deadline);
+                return null;
+            });
+        }
+        return output.toByteArray();
+
+    }
+
+    private String runTesseract(BufferedImage bufferedImage, PreprocessingPipeline pipeline, EngineConfig engineConfig, Deadline deadline) throws TesseractException {
 
-        ITesseract tesseract = new Tesseract();
-        tesseract.setDatapath(TESSDATA_PATH);
-        return tesseract.doOCR(bufferedImage);
+        if (blankImageDetector.isBlank(bufferedImage)) {
+            LOGGER.debug("Image is blank, skipping recognition");
+            return "";
+        }
+        OrientationDetector.OrientedImage orientedImage = orientationDetector.orient(bufferedImage, engineConfig);
+        BufferedImage preprocessedImage = imagePreprocessor.process(orientedImage.image(), pipeline);
+        return stripRecognizer.recognize(preprocessedImage, orientedImage.engineConfig(), deadline);
+
+    }
 
+    @FunctionalInterface
+    private interface UploadSubmission<T> {
+        CompletableFuture<T> submit(ByteBuffer upload) throws IOException;
     }
 
-    private void checkIfTesseractPathIsSet() {
-        if (TESSDATA_PATH == null || TESSDATA_PATH.isEmpty()) {
-            LOGGER.error("Tessdata path is not set");
-            throw new IllegalArgumentException("Tessdata path is not set");
+    @FunctionalInterface
+    private interface ImageTask<T> {
+        T run(BufferedImage image) throws IOException, TesseractException;
+    }
+
+    private record DecodedImage(BufferedImage image, PixelBudget.Permit permit) implements AutoCloseable {
+
+        @Override
+        public void close() {
+            permit.close();
         }
+
     }
 
 }
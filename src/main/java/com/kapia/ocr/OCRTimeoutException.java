@@ -0,0 +1,16 @@
+package com.kapia.ocr;
+
+public class OCRTimeoutException extends RuntimeException {
+
+    private final String partialText;
+
+    public OCRTimeoutException(String partialText) {
+        super("OCR deadline exceeded");
+        this.partialText = partialText == null ? "" : partialText;
+    }
+
+    public String getPartialText() {
+        return partialText;
+    }
+
+}
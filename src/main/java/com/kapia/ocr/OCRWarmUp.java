@@ -0,0 +1,192 @@
+package com.kapia.ocr;
+
+import com.kapia.imaging.ImagePreprocessor;
+import com.kapia.imaging.PreprocessingPipeline;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.sourceforge.tess4j.TesseractException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLConnection;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/*
+
+    Spring Boot reports the application as ready to accept traffic only after every application runner has
+    finished, so the readiness probe stays down while this warm-up runs, even though Tomcat already listens.
+
+    The warm-up opens every pooled engine, recognizes the bundled sample images on the OCR workers with every
+    preprocessing stage, so the decoders, the filters and the recognition path are compiled by the JIT, and
+    finally sends the samples through the whole filter chain as the superuser, which is not rate limited.
+    A failing warm-up is logged and does not keep the node out of the load balancer.
+
+ */
+
+@Component
+public class OCRWarmUp implements ApplicationRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OCRWarmUp.class);
+
+    private static final String SAMPLE_IMAGES = "classpath:warmup/*";
+    private static final String ALL_STAGES = "dpi,deskew,denoise,otsu";
+    private static final String ADAPTIVE_STAGES = "adaptive";
+    private static final String BOUNDARY = "ocr-warmup";
+
+    private final TesseractEnginePoolRegistry enginePools;
+    private final OCRService ocrService;
+    private final OCRExecutor ocrExecutor;
+    private final ImagePreprocessor imagePreprocessor;
+    private final ApplicationContext applicationContext;
+    private final boolean enabled;
+    private final int iterations;
+    private final int requests;
+    private final String username;
+    private final String password;
+    private final Timer duration;
+
+    @Autowired
+    public OCRWarmUp(TesseractEnginePoolRegistry enginePools,
+                     OCRService ocrService,
+                     OCRExecutor ocrExecutor,
+                     ImagePreprocessor imagePreprocessor,
+                     ApplicationContext applicationContext,
+                     @Value("${ocr.warmup.enabled:true}") boolean enabled,
+                     @Value("${ocr.warmup.iterations:3}") int iterations,
+                     @Value("${ocr.warmup.requests:3}") int requests,
+                     @Value("${su.username}") String username,
+                     @Value("${su.password}") String password,
+                     MeterRegistry meterRegistry) {
+        this.enginePools = enginePools;
+        this.ocrService = ocrService;
+        this.ocrExecutor = ocrExecutor;
+        this.imagePreprocessor = imagePreprocessor;
+        this.applicationContext = applicationContext;
+        this.enabled = enabled;
+        this.iterations = Math.max(0, iterations);
+        this.requests = Math.max(0, requests);
+        this.username = username;
+        this.password = password;
+        this.duration = Timer.builder("ocr.warmup")
+                .description("Time spent warming up the OCR path at startup")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            LOGGER.info("OCR warm-up is disabled");
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            int engines = enginePools.prestart();
+            LOGGER.info("Warm-up opened " + engines + " Tesseract engines");
+
+            List<Sample> samples = loadSamples();
+            recognizeSamples(samples);
+            sendRequests(samples);
+        } catch (IOException | TesseractException | RuntimeException | LinkageError e) {
+            LOGGER.error("OCR warm-up failed", e);
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        duration.record(elapsed);
+        LOGGER.info("OCR warm-up finished in " + elapsed.toMillis() + " ms");
+    }
+
+    void recognizeSamples(List<Sample> samples) {
+        List<PreprocessingPipeline> pipelines = List.of(
+                imagePreprocessor.getDefaultPipeline(),
+                imagePreprocessor.pipeline(ALL_STAGES),
+                imagePreprocessor.pipeline(ADAPTIVE_STAGES));
+
+        for (int i = 0; i < iterations; i++) {
+            List<CompletableFuture<String>> recognitions = new ArrayList<>();
+            for (Sample sample : samples) {
+                for (PreprocessingPipeline pipeline : pipelines) {
+                    recognitions.add(ocrExecutor.submit(() -> ocrService.processImageUncached(sample.image(), pipeline), OCRPriority.ADMIN));
+                }
+            }
+            try {
+                CompletableFuture.allOf(recognitions.toArray(CompletableFuture[]::new)).join();
+            } catch (CompletionException e) {
+                LOGGER.warn("Warm-up recognition failed: " + e.getCause().getMessage());
+            }
+        }
+        LOGGER.info("Warm-up recognized " + samples.size() + " sample images " + iterations + " times");
+    }
+
+    private void sendRequests(List<Sample> samples) throws IOException {
+        if (requests == 0 || samples.isEmpty()
+                || !(applicationContext instanceof WebServerApplicationContext webContext) || webContext.getWebServer() == null) {
+            return;
+        }
+
+        URI uri = URI.create("http://localhost:" + webContext.getWebServer().getPort() + "/getOCR");
+        String credentials = Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+        HttpClient client = HttpClient.newHttpClient();
+        for (int i = 0; i < requests; i++) {
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .header("Authorization", "Basic " + credentials)
+                    .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(multipartBody(samples.get(i % samples.size()))))
+                    .build();
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                LOGGER.debug("Warm-up request returned " + response.statusCode());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        LOGGER.info("Warm-up sent " + requests + " requests through the filter chain");
+    }
+
+    private static byte[] multipartBody(Sample sample) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(sample.image().length + 256);
+        body.write(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"image\"; filename=\"" + sample.filename() + "\"\r\n"
+                + "Content-Type: " + sample.contentType() + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        body.write(sample.image());
+        body.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        return body.toByteArray();
+    }
+
+    private static List<Sample> loadSamples() throws IOException {
+        List<Sample> samples = new ArrayList<>();
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources(SAMPLE_IMAGES)) {
+            try (InputStream inputStream = resource.getInputStream()) {
+                String filename = resource.getFilename();
+                samples.add(new Sample(filename, URLConnection.guessContentTypeFromName(filename), inputStream.readAllBytes()));
+            }
+        }
+        return samples;
+    }
+
+    record Sample(String filename, String contentType, byte[] image) {
+    }
+
+}
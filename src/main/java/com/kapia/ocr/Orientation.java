@@ -0,0 +1,16 @@
+package com.kapia.ocr;
+
+/*
+
+    Result of the orientation and script detection of Tesseract. The degrees are the clockwise rotation
+    of the page as it was uploaded, so the page is corrected by turning it the rest of the full circle.
+
+ */
+
+public record Orientation(int degrees, float orientationConfidence, String script, float scriptConfidence) {
+
+    public int correction() {
+        return Math.floorMod(360 - degrees, 360);
+    }
+
+}
@@ -0,0 +1,208 @@
+package com.kapia.ocr;
+
+import com.kapia.imaging.ImageRotation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.sourceforge.tess4j.ITessAPI;
+import net.sourceforge.tess4j.TesseractException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+
+    Phone uploads are often rotated by a quarter or half turn, which Tesseract reads as noise. Before the
+    recognition, the orientation and script of the page are detected with the osd model on a grayscale copy
+    scaled down to about a megapixel, which takes a fraction of the recognition time. When Tesseract is
+    confident enough, the full image is turned once, in place for a half turn.
+
+    A confidently detected script can also pick the language, e.g. Cyrillic pages are read with rus instead
+    of eng. Only requests recognized with the default language are switched, and only to an installed
+    language, so requests naming another language or using a profile with its own keep it.
+
+ */
+
+@Component
+public class OrientationDetector {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrientationDetector.class);
+
+    static final String OSD_LANGUAGE = "osd";
+    private static final String SCRIPT_LANGUAGES = "ocr.osd.scripts";
+
+    private final TesseractEnginePoolRegistry enginePools;
+    private final Map<String, String> scriptLanguages;
+    private final EngineConfig osdConfig;
+    private final boolean enabled;
+    private final int maxDimension;
+    private final double minOrientationConfidence;
+    private final double minScriptConfidence;
+
+    private final MeterRegistry meterRegistry;
+    private final Timer duration;
+    private final Counter detections;
+
+    @Autowired
+    public OrientationDetector(TesseractEnginePoolRegistry enginePools,
+                               Environment environment,
+                               @Value("${ocr.osd.enabled:false}") boolean enabled,
+                               @Value("${ocr.osd.max.dimension:1024}") int maxDimension,
+                               @Value("${ocr.osd.min.orientation.confidence:2.0}") double minOrientationConfidence,
+                               @Value("${ocr.osd.min.script.confidence:1.0}") double minScriptConfidence,
+                               MeterRegistry meterRegistry) {
+        this(enginePools, Binder.get(environment).bind(SCRIPT_LANGUAGES, Bindable.mapOf(String.class, String.class)).orElse(Map.of()), enabled, maxDimension, minOrientationConfidence, minScriptConfidence, meterRegistry);
+    }
+
+    public OrientationDetector(TesseractEnginePoolRegistry enginePools,
+                               Map<String, String> scriptLanguages,
+                               boolean enabled,
+                               int maxDimension,
+                               double minOrientationConfidence,
+                               double minScriptConfidence,
+                               MeterRegistry meterRegistry) {
+        this.enginePools = enginePools;
+        // Environment variables bind in lower case, e.g. OCR_OSD_SCRIPTS_CYRILLIC
+        this.scriptLanguages = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        this.scriptLanguages.putAll(scriptLanguages);
+        this.maxDimension = Math.max(1, maxDimension);
+        this.minOrientationConfidence = minOrientationConfidence;
+        this.minScriptConfidence = minScriptConfidence;
+
+        EngineConfig osdConfig = null;
+        if (enabled) {
+            osdConfig = new EngineConfig(enginePools.getDefaultConfig().datapath(), OSD_LANGUAGE, ITessAPI.TessPageSegMode.PSM_OSD_ONLY, EngineConfig.DEFAULT_OCR_ENGINE_MODE, "");
+            if (!Files.isRegularFile(osdConfig.modelPath(OSD_LANGUAGE))) {
+                LOGGER.warn("Orientation detection is disabled, " + osdConfig.modelPath(OSD_LANGUAGE) + " is not installed");
+                enabled = false;
+            }
+        }
+        this.osdConfig = osdConfig;
+        this.enabled = enabled;
+
+        this.meterRegistry = meterRegistry;
+        this.duration = Timer.builder("ocr.osd")
+                .description("Time spent detecting the orientation and script of images")
+                .register(meterRegistry);
+        this.detections = Counter.builder("ocr.osd.detected")
+                .description("Images whose orientation Tesseract detected with enough confidence")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /*
+
+        Settings that change the text recognized with the given configuration, for the cache key. Requests
+        with the default language also depend on the languages their script can switch to.
+
+     */
+
+    public String fingerprint(EngineConfig engineConfig) {
+        if (!enabled) {
+            return "";
+        }
+        StringBuilder fingerprint = new StringBuilder("|osd=").append(osdConfig.fingerprint())
+                .append(':').append(maxDimension)
+                .append(':').append(minOrientationConfidence);
+        if (engineConfig.language().equals(enginePools.getDefaultConfig().language())) {
+            fingerprint.append(':').append(minScriptConfidence);
+            scriptLanguages.forEach((script, language) -> fingerprint.append('|').append(script).append('=')
+                    .append(engineConfig.withLanguage(language).fingerprint()));
+        }
+        return fingerprint.toString();
+    }
+
+    public OrientedImage orient(BufferedImage image, EngineConfig engineConfig) {
+        if (!enabled) {
+            return new OrientedImage(image, engineConfig);
+        }
+
+        BufferedImage preview = preview(image);
+        Orientation orientation;
+        long start = System.nanoTime();
+        try {
+            orientation = enginePools.execute(osdConfig, engine -> engine.detectOrientation(preview));
+        } catch (TesseractException | RuntimeException e) {
+            LOGGER.warn("Orientation detection failed: " + e.getMessage());
+            return new OrientedImage(image, engineConfig);
+        } finally {
+            duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return apply(orientation, image, engineConfig);
+    }
+
+    OrientedImage apply(Orientation orientation, BufferedImage image, EngineConfig engineConfig) {
+        if (orientation == null || orientation.orientationConfidence() < minOrientationConfidence) {
+            return new OrientedImage(image, engineConfig);
+        }
+        detections.increment();
+
+        int correction = orientation.correction();
+        if (correction != 0) {
+            Counter.builder("ocr.osd.rotated")
+                    .description("Images turned before the recognition")
+                    .tag("degrees", String.valueOf(correction))
+                    .register(meterRegistry)
+                    .increment();
+            LOGGER.debug("Rotating image by " + correction + " degrees");
+            image = ImageRotation.rotate(image, correction);
+        }
+        return new OrientedImage(image, languageFor(orientation, engineConfig));
+    }
+
+    private EngineConfig languageFor(Orientation orientation, EngineConfig engineConfig) {
+        if (orientation.scriptConfidence() < minScriptConfidence || !engineConfig.language().equals(enginePools.getDefaultConfig().language())) {
+            return engineConfig;
+        }
+        String language = scriptLanguages.get(orientation.script());
+        if (language == null || language.isBlank() || language.equals(engineConfig.language())) {
+            return engineConfig;
+        }
+        try {
+            EngineConfig scriptConfig = enginePools.resolveConfig(engineConfig, language);
+            Counter.builder("ocr.osd.language")
+                    .description("Images recognized with the language of their detected script")
+                    .tag("language", scriptConfig.language())
+                    .register(meterRegistry)
+                    .increment();
+            return scriptConfig;
+        } catch (InvalidLanguageException e) {
+            LOGGER.debug("No language installed for script " + orientation.script() + ": " + e.getMessage());
+            return engineConfig;
+        }
+    }
+
+    private BufferedImage preview(BufferedImage image) {
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        BufferedImage preview = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = preview.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return preview;
+    }
+
+    public record OrientedImage(BufferedImage image, EngineConfig engineConfig) {
+    }
+
+}
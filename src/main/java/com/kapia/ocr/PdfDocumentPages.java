@@ -0,0 +1,64 @@
+package com.kapia.ocr;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+
+/*
+
+    Decoded PDF streams are cached in temporary files instead of the heap, and every page is
+    rendered in grayscale only when it is requested.
+
+ */
+
+class PdfDocumentPages implements DocumentPages {
+
+    private static final float POINTS_PER_INCH = 72;
+
+    private final PDDocument document;
+    private final PDFRenderer renderer;
+    private final float dpi;
+
+    PdfDocumentPages(InputStream inputStream, float dpi) throws IOException {
+        this.document = Loader.loadPDF(new RandomAccessReadBuffer(inputStream), IOUtils.createTempFileOnlyStreamCache());
+        this.renderer = new PDFRenderer(document);
+        this.dpi = dpi;
+    }
+
+    @Override
+    public int getPageCount() {
+        return document.getNumberOfPages();
+    }
+
+    /*
+
+        Sized like PDFRenderer sizes the rendered image, from the crop box scaled to the resolution.
+
+     */
+
+    @Override
+    public long getPagePixels(int pageIndex) {
+        PDRectangle cropBox = document.getPage(pageIndex).getCropBox();
+        float scale = dpi / POINTS_PER_INCH;
+        return (long) Math.max(Math.floor(cropBox.getWidth() * scale), 1) * (long) Math.max(Math.floor(cropBox.getHeight() * scale), 1);
+    }
+
+    @Override
+    public BufferedImage readPage(int pageIndex) throws IOException {
+        return renderer.renderImageWithDPI(pageIndex, dpi, ImageType.GRAY);
+    }
+
+    @Override
+    public void close() throws IOException {
+        document.close();
+    }
+
+}
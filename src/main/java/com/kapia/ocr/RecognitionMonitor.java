@@ -0,0 +1,44 @@
+package com.kapia.ocr;
+
+import com.sun.jna.Pointer;
+import net.sourceforge.tess4j.ITessAPI;
+
+import java.util.List;
+
+/*
+
+    ETEXT_DESC of Tess4J lacks the two progress callbacks that Tesseract 4 and 5 declare after the cancel
+    callback, so its cancel_this and end_time fields do not line up with the native structure. This
+    subclass declares them in the native order. Both callbacks stay null, and Tesseract calls the cancel
+    callback after every recognized word, which stops the recognition once the deadline has passed.
+    The class is public because JNA reads its fields reflectively.
+
+ */
+
+public class RecognitionMonitor extends ITessAPI.ETEXT_DESC {
+
+    public Pointer progress_callback;
+    public Pointer progress_callback2;
+
+    private volatile boolean cancelled;
+
+    RecognitionMonitor(Deadline deadline) {
+        this.cancel = (cancelThis, words) -> {
+            if (deadline.isExpired()) {
+                cancelled = true;
+            }
+            return cancelled;
+        };
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    protected List<String> getFieldOrder() {
+        return List.of("count", "progress", "more_to_come", "ocr_alive", "err_code",
+                "cancel", "progress_callback", "progress_callback2", "cancel_this", "end_time", "text");
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.kapia.ocr;
+
+public record RegionResult(int x, int y, int width, int height, String text) {
+
+    static RegionResult of(OCRRegion region, String text) {
+        return new RegionResult(region.x(), region.y(), region.width(), region.height(), text);
+    }
+
+}
@@ -0,0 +1,286 @@
+package com.kapia.ocr;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.sourceforge.tess4j.TesseractException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+
+    Tesseract recognizes a page on a single thread, so a poster-sized scan keeps one core busy for a long time.
+    Images above the size threshold are cut into horizontal strips, preferably at rows without ink, and every
+    strip is recognized on its own engine. An engine is given only the rows of its strip, read in place from
+    the image, and reserves native memory for those rows alone, so the strips of a page together take about
+    as much native memory as the page recognized whole. The worker handling the request
+    recognizes strips itself and hands the rest to idle OCR workers, so a busy service falls back to
+    recognizing the strips one after another instead of waiting for free workers.
+
+    Strips share the deadline of the request. When it passes, every strip returns what it has recognized
+    so far and the merged partial text is carried by the timeout.
+
+    When no blank row is found near a cut, neighbouring strips overlap, and lines read by both strips
+    are dropped from the second one when the texts are merged. Strips cut at a blank row share no lines.
+
+ */
+
+@Component
+public class StripRecognizer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StripRecognizer.class);
+
+    private static final int INK_THRESHOLD = 128;
+    private static final int MAX_OVERLAPPING_LINES = 5;
+
+    private final TesseractEnginePoolRegistry enginePools;
+    private final OCRExecutor ocrExecutor;
+    private final NativeMemoryBudget nativeMemoryBudget;
+    private final boolean enabled;
+    private final long minPixels;
+    private final int minStripHeight;
+    private final int overlap;
+
+    private final Counter tiledImages;
+    private final Counter strips;
+
+    @Autowired
+    public StripRecognizer(TesseractEnginePoolRegistry enginePools,
+                           OCRExecutor ocrExecutor,
+                           NativeMemoryBudget nativeMemoryBudget,
+                           @Value("${ocr.tiles.enabled:true}") boolean enabled,
+                           @Value("${ocr.tiles.min.megapixels:16}") int minMegapixels,
+                           @Value("${ocr.tiles.min.strip.height:600}") int minStripHeight,
+                           @Value("${ocr.tiles.overlap:40}") int overlap,
+                           MeterRegistry meterRegistry) {
+        this.enginePools = enginePools;
+        this.ocrExecutor = ocrExecutor;
+        this.nativeMemoryBudget = nativeMemoryBudget;
+        this.enabled = enabled;
+        this.minPixels = minMegapixels * 1_000_000L;
+        this.minStripHeight = Math.max(1, minStripHeight);
+        this.overlap = Math.max(0, overlap);
+
+        this.tiledImages = Counter.builder("ocr.tiles.images")
+                .description("Images recognized in parallel strips")
+                .register(meterRegistry);
+        this.strips = Counter.builder("ocr.tiles.strips")
+                .description("Strips recognized in parallel")
+                .register(meterRegistry);
+    }
+
+    public String recognize(BufferedImage image, EngineConfig engineConfig) throws TesseractException {
+        return recognize(image, engineConfig, Deadline.NONE);
+    }
+
+    public String recognize(BufferedImage image, EngineConfig engineConfig, Deadline deadline) throws TesseractException {
+        int stripCount = stripCount(image);
+        if (stripCount < 2) {
+            return recognizeStrip(image, engineConfig, deadline);
+        }
+
+        List<Rectangle> layout = split(image, stripCount, overlap);
+        tiledImages.increment();
+        strips.increment(layout.size());
+        LOGGER.debug("Recognizing image of " + image.getWidth() + "x" + image.getHeight() + " in " + layout.size() + " strips");
+
+        List<CompletableFuture<String>> results = new ArrayList<>(layout.size());
+        for (int i = 0; i < layout.size(); i++) {
+            results.add(new CompletableFuture<>());
+        }
+        AtomicInteger nextStrip = new AtomicInteger();
+        Runnable worker = () -> {
+            int i;
+            while ((i = nextStrip.getAndIncrement()) < layout.size()) {
+                Rectangle strip = layout.get(i);
+                try {
+                    results.get(i).complete(recognizeStrip(image.getSubimage(strip.x, strip.y, strip.width, strip.height), engineConfig, deadline));
+                } catch (Throwable e) {
+                    results.get(i).completeExceptionally(e);
+                }
+            }
+        };
+
+        int helpers = Math.min(layout.size() - 1, ocrExecutor.getIdleWorkerCount());
+        for (int i = 0; i < helpers; i++) {
+            if (!ocrExecutor.offer(worker)) {
+                break;
+            }
+        }
+        worker.run();
+
+        List<String> texts = new ArrayList<>(layout.size());
+        boolean timedOut = false;
+        for (CompletableFuture<String> result : results) {
+            try {
+                texts.add(result.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof OCRTimeoutException timeoutException) {
+                    texts.add(timeoutException.getPartialText());
+                    timedOut = true;
+                    continue;
+                }
+                if (e.getCause() instanceof TesseractException tesseractException) {
+                    throw tesseractException;
+                }
+                throw e;
+            }
+        }
+        if (timedOut) {
+            throw new OCRTimeoutException(merge(texts, layout));
+        }
+        return merge(texts, layout);
+    }
+
+    private String recognizeStrip(BufferedImage strip, EngineConfig engineConfig, Deadline deadline) throws TesseractException {
+        try (NativeMemoryBudget.Reservation reservation = nativeMemoryBudget.reserve(strip, 1, deadline)) {
+            return enginePools.execute(engineConfig, engine -> engine.recognize(strip, null, deadline));
+        }
+    }
+
+    int stripCount(BufferedImage image) {
+        if (!enabled || (long) image.getWidth() * image.getHeight() < minPixels) {
+            return 1;
+        }
+        return Math.min(ocrExecutor.getWorkerCount(), image.getHeight() / minStripHeight);
+    }
+
+    /*
+
+        Every cut is moved to the row with the least ink within a quarter of a strip from its ideal position.
+
+     */
+
+    static List<Rectangle> split(BufferedImage image, int stripCount, int overlap) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] ink = rowInk(image);
+        int stripHeight = height / stripCount;
+        int window = stripHeight / 4;
+
+        int[] cuts = new int[stripCount + 1];
+        boolean[] clean = new boolean[stripCount + 1];
+        cuts[stripCount] = height;
+        for (int i = 1; i < stripCount; i++) {
+            int ideal = i * stripHeight;
+            int best = ideal;
+            for (int y = Math.max(cuts[i - 1] + 1, ideal - window); y <= Math.min(height - 1, ideal + window); y++) {
+                if (ink[y] < ink[best] || (ink[y] == ink[best] && Math.abs(y - ideal) < Math.abs(best - ideal))) {
+                    best = y;
+                }
+            }
+            cuts[i] = best;
+            clean[i] = ink[best] == 0;
+        }
+
+        List<Rectangle> strips = new ArrayList<>(stripCount);
+        for (int i = 0; i < stripCount; i++) {
+            int top = clean[i] || i == 0 ? cuts[i] : Math.max(0, cuts[i] - overlap);
+            int bottom = clean[i + 1] || i == stripCount - 1 ? cuts[i + 1] : Math.min(height, cuts[i + 1] + overlap);
+            strips.add(new Rectangle(0, top, width, bottom - top));
+        }
+        return strips;
+    }
+
+    private static int[] rowInk(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] ink = new int[height];
+        int[] row = new int[width];
+        boolean gray = image.getType() == BufferedImage.TYPE_BYTE_GRAY;
+        for (int y = 0; y < height; y++) {
+            if (gray) {
+                image.getRaster().getSamples(0, y, width, 1, 0, row);
+            } else {
+                image.getRGB(0, y, width, 1, row, 0, width);
+            }
+            int dark = 0;
+            for (int x = 0; x < width; x++) {
+                if (luminance(row[x], gray) < INK_THRESHOLD) {
+                    dark++;
+                }
+            }
+            ink[y] = dark;
+        }
+        return ink;
+    }
+
+    private static int luminance(int pixel, boolean gray) {
+        if (gray) {
+            return pixel;
+        }
+        return (299 * ((pixel >> 16) & 0xFF) + 587 * ((pixel >> 8) & 0xFF) + 114 * (pixel & 0xFF)) / 1000;
+    }
+
+    /*
+
+        Lines are only compared where neighbouring strips overlap, so a line that legitimately repeats across
+        a clean cut is kept. The number of lines compared is bounded by the height of the overlap, using the
+        line pitch of the upper strip, plus one for a line cut in half. Blank lines and surrounding whitespace
+        are ignored.
+
+     */
+
+    static String merge(List<String> texts, List<Rectangle> layout) {
+        List<String> merged = new ArrayList<>();
+        List<String> previous = List.of();
+        for (int i = 0; i < texts.size(); i++) {
+            List<String> lines = Arrays.asList(texts.get(i).strip().split("\n"));
+            int maxRepeated = i == 0 ? 0 : overlappingLines(layout.get(i - 1), layout.get(i), previous.size());
+            List<String> current = nonBlank(lines);
+            if (!current.isEmpty()) {
+                merged.addAll(lines.subList(repeatedLines(previous, lines, maxRepeated), lines.size()));
+            }
+            previous = current;
+        }
+        return merged.isEmpty() ? "" : String.join("\n", merged) + "\n";
+    }
+
+    private static int overlappingLines(Rectangle upper, Rectangle lower, int upperLineCount) {
+        int overlapHeight = upper.y + upper.height - lower.y;
+        if (overlapHeight <= 0 || upperLineCount == 0) {
+            return 0;
+        }
+        int lines = (int) Math.ceil((double) overlapHeight * upperLineCount / upper.height) + 1;
+        return Math.min(MAX_OVERLAPPING_LINES, lines);
+    }
+
+    private static int repeatedLines(List<String> previous, List<String> lines, int maxRepeated) {
+        for (int count = Math.min(maxRepeated, previous.size()); count > 0; count--) {
+            List<String> head = new ArrayList<>();
+            int consumed = 0;
+            while (consumed < lines.size() && head.size() < count) {
+                if (!lines.get(consumed).isBlank()) {
+                    head.add(lines.get(consumed).strip());
+                }
+                consumed++;
+            }
+            if (head.equals(previous.subList(previous.size() - count, previous.size()))) {
+                return consumed;
+            }
+        }
+        return 0;
+    }
+
+    private static List<String> nonBlank(List<String> lines) {
+        List<String> result = new ArrayList<>();
+        for (String line : lines) {
+            if (!line.isBlank()) {
+                result.add(line.strip());
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.kapia.ocr;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public enum StructuredFormat {
+
+    JSON(MediaType.APPLICATION_JSON, new JsonFactory()),
+    CBOR(MediaType.APPLICATION_CBOR, new CBORFactory());
+
+    private final MediaType mediaType;
+    private final JsonFactory factory;
+
+    StructuredFormat(MediaType mediaType, JsonFactory factory) {
+        this.mediaType = mediaType;
+        this.factory = factory;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public JsonGenerator createGenerator(OutputStream outputStream) throws IOException {
+        return factory.createGenerator(outputStream, JsonEncoding.UTF8);
+    }
+
+    public static StructuredFormat parse(String format) {
+        for (StructuredFormat structuredFormat : values()) {
+            if (structuredFormat.name().equalsIgnoreCase(format == null ? "" : format.trim())) {
+                return structuredFormat;
+            }
+        }
+        throw new InvalidOutputFormatException("Format must be json or cbor, omit it to get plain text");
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.kapia.ocr;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.io.Closeable;
+import java.io.IOException;
+
+/*
+
+    Writes blocks, lines and words straight to the generator as the result iterator visits them,
+    so no tree of the page is built in memory. The iterator only reports the beginning of every
+    element, so the open line and block are closed when the next one starts or the page ends.
+
+    Boxes are reported in the coordinates of the upload. When preprocessing scaled or rotated the image,
+    every box is mapped back and the smallest upright rectangle around the mapped box is written.
+
+ */
+
+public class StructuredResultWriter implements Closeable {
+
+    private final JsonGenerator generator;
+    private final AffineTransform toUpload;
+
+    private boolean blockOpen;
+    private boolean lineOpen;
+
+    public StructuredResultWriter(JsonGenerator generator) throws IOException {
+        this(generator, new AffineTransform());
+    }
+
+    public StructuredResultWriter(JsonGenerator generator, AffineTransform toUpload) throws IOException {
+        this.generator = generator;
+        this.toUpload = toUpload;
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("blocks");
+    }
+
+    public void startBlock(Rectangle box, float confidence) throws IOException {
+        endBlock();
+        generator.writeStartObject();
+        writeGeometry(box, confidence);
+        generator.writeArrayFieldStart("lines");
+        blockOpen = true;
+    }
+
+    public void startLine(Rectangle box, float confidence) throws IOException {
+        if (!blockOpen) {
+            startBlock(box, confidence);
+        }
+        endLine();
+        generator.writeStartObject();
+        writeGeometry(box, confidence);
+        generator.writeArrayFieldStart("words");
+        lineOpen = true;
+    }
+
+    public void word(String text, Rectangle box, float confidence) throws IOException {
+        if (!lineOpen) {
+            startLine(box, confidence);
+        }
+        generator.writeStartObject();
+        generator.writeStringField("text", text);
+        writeGeometry(box, confidence);
+        generator.writeEndObject();
+    }
+
+    public void finish(String text) throws IOException {
+        endBlock();
+        generator.writeEndArray();
+        generator.writeStringField("text", text);
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+
+    private void endLine() throws IOException {
+        if (lineOpen) {
+            generator.writeEndArray();
+            generator.writeEndObject();
+            lineOpen = false;
+        }
+    }
+
+    private void endBlock() throws IOException {
+        endLine();
+        if (blockOpen) {
+            generator.writeEndArray();
+            generator.writeEndObject();
+            blockOpen = false;
+        }
+    }
+
+    private void writeGeometry(Rectangle box, float confidence) throws IOException {
+        if (!toUpload.isIdentity()) {
+            box = toUpload.createTransformedShape(box).getBounds();
+        }
+        generator.writeNumberField("x", box.x);
+        generator.writeNumberField("y", box.y);
+        generator.writeNumberField("width", box.width);
+        generator.writeNumberField("height", box.height);
+        generator.writeNumberField("confidence", confidence);
+    }
+
+}
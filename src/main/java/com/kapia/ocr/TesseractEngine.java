@@ -0,0 +1,293 @@
+package com.kapia.ocr;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.PointerByReference;
+import net.sourceforge.tess4j.ITessAPI;
+import net.sourceforge.tess4j.Tesseract;
+import net.sourceforge.tess4j.TesseractException;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+
+    Tesseract.doOCR creates a native TessBaseAPI handle, loads the traineddata and disposes the handle
+    on every call. This subclass initializes the handle once and keeps it for its whole lifetime,
+    so it can be pooled and reused between requests. Instances are not thread safe.
+
+ */
+
+public class TesseractEngine extends Tesseract {
+
+    private static final String CHARACTER_WHITELIST = "tessedit_char_whitelist";
+
+    private final EngineConfig config;
+    private final DirectImageBuffer imageBuffer = new DirectImageBuffer();
+
+    private boolean open;
+    private boolean broken;
+
+    public TesseractEngine(EngineConfig config) {
+        this.config = config;
+        setDatapath(config.datapath());
+        setLanguage(config.language());
+        setPageSegMode(config.pageSegMode());
+        setOcrEngineMode(config.ocrEngineMode());
+        if (!config.characterWhitelist().isEmpty()) {
+            setVariable(CHARACTER_WHITELIST, config.characterWhitelist());
+        }
+    }
+
+    public void open() throws TesseractException {
+        init();
+        setVariables();
+        String languages = getAPI().TessBaseAPIGetInitLanguagesAsString(getHandle());
+        if (languages == null || languages.isEmpty()) {
+            dispose();
+            throw new TesseractException("Could not initialize Tesseract for language: " + config.language());
+        }
+        open = true;
+    }
+
+    public String recognize(BufferedImage image, Rectangle region, Deadline deadline) throws TesseractException {
+        if (!isHealthy()) {
+            throw new TesseractException("Tesseract engine is not initialized");
+        }
+        checkDeadline(deadline);
+        try {
+            passImage(image);
+            setROI(region);
+            return recognizeText(deadline);
+        } catch (IOException e) {
+            throw new TesseractException(e);
+        } catch (OCRTimeoutException e) {
+            throw e;
+        } catch (RuntimeException | Error e) {
+            broken = true;
+            throw e;
+        } finally {
+            getAPI().TessBaseAPIClear(getHandle());
+        }
+    }
+
+    /*
+
+        The image is converted and passed to Tesseract once, then only the given rectangles are recognized,
+        which is much cheaper than recognizing the whole page when just a few fields are needed.
+
+     */
+
+    public List<String> recognizeRegions(BufferedImage image, List<Rectangle> regions, Deadline deadline) throws TesseractException {
+        if (!isHealthy()) {
+            throw new TesseractException("Tesseract engine is not initialized");
+        }
+        checkDeadline(deadline);
+        List<String> texts = new ArrayList<>(regions.size());
+        try {
+            passImage(image);
+            for (Rectangle region : regions) {
+                setROI(region);
+                texts.add(recognizeText(deadline));
+            }
+            return texts;
+        } catch (IOException e) {
+            throw new TesseractException(e);
+        } catch (OCRTimeoutException e) {
+            throw new OCRTimeoutException(String.join("", texts) + e.getPartialText());
+        } catch (RuntimeException | Error e) {
+            broken = true;
+            throw e;
+        } finally {
+            getAPI().TessBaseAPIClear(getHandle());
+        }
+    }
+
+    /*
+
+        Recognizes the page once and walks the result iterator word by word, reporting the blocks
+        and lines the words belong to. The plain text is read from the same recognition afterwards.
+
+     */
+
+    public void recognizeStructured(BufferedImage image, StructuredResultWriter writer, Deadline deadline) throws TesseractException {
+        if (!isHealthy()) {
+            throw new TesseractException("Tesseract engine is not initialized");
+        }
+        checkDeadline(deadline);
+        ITessAPI.TessResultIterator iterator = null;
+        try {
+            passImage(image);
+            RecognitionMonitor monitor = deadline.isBounded() ? new RecognitionMonitor(deadline) : null;
+            int status = getAPI().TessBaseAPIRecognize(getHandle(), monitor);
+            if (monitor != null && monitor.isCancelled()) {
+                throw new OCRTimeoutException(getOCRText(null, 0));
+            }
+            if (status != 0) {
+                throw new TesseractException("Could not recognize the image");
+            }
+            iterator = getAPI().TessBaseAPIGetIterator(getHandle());
+            if (iterator != null) {
+                writeStructure(iterator, writer);
+            }
+            writer.finish(getOCRText(null, 0));
+        } catch (IOException e) {
+            throw new TesseractException(e);
+        } catch (OCRTimeoutException e) {
+            throw e;
+        } catch (RuntimeException | Error e) {
+            broken = true;
+            throw e;
+        } finally {
+            if (iterator != null) {
+                getAPI().TessResultIteratorDelete(iterator);
+            }
+            getAPI().TessBaseAPIClear(getHandle());
+        }
+    }
+
+    /*
+
+        Needs an engine initialized with the osd model. Returns null when Tesseract finds too little text
+        to decide, e.g. on an empty page.
+
+     */
+
+    public Orientation detectOrientation(BufferedImage image) throws TesseractException {
+        if (!isHealthy()) {
+            throw new TesseractException("Tesseract engine is not initialized");
+        }
+        IntBuffer degrees = IntBuffer.allocate(1);
+        FloatBuffer orientationConfidence = FloatBuffer.allocate(1);
+        PointerByReference script = new PointerByReference();
+        FloatBuffer scriptConfidence = FloatBuffer.allocate(1);
+        try {
+            passImage(image);
+            if (getAPI().TessBaseAPIDetectOrientationScript(getHandle(), degrees, orientationConfidence, script, scriptConfidence) != ITessAPI.TRUE) {
+                return null;
+            }
+            String scriptName = script.getValue() == null ? "" : script.getValue().getString(0);
+            return new Orientation(degrees.get(0), orientationConfidence.get(0), scriptName, scriptConfidence.get(0));
+        } catch (IOException e) {
+            throw new TesseractException(e);
+        } catch (RuntimeException | Error e) {
+            broken = true;
+            throw e;
+        } finally {
+            getAPI().TessBaseAPIClear(getHandle());
+        }
+    }
+
+    /*
+
+        Without a deadline the text is recognized the way Tess4J does it. With a deadline the recognition
+        is started with a monitor that cancels it once the deadline passes. Tesseract keeps the words
+        recognized until then, so the partial text can still be read, and the engine is cleared as usual.
+
+     */
+
+    private String recognizeText(Deadline deadline) {
+        if (!deadline.isBounded()) {
+            return getOCRText(null, 0);
+        }
+        RecognitionMonitor monitor = new RecognitionMonitor(deadline);
+        getAPI().TessBaseAPIRecognize(getHandle(), monitor);
+        String text = getOCRText(null, 0);
+        if (monitor.isCancelled()) {
+            throw new OCRTimeoutException(text);
+        }
+        return text;
+    }
+
+    private static void checkDeadline(Deadline deadline) {
+        if (deadline.isExpired()) {
+            throw new OCRTimeoutException("");
+        }
+    }
+
+    private void writeStructure(ITessAPI.TessResultIterator iterator, StructuredResultWriter writer) throws IOException {
+        ITessAPI.TessPageIterator page = getAPI().TessResultIteratorGetPageIterator(iterator);
+        BoundingBox box = new BoundingBox();
+        getAPI().TessPageIteratorBegin(page);
+        do {
+            if (getAPI().TessPageIteratorIsAtBeginningOf(page, ITessAPI.TessPageIteratorLevel.RIL_BLOCK) == ITessAPI.TRUE
+                    && box.read(page, ITessAPI.TessPageIteratorLevel.RIL_BLOCK)) {
+                writer.startBlock(box.toRectangle(), getAPI().TessResultIteratorConfidence(iterator, ITessAPI.TessPageIteratorLevel.RIL_BLOCK));
+            }
+            if (getAPI().TessPageIteratorIsAtBeginningOf(page, ITessAPI.TessPageIteratorLevel.RIL_TEXTLINE) == ITessAPI.TRUE
+                    && box.read(page, ITessAPI.TessPageIteratorLevel.RIL_TEXTLINE)) {
+                writer.startLine(box.toRectangle(), getAPI().TessResultIteratorConfidence(iterator, ITessAPI.TessPageIteratorLevel.RIL_TEXTLINE));
+            }
+            Pointer text = getAPI().TessResultIteratorGetUTF8Text(iterator, ITessAPI.TessPageIteratorLevel.RIL_WORD);
+            if (text == null) {
+                continue;
+            }
+            try {
+                if (box.read(page, ITessAPI.TessPageIteratorLevel.RIL_WORD)) {
+                    writer.word(text.getString(0), box.toRectangle(), getAPI().TessResultIteratorConfidence(iterator, ITessAPI.TessPageIteratorLevel.RIL_WORD));
+                }
+            } finally {
+                getAPI().TessDeleteText(text);
+            }
+        } while (getAPI().TessPageIteratorNext(page, ITessAPI.TessPageIteratorLevel.RIL_WORD) == ITessAPI.TRUE);
+    }
+
+    /*
+
+        Tess4J reads the whole data buffer of the raster, so a subimage in a layout the direct buffer
+        does not support is copied on its own first, instead of passing the pixels of its parent.
+
+     */
+
+    private void passImage(BufferedImage image) throws IOException {
+        int bitsPerPixel = imageBuffer.write(image);
+        if (bitsPerPixel == DirectImageBuffer.UNSUPPORTED) {
+            setImage(image.getRaster().getParent() == null ? image : copy(image));
+            return;
+        }
+        setImage(image.getWidth(), image.getHeight(), imageBuffer.getBuffer(), bitsPerPixel);
+    }
+
+    private static BufferedImage copy(BufferedImage image) {
+        BufferedImage copy = new BufferedImage(image.getColorModel(), image.getRaster().createCompatibleWritableRaster(), image.isAlphaPremultiplied(), null);
+        copy.setData(image.getRaster());
+        return copy;
+    }
+
+    public boolean isHealthy() {
+        return open && !broken && getHandle() != null;
+    }
+
+    public EngineConfig getConfig() {
+        return config;
+    }
+
+    public void close() {
+        if (open) {
+            open = false;
+            imageBuffer.release();
+            dispose();
+        }
+    }
+
+    private class BoundingBox {
+
+        private final IntBuffer left = IntBuffer.allocate(1);
+        private final IntBuffer top = IntBuffer.allocate(1);
+        private final IntBuffer right = IntBuffer.allocate(1);
+        private final IntBuffer bottom = IntBuffer.allocate(1);
+
+        private boolean read(ITessAPI.TessPageIterator page, int level) {
+            return getAPI().TessPageIteratorBoundingBox(page, level, left, top, right, bottom) == ITessAPI.TRUE;
+        }
+
+        private Rectangle toRectangle() {
+            return new Rectangle(left.get(0), top.get(0), right.get(0) - left.get(0), bottom.get(0) - top.get(0));
+        }
+    }
+
+}
@@ -0,0 +1,250 @@
+package com.kapia.ocr;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import net.sourceforge.tess4j.TesseractException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+public class TesseractEnginePool implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TesseractEnginePool.class);
+
+    private final EngineConfig config;
+    private final int maxSize;
+    private final Duration borrowTimeout;
+    private final EngineFactory engineFactory;
+    private final long modelSize;
+
+    private final BlockingDeque<TesseractEngine> idleEngines = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final AtomicInteger borrowed = new AtomicInteger();
+
+    private final MeterRegistry meterRegistry;
+    private final List<Meter> meters;
+    private final Timer waitTimer;
+    private final Counter evictions;
+
+    private volatile boolean closed;
+
+    public TesseractEnginePool(EngineConfig config, int maxSize, Duration borrowTimeout, MeterRegistry meterRegistry) {
+        this(config, maxSize, borrowTimeout, meterRegistry, TesseractEnginePool::openEngine);
+    }
+
+    public TesseractEnginePool(EngineConfig config, int maxSize, Duration borrowTimeout, MeterRegistry meterRegistry, EngineFactory engineFactory) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.config = config;
+        this.maxSize = maxSize;
+        this.borrowTimeout = borrowTimeout;
+        this.engineFactory = engineFactory;
+        this.modelSize = config.modelSize();
+        this.permits = new Semaphore(maxSize, true);
+        this.meterRegistry = meterRegistry;
+
+        Tags tags = Tags.of("language", config.language(), "pool", config.poolName());
+        this.meters = new ArrayList<>();
+        register("ocr.pool.borrowed", tags, Gauge.builder("ocr.pool.borrowed", borrowed, AtomicInteger::get)
+                .description("Tesseract engines currently in use")
+                .tags(tags)::register);
+        register("ocr.pool.idle", tags, Gauge.builder("ocr.pool.idle", idleEngines, BlockingDeque::size)
+                .description("Initialized Tesseract engines waiting to be borrowed")
+                .tags(tags)::register);
+        this.waitTimer = register("ocr.pool.wait", tags, Timer.builder("ocr.pool.wait")
+                .description("Time spent waiting for a Tesseract engine")
+                .tags(tags)::register);
+        this.evictions = register("ocr.pool.evictions", tags, Counter.builder("ocr.pool.evictions")
+                .description("Tesseract engines discarded after a failure")
+                .tags(tags)::register);
+
+        LOGGER.info("Created Tesseract engine pool for language: " + config.language() + " with size: " + maxSize);
+    }
+
+    /*
+
+        A meter that is already registered belongs to another open pool of the same configuration,
+        which removes it when it closes, so only meters created here are removed by this pool.
+
+     */
+
+    private <M extends Meter> M register(String name, Tags tags, Function<MeterRegistry, M> registration) {
+        boolean registered = meterRegistry.find(name).tags(tags).meter() != null;
+        M meter = registration.apply(meterRegistry);
+        if (!registered) {
+            meters.add(meter);
+        }
+        return meter;
+    }
+
+    public <T> T execute(EngineCallback<T> callback) throws TesseractException {
+        // Native calls would pin the carrier thread, virtual request threads hand OCR to the OCR executor
+        if (Thread.currentThread().isVirtual()) {
+            throw new IllegalStateException("Tesseract cannot run on a virtual thread");
+        }
+        TesseractEngine engine = borrow();
+        T result;
+        try {
+            result = callback.doWithEngine(engine);
+        } catch (OCRTimeoutException e) {
+            // A cancelled recognition leaves the engine cleared and reusable
+            release(engine);
+            throw e;
+        } catch (TesseractException | RuntimeException | Error e) {
+            invalidate(engine);
+            throw e;
+        }
+        release(engine);
+        return result;
+    }
+
+    /*
+
+        Opens engines until the pool is full, so the first requests do not pay for loading the traineddata.
+
+     */
+
+    public int prestart() throws TesseractException {
+        List<TesseractEngine> engines = new ArrayList<>(maxSize);
+        try {
+            while (engines.size() < maxSize) {
+                engines.add(borrow());
+            }
+        } finally {
+            engines.forEach(this::release);
+        }
+        return engines.size();
+    }
+
+    public TesseractEngine borrow() throws TesseractException {
+        if (closed) {
+            throw new TesseractException("Tesseract engine pool is closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("Timed out waiting for a Tesseract engine after " + borrowTimeout.toMillis() + " ms");
+                throw new TesseractException("Timed out waiting for a Tesseract engine");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TesseractException("Interrupted while waiting for a Tesseract engine");
+        } finally {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        try {
+            TesseractEngine engine = pollHealthyEngine();
+            if (engine == null) {
+                engine = engineFactory.create(config);
+            }
+            borrowed.incrementAndGet();
+            return engine;
+        } catch (TesseractException | RuntimeException | Error e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public void release(TesseractEngine engine) {
+        borrowed.decrementAndGet();
+        if (closed || !engine.isHealthy()) {
+            destroy(engine);
+        } else {
+            idleEngines.offerFirst(engine);
+        }
+        permits.release();
+    }
+
+    public void invalidate(TesseractEngine engine) {
+        borrowed.decrementAndGet();
+        evictions.increment();
+        LOGGER.warn("Evicting Tesseract engine for language: " + config.language());
+        destroy(engine);
+        permits.release();
+    }
+
+    private TesseractEngine pollHealthyEngine() {
+        TesseractEngine engine;
+        while ((engine = idleEngines.pollFirst()) != null) {
+            if (engine.isHealthy()) {
+                return engine;
+            }
+            evictions.increment();
+            destroy(engine);
+        }
+        return null;
+    }
+
+    private void destroy(TesseractEngine engine) {
+        try {
+            engine.close();
+        } catch (RuntimeException e) {
+            LOGGER.error("Error closing Tesseract engine", e);
+        }
+    }
+
+    public int getBorrowedCount() {
+        return borrowed.get();
+    }
+
+    public int getIdleCount() {
+        return idleEngines.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public EngineConfig getConfig() {
+        return config;
+    }
+
+    public long getModelMemory() {
+        return modelSize * (borrowed.get() + idleEngines.size());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        TesseractEngine engine;
+        while ((engine = idleEngines.pollFirst()) != null) {
+            destroy(engine);
+        }
+        // Pools of other languages come and go, a pool created later for the same configuration registers its own meters
+        meters.forEach(meterRegistry::remove);
+        LOGGER.info("Closed Tesseract engine pool for language: " + config.language());
+    }
+
+    static TesseractEngine openEngine(EngineConfig config) throws TesseractException {
+        TesseractEngine engine = new TesseractEngine(config);
+        engine.open();
+        return engine;
+    }
+
+    @FunctionalInterface
+    public interface EngineFactory {
+        TesseractEngine create(EngineConfig config) throws TesseractException;
+    }
+
+    @FunctionalInterface
+    public interface EngineCallback<T> {
+        T doWithEngine(TesseractEngine engine) throws TesseractException;
+    }
+
+}
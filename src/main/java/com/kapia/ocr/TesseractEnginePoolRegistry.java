@@ -0,0 +1,276 @@
+package com.kapia.ocr;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.sourceforge.tess4j.TesseractException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/*
+
+    The pool of the default language and the pools of the configured profiles are created at startup
+    and always kept. Every other language, or combination of languages such as eng+deu, gets its own pool
+    when it is first requested. Those pools are kept in least recently used order, and once there are
+    too many of them, or the estimated memory of their loaded models exceeds the budget, the least recently
+    used pools that are not in use are closed, which unloads their traineddata.
+
+ */
+
+public class TesseractEnginePoolRegistry implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TesseractEnginePoolRegistry.class);
+
+    private static final Pattern LANGUAGE_PATTERN = Pattern.compile("[A-Za-z0-9_]+(\\+[A-Za-z0-9_]+){0,7}");
+
+    private final TesseractEnginePool defaultPool;
+    private final int poolSize;
+    private final Duration borrowTimeout;
+    private final int maxPools;
+    private final long memoryBudgetInBytes;
+    private final MeterRegistry meterRegistry;
+    private final TesseractEnginePool.EngineFactory engineFactory;
+
+    private final Map<EngineConfig, TesseractEnginePool> profilePools = new ConcurrentHashMap<>();
+    private final Map<EngineConfig, PoolEntry> pools = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Counter hits;
+    private final Counter coldLoads;
+    private final Counter unloads;
+
+    public TesseractEnginePoolRegistry(TesseractEnginePool defaultPool, int poolSize, Duration borrowTimeout, int maxPools, long memoryBudgetInBytes, MeterRegistry meterRegistry) {
+        this(defaultPool, poolSize, borrowTimeout, maxPools, memoryBudgetInBytes, meterRegistry, TesseractEnginePool::openEngine);
+    }
+
+    public TesseractEnginePoolRegistry(TesseractEnginePool defaultPool, int poolSize, Duration borrowTimeout, int maxPools, long memoryBudgetInBytes, MeterRegistry meterRegistry, TesseractEnginePool.EngineFactory engineFactory) {
+        this.defaultPool = defaultPool;
+        this.poolSize = poolSize;
+        this.borrowTimeout = borrowTimeout;
+        this.maxPools = maxPools;
+        this.memoryBudgetInBytes = memoryBudgetInBytes;
+        this.meterRegistry = meterRegistry;
+        this.engineFactory = engineFactory;
+
+        this.hits = Counter.builder("ocr.languages.requests")
+                .description("Requests served by an already created language pool")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.coldLoads = Counter.builder("ocr.languages.requests")
+                .description("Requests that had to create a language pool")
+                .tag("result", "cold")
+                .register(meterRegistry);
+        this.unloads = Counter.builder("ocr.languages.unloads")
+                .description("Language pools closed to stay within the limits")
+                .register(meterRegistry);
+        Gauge.builder("ocr.languages.loaded", this, TesseractEnginePoolRegistry::getLoadedPoolCount)
+                .description("Language pools currently kept, besides the default one")
+                .register(meterRegistry);
+        Gauge.builder("ocr.languages.memory", this, TesseractEnginePoolRegistry::getEstimatedMemory)
+                .description("Estimated size of the models loaded by language pools, besides the default one")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public EngineConfig getDefaultConfig() {
+        return defaultPool.getConfig();
+    }
+
+    public void pin(EngineConfig config) throws TesseractException {
+        if (config.equals(defaultPool.getConfig()) || profilePools.containsKey(config)) {
+            return;
+        }
+        TesseractEnginePool pool = createPool(config);
+        try {
+            // Loads the models of the profile before the first request needs them
+            pool.execute(engine -> null);
+        } catch (TesseractException | RuntimeException e) {
+            pool.close();
+            throw e;
+        }
+        profilePools.put(config, pool);
+    }
+
+    public int prestart() throws TesseractException {
+        int engines = defaultPool.prestart();
+        for (TesseractEnginePool pool : profilePools.values()) {
+            engines += pool.prestart();
+        }
+        return engines;
+    }
+
+    public EngineConfig resolveConfig(String language) {
+        return resolveConfig(defaultPool.getConfig(), language);
+    }
+
+    public EngineConfig resolveConfig(EngineConfig baseConfig, String language) {
+        if (language == null || language.isBlank() || language.equals(baseConfig.language())) {
+            return baseConfig;
+        }
+        if (!LANGUAGE_PATTERN.matcher(language).matches()) {
+            throw new InvalidLanguageException("Language must be a traineddata name or names joined with +, e.g. eng+deu");
+        }
+
+        EngineConfig config = baseConfig.withLanguage(language);
+        for (String model : config.models()) {
+            if (!Files.isRegularFile(config.modelPath(model))) {
+                throw new InvalidLanguageException("Language is not installed: " + model);
+            }
+        }
+        return config;
+    }
+
+    public <T> T execute(EngineConfig config, TesseractEnginePool.EngineCallback<T> callback) throws TesseractException {
+        if (config.equals(defaultPool.getConfig())) {
+            hits.increment();
+            return defaultPool.execute(callback);
+        }
+        TesseractEnginePool profilePool = profilePools.get(config);
+        if (profilePool != null) {
+            hits.increment();
+            return profilePool.execute(callback);
+        }
+
+        PoolEntry entry = acquire(config);
+        try {
+            return entry.pool.execute(callback);
+        } finally {
+            entry.users.decrementAndGet();
+            unloadIfOverLimits();
+        }
+    }
+
+    private PoolEntry acquire(EngineConfig config) {
+        lock.lock();
+        try {
+            PoolEntry entry = pools.get(config);
+            if (entry == null) {
+                coldLoads.increment();
+                entry = new PoolEntry(createPool(config), config.modelSize());
+                pools.put(config, entry);
+            } else {
+                hits.increment();
+            }
+            entry.users.incrementAndGet();
+            return entry;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private TesseractEnginePool createPool(EngineConfig config) {
+        Timer loadTimer = Timer.builder("ocr.languages.load")
+                .description("Time spent initializing a Tesseract engine for a language")
+                .tag("language", config.language())
+                .tag("pool", config.poolName())
+                .register(meterRegistry);
+        return new TesseractEnginePool(config, poolSize, borrowTimeout, meterRegistry, engineConfig -> {
+            long start = System.nanoTime();
+            try {
+                return engineFactory.create(engineConfig);
+            } finally {
+                loadTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    private void unloadIfOverLimits() {
+        lock.lock();
+        try {
+            long memory = getEstimatedMemory();
+            Iterator<PoolEntry> iterator = pools.values().iterator();
+            while ((pools.size() > maxPools || memory > memoryBudgetInBytes) && iterator.hasNext()) {
+                PoolEntry entry = iterator.next();
+                if (entry.users.get() > 0) {
+                    continue;
+                }
+                memory -= entry.estimatedMemory();
+                iterator.remove();
+                entry.pool.close();
+                unloads.increment();
+                LOGGER.info("Unloaded engine pool for language: " + entry.pool.getConfig().language());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLoadedPoolCount() {
+        lock.lock();
+        try {
+            return pools.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getEstimatedMemory() {
+        lock.lock();
+        try {
+            long memory = 0;
+            for (PoolEntry entry : pools.values()) {
+                memory += entry.estimatedMemory();
+            }
+            return memory;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+
+        Every open engine keeps its own copy of the models, so the default and profile pools count as well.
+
+     */
+
+    public long getModelMemory() {
+        long memory = defaultPool.getModelMemory() + getEstimatedMemory();
+        for (TesseractEnginePool pool : profilePools.values()) {
+            memory += pool.getModelMemory();
+        }
+        return memory;
+    }
+
+    @Override
+    public void close() {
+        profilePools.values().forEach(TesseractEnginePool::close);
+        profilePools.clear();
+        lock.lock();
+        try {
+            pools.values().forEach(entry -> entry.pool.close());
+            pools.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static class PoolEntry {
+
+        private final TesseractEnginePool pool;
+        private final long modelSize;
+        private final AtomicInteger users = new AtomicInteger();
+
+        private PoolEntry(TesseractEnginePool pool, long modelSize) {
+            this.pool = pool;
+            this.modelSize = modelSize;
+        }
+
+        // Every initialized engine holds its own copy of the models
+        private long estimatedMemory() {
+            return modelSize * (pool.getIdleCount() + pool.getBorrowedCount());
+        }
+    }
+
+}
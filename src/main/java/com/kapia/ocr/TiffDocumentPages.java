@@ -0,0 +1,60 @@
+package com.kapia.ocr;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+class TiffDocumentPages implements DocumentPages {
+
+    private final ImageInputStream imageInputStream;
+    private final ImageReader reader;
+    private final int pageCount;
+
+    TiffDocumentPages(InputStream inputStream) throws IOException {
+        this.imageInputStream = ImageIO.createImageInputStream(inputStream);
+        if (imageInputStream == null) {
+            throw new IOException("Document could not be read");
+        }
+
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+        if (!readers.hasNext()) {
+            imageInputStream.close();
+            throw new IOException("Document is not a TIFF image");
+        }
+
+        this.reader = readers.next();
+        try {
+            reader.setInput(imageInputStream, false, true);
+            this.pageCount = reader.getNumImages(true);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    @Override
+    public long getPagePixels(int pageIndex) throws IOException {
+        return (long) reader.getWidth(pageIndex) * reader.getHeight(pageIndex);
+    }
+
+    @Override
+    public BufferedImage readPage(int pageIndex) throws IOException {
+        return reader.read(pageIndex);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.dispose();
+        imageInputStream.close();
+    }
+
+}
@@ -37,7 +37,7 @@ public enum PricingPlan {
                 .build();
     }
 
-    static PricingPlan resolvePlanFromKey(String apiKey) {
+    public static PricingPlan resolvePlanFromKey(String apiKey) {
         if (apiKey == null || apiKey.isEmpty()) {
             return FREE;
         }
@@ -50,5 +50,10 @@ public enum PricingPlan {
         return FREE;
     }
 
+    public Duration getDeadline(Environment environment) {
+        long seconds = environment.getProperty("pricing.plans." + name().toLowerCase() + ".deadline.in.seconds", Long.class, 30L);
+        return Duration.ofSeconds(seconds);
+    }
+
     abstract Bandwidth getLimit(Environment environment);
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.kapia.ratelimiting;
+
+public class RateLimitExceededException extends RuntimeException {
+
+    public RateLimitExceededException(String message) {
+        super(message);
+    }
+
+}
@@ -32,16 +32,20 @@ public class RateLimitingService {
     }
 
     public boolean tryConsumeTokenWithKey(String key, HttpServletResponse response) {
+        return tryConsumeTokensWithKey(key, 1, response);
+    }
+
+    public boolean tryConsumeTokensWithKey(String key, long tokens, HttpServletResponse response) {
 
         PricingPlan pricingPlan = PricingPlan.resolvePlanFromKey(key);
         Supplier<BucketConfiguration> bucketConfigurationSupplier = () -> getBucketConfigurationForPlan(pricingPlan);
 
         Bucket bucket = proxyManager.builder().build(key, bucketConfigurationSupplier);
 
-        ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(1);
+        ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(tokens);
 
         if (probe.isConsumed()) {
-            LOGGER.info("Token consumed for API key: " + key);
+            LOGGER.info("Tokens consumed for API key: " + key + ", tokens: " + tokens);
             response.setHeader("X-Rate-Limit-Remaining", String.valueOf(probe.getRemainingTokens()));
             return true;
         } else {
@@ -53,16 +57,20 @@ public class RateLimitingService {
     }
 
     public boolean tryConsumeTokenWithIp(String ip, HttpServletResponse response) {
+        return tryConsumeTokensWithIp(ip, 1, response);
+    }
+
+    public boolean tryConsumeTokensWithIp(String ip, long tokens, HttpServletResponse response) {
 
         PricingPlan pricingPlan = PricingPlan.FREE;
         Supplier<BucketConfiguration> bucketConfigurationSupplier = () -> getBucketConfigurationForPlan(pricingPlan);
 
         Bucket bucket = proxyManager.builder().build(ip, bucketConfigurationSupplier);
 
-        ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(1);
+        ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(tokens);
 
         if (probe.isConsumed()) {
-            LOGGER.info("Token consumed for IP: " + ip);
+            LOGGER.info("Tokens consumed for IP: " + ip + ", tokens: " + tokens);
             response.setHeader("X-Rate-Limit-Remaining", String.valueOf(probe.getRemainingTokens()));
             return true;
         }
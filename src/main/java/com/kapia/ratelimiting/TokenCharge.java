@@ -0,0 +1,27 @@
+package com.kapia.ratelimiting;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/*
+
+    Charges further tokens to the bucket that admitted the request, for requests whose cost is only known
+    once the upload has been read, such as the pages of a document. The rate limiting filter stores the
+    charge in the request; requests without it, such as those of admins, are not charged.
+
+ */
+
+@FunctionalInterface
+public interface TokenCharge {
+
+    String REQUEST_ATTRIBUTE = TokenCharge.class.getName();
+
+    TokenCharge NONE = (tokens, response) -> true;
+
+    boolean tryConsume(long tokens, HttpServletResponse response);
+
+    static TokenCharge of(HttpServletRequest request) {
+        return request.getAttribute(REQUEST_ATTRIBUTE) instanceof TokenCharge charge ? charge : NONE;
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.kapia.redis;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulRedisConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(name = "ocr.cache.redis.enabled", havingValue = "true")
+public class RedisCacheConfig {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisCacheConfig.class);
+
+    @Value("${redis.cache.host}")
+    private String redisCacheHost;
+
+    @Value("${redis.cache.port}")
+    private int redisCachePort;
+
+    @Value("${redis.cache.password}")
+    private char[] redisCachePassword;
+
+    @Bean(destroyMethod = "close")
+    public StatefulRedisConnection<String, String> redisCacheConnection() {
+
+        LOGGER.info("Creating a Redis StatefulRedisConnection for host: {} and port: {}", redisCacheHost, redisCachePort);
+        RedisClient redisClient = RedisClient.create(RedisURI.builder()
+                .withHost(redisCacheHost)
+                .withPort(redisCachePort)
+                .withPassword(redisCachePassword)
+                .build());
+
+        return redisClient.connect();
+    }
+
+}
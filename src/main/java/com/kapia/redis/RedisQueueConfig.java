@@ -0,0 +1,38 @@
+package com.kapia.redis;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(name = "ocr.jobs.queue.enabled", havingValue = "true")
+public class RedisQueueConfig {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisQueueConfig.class);
+
+    @Value("${redis.queue.host}")
+    private String redisQueueHost;
+
+    @Value("${redis.queue.port}")
+    private int redisQueuePort;
+
+    @Value("${redis.queue.password}")
+    private char[] redisQueuePassword;
+
+    @Bean(destroyMethod = "shutdown")
+    public RedisClient redisQueueClient() {
+
+        LOGGER.info("Creating a Redis client for the OCR job queue on host: {} and port: {}", redisQueueHost, redisQueuePort);
+        return RedisClient.create(RedisURI.builder()
+                .withHost(redisQueueHost)
+                .withPort(redisQueuePort)
+                .withPassword(redisQueuePassword)
+                .build());
+    }
+
+}
@@ -28,6 +28,9 @@ import javax.sql.DataSource;
 public class SecurityConfig {
 
     private static final String OCR_ENDPOINT = "/getOCR";
+    private static final String OCR_BATCH_ENDPOINT = "/getOCR/batch";
+    private static final String OCR_DOCUMENT_ENDPOINT = "/getOCR/document";
+    private static final String OCR_JOBS_ENDPOINT = "/ocr/jobs";
     private static final String KEY_ENDPOINT = "/key";
     private static final String REGISTER_ENDPOINT = "/register";
 
@@ -45,6 +48,12 @@ public class SecurityConfig {
             "/swagger-ui/**"
     };
 
+    // Probes of load balancers and orchestrators cannot authenticate
+    private static final String[] PROBE_WHITELIST = {
+            "/actuator/health/liveness",
+            "/actuator/health/readiness"
+    };
+
     private static final String[] ADMIN_WHITELIST = {
             "/actuator/**",
             KEY_ENDPOINT
@@ -96,7 +105,12 @@ public class SecurityConfig {
                 .csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers(HttpMethod.POST, OCR_ENDPOINT).permitAll()
+                        .requestMatchers(HttpMethod.POST, OCR_BATCH_ENDPOINT).permitAll()
+                        .requestMatchers(HttpMethod.POST, OCR_DOCUMENT_ENDPOINT).permitAll()
+                        .requestMatchers(HttpMethod.POST, OCR_JOBS_ENDPOINT).permitAll()
+                        .requestMatchers(HttpMethod.GET, OCR_JOBS_ENDPOINT + "/*").permitAll()
                         .requestMatchers(HttpMethod.POST, REGISTER_ENDPOINT).hasAnyAuthority(ROLE_ADMIN, ROLE_SUPERUSER)
+                        .requestMatchers(HttpMethod.GET, PROBE_WHITELIST).permitAll()
                         .requestMatchers(HttpMethod.GET, ADMIN_WHITELIST).hasAnyAuthority(ROLE_ADMIN, ROLE_SUPERUSER)
                         .requestMatchers(HttpMethod.GET, AUTH_WHITELIST).permitAll()
                         .anyRequest().denyAll()
@@ -0,0 +1,55 @@
+package com.kapia.util;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/*
+
+    ImageIO.read(InputStream) copies the stream into a temporary file, or into heap blocks when caching
+    on disk is disabled, to support seeking. A buffer that is already in memory can be read and seeked in
+    place, without copying.
+
+ */
+
+public class ByteBufferImageInputStream extends ImageInputStreamImpl {
+
+    private final ByteBuffer buffer;
+
+    public ByteBufferImageInputStream(ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (streamPos >= buffer.limit()) {
+            return -1;
+        }
+        return buffer.get((int) streamPos++) & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (length == 0) {
+            return 0;
+        }
+        int available = buffer.limit() - (int) streamPos;
+        if (available <= 0) {
+            return -1;
+        }
+        int count = Math.min(length, available);
+        buffer.get((int) streamPos, bytes, offset, count);
+        streamPos += count;
+        return count;
+    }
+
+    @Override
+    public long length() {
+        return buffer.limit();
+    }
+
+}
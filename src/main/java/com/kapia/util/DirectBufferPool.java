@@ -0,0 +1,156 @@
+package com.kapia.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+
+    Uploads are read into direct buffers outside of the heap. Buffers are grouped in power-of-two size classes
+    and returned to their class once the upload has been decoded, so that the steady state allocates nothing,
+    whatever the size of the uploads. Buffers larger than the largest class, or returned when the pool
+    already holds its capacity, are left to the garbage collector.
+
+ */
+
+@Component
+public class DirectBufferPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectBufferPool.class);
+
+    public static final int MIN_SIZE_CLASS = 64 * 1024;
+
+    private final int maxSizeClass;
+    private final long capacityInBytes;
+    private final List<Deque<ByteBuffer>> sizeClasses = new ArrayList<>();
+    private final AtomicLong pooledBytes = new AtomicLong();
+
+    private final Counter allocations;
+    private final Counter reuses;
+
+    @Autowired
+    public DirectBufferPool(@Value("${ocr.upload.buffers.max.size.in.megabytes:8}") int maxSizeInMegabytes,
+                            @Value("${ocr.upload.buffers.capacity.in.megabytes:64}") long capacityInMegabytes,
+                            MeterRegistry meterRegistry) {
+        this(DataSize.ofMegabytes(maxSizeInMegabytes), DataSize.ofMegabytes(capacityInMegabytes), meterRegistry);
+    }
+
+    public DirectBufferPool(DataSize maxSize, DataSize capacity, MeterRegistry meterRegistry) {
+        this.maxSizeClass = sizeClassOf((int) Math.min(1 << 30, Math.max(MIN_SIZE_CLASS, maxSize.toBytes())));
+        this.capacityInBytes = capacity.toBytes();
+        for (int sizeClass = MIN_SIZE_CLASS; sizeClass > 0 && sizeClass <= maxSizeClass; sizeClass <<= 1) {
+            sizeClasses.add(new ConcurrentLinkedDeque<>());
+        }
+
+        Gauge.builder("ocr.upload.buffers.pooled", pooledBytes, AtomicLong::get)
+                .description("Size of idle upload buffers kept for reuse")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.allocations = Counter.builder("ocr.upload.buffers.allocations")
+                .description("Upload buffers allocated because no pooled buffer was available")
+                .register(meterRegistry);
+        this.reuses = Counter.builder("ocr.upload.buffers.reuses")
+                .description("Upload buffers taken from the pool")
+                .register(meterRegistry);
+
+        LOGGER.info("Created upload buffer pool with size classes up to " + maxSizeClass + " bytes and capacity " + capacityInBytes + " bytes");
+    }
+
+    public PooledBuffer read(InputStream inputStream, long expectedSize) throws IOException {
+
+        if (expectedSize >= Integer.MAX_VALUE) {
+            throw new IOException("Upload is too large to be buffered");
+        }
+
+        // One spare byte, so that an upload of exactly the expected size is recognized as complete without growing
+        PooledBuffer pooledBuffer = acquire((int) Math.max(0, expectedSize) + 1);
+        try {
+            ReadableByteChannel channel = Channels.newChannel(inputStream);
+            while (true) {
+                if (!pooledBuffer.buffer().hasRemaining()) {
+                    pooledBuffer = grow(pooledBuffer);
+                }
+                if (channel.read(pooledBuffer.buffer()) < 0) {
+                    break;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            pooledBuffer.close();
+            throw e;
+        }
+        pooledBuffer.buffer().flip();
+        return pooledBuffer;
+    }
+
+    public PooledBuffer acquire(int size) {
+        int sizeClass = sizeClassOf(Math.max(size, MIN_SIZE_CLASS));
+        ByteBuffer buffer = null;
+        if (sizeClass > 0 && sizeClass <= maxSizeClass) {
+            buffer = sizeClasses.get(indexOf(sizeClass)).pollFirst();
+        }
+
+        if (buffer != null) {
+            pooledBytes.addAndGet(-buffer.capacity());
+            reuses.increment();
+            buffer.clear();
+        } else {
+            allocations.increment();
+            buffer = ByteBuffer.allocateDirect(sizeClass > 0 && sizeClass <= maxSizeClass ? sizeClass : size);
+        }
+        return new PooledBuffer(this, buffer);
+    }
+
+    void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        if (capacity > maxSizeClass || Integer.bitCount(capacity) != 1 || capacity < MIN_SIZE_CLASS) {
+            return;
+        }
+        if (pooledBytes.addAndGet(capacity) > capacityInBytes) {
+            pooledBytes.addAndGet(-capacity);
+            return;
+        }
+        sizeClasses.get(indexOf(capacity)).offerFirst(buffer);
+    }
+
+    public long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    private PooledBuffer grow(PooledBuffer pooledBuffer) throws IOException {
+        ByteBuffer buffer = pooledBuffer.buffer();
+        if (buffer.capacity() >= Integer.MAX_VALUE / 2) {
+            throw new IOException("Upload is too large to be buffered");
+        }
+        PooledBuffer larger = acquire(buffer.capacity() * 2);
+        buffer.flip();
+        larger.buffer().put(buffer);
+        pooledBuffer.close();
+        return larger;
+    }
+
+    private static int sizeClassOf(int size) {
+        return size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+    }
+
+    private static int indexOf(int sizeClass) {
+        return Integer.numberOfTrailingZeros(sizeClass) - Integer.numberOfTrailingZeros(MIN_SIZE_CLASS);
+    }
+
+}
@@ -5,6 +5,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.security.crypto.codec.Hex;
 import org.springframework.stereotype.Service;
 
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -14,10 +15,18 @@ public class HashingService {
     private static final Logger LOGGER = LoggerFactory.getLogger(HashingService.class);
 
     public String hash(String str) {
+        return hash(str.getBytes());
+    }
+
+    public String hash(byte[] bytes) {
+        return hash(ByteBuffer.wrap(bytes));
+    }
+
+    public String hash(ByteBuffer buffer) {
 
         try {
             MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
-            messageDigest.update(str.getBytes());
+            messageDigest.update(buffer.duplicate());
             return new String(Hex.encode(messageDigest.digest()));
         } catch (NoSuchAlgorithmException e) {
             LOGGER.error("Error hashing string: " + e.getMessage());
@@ -0,0 +1,29 @@
+package com.kapia.util;
+
+import java.nio.ByteBuffer;
+
+public final class PooledBuffer implements AutoCloseable {
+
+    private final DirectBufferPool pool;
+    private final ByteBuffer buffer;
+
+    private boolean released;
+
+    PooledBuffer(DirectBufferPool pool, ByteBuffer buffer) {
+        this.pool = pool;
+        this.buffer = buffer;
+    }
+
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    @Override
+    public void close() {
+        if (!released) {
+            released = true;
+            pool.release(buffer);
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.kapia.cache;
+
+import com.kapia.util.HashingService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.mockito.Mockito.*;
+
+public class TestOCRResultCache {
+
+    private static final String CONFIGURATION = "eng";
+    private static final String TEXT = "It was the best of times";
+
+    private final HashingService hashingService = new HashingService();
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void init() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    public void givenSameImageAndConfiguration_whenKey_thenReturnSameKey() {
+        OCRResultCache cache = new OCRResultCache(true, 1024, hashingService, meterRegistry);
+
+        Assertions.assertEquals(cache.key(new byte[]{1, 2}, CONFIGURATION), cache.key(new byte[]{1, 2}, CONFIGURATION));
+        Assertions.assertNotEquals(cache.key(new byte[]{1, 2}, CONFIGURATION), cache.key(new byte[]{1, 3}, CONFIGURATION));
+        Assertions.assertNotEquals(cache.key(new byte[]{1, 2}, CONFIGURATION), cache.key(new byte[]{1, 2}, "deu"));
+    }
+
+    @Test
+    public void givenStoredResult_whenGet_thenReturnHitAndRecordMetrics() {
+        OCRResultCache cache = new OCRResultCache(true, 1024 * 1024, hashingService, meterRegistry);
+        String key = cache.key(new byte[]{1, 2}, CONFIGURATION);
+
+        Assertions.assertTrue(cache.get(key).isEmpty());
+        cache.put(key, TEXT);
+
+        Assertions.assertEquals(Optional.of(TEXT), cache.get(key));
+        Assertions.assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+        Assertions.assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    public void givenDisabledCache_whenGet_thenReturnEmpty() {
+        OCRResultCache cache = new OCRResultCache(false, 1024 * 1024, hashingService, meterRegistry);
+        String key = cache.key(new byte[]{1, 2}, CONFIGURATION);
+
+        cache.put(key, TEXT);
+
+        Assertions.assertTrue(cache.get(key).isEmpty());
+    }
+
+    @Test
+    public void givenResultInRedis_whenGet_thenReturnSharedResult() {
+        RedisResultCache redisResultCache = mock(RedisResultCache.class);
+        OCRResultCache cache = new OCRResultCache(true, 1024 * 1024, hashingService, redisResultCache, meterRegistry);
+        String key = cache.key(new byte[]{1, 2}, CONFIGURATION);
+        when(redisResultCache.get(key)).thenReturn(Optional.of(TEXT));
+
+        Assertions.assertEquals(Optional.of(TEXT), cache.get(key));
+        Assertions.assertEquals(Optional.of(TEXT), cache.get(key));
+
+        verify(redisResultCache, times(1)).get(key);
+        Assertions.assertEquals(1.0, meterRegistry.get("ocr.results.redis.hits").counter().count());
+    }
+
+    @Test
+    public void givenNewResult_whenPut_thenWriteToRedis() {
+        RedisResultCache redisResultCache = mock(RedisResultCache.class);
+        OCRResultCache cache = new OCRResultCache(true, 1024 * 1024, hashingService, redisResultCache, meterRegistry);
+        String key = cache.key(new byte[]{1, 2}, CONFIGURATION);
+
+        cache.put(key, TEXT);
+
+        verify(redisResultCache, times(1)).put(key, TEXT);
+    }
+
+}
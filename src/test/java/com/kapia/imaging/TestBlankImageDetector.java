@@ -0,0 +1,116 @@
+package com.kapia.imaging;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+public class TestBlankImageDetector {
+
+    private MeterRegistry meterRegistry;
+    private BlankImageDetector detector;
+
+    @BeforeEach
+    public void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        detector = new BlankImageDetector(true, 16, 48, meterRegistry);
+    }
+
+    private static BufferedImage createPage(int type, Color background) {
+        BufferedImage image = new BufferedImage(1240, 1754, type);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(background);
+        graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+        graphics.dispose();
+        return image;
+    }
+
+    private static void write(BufferedImage image, String text, int y) {
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.BLACK);
+        graphics.setFont(new Font(Font.SERIF, Font.PLAIN, 28));
+        graphics.drawString(text, 100, y);
+        graphics.dispose();
+    }
+
+    @Test
+    public void givenEmptyOrBlackPage_whenIsBlank_thenReturnTrue() {
+
+        Assertions.assertTrue(detector.isBlank(createPage(BufferedImage.TYPE_BYTE_GRAY, Color.WHITE)));
+        Assertions.assertTrue(detector.isBlank(createPage(BufferedImage.TYPE_3BYTE_BGR, Color.BLACK)));
+        Assertions.assertTrue(detector.isBlank(createPage(BufferedImage.TYPE_INT_RGB, new Color(250, 248, 240))));
+        Assertions.assertEquals(3, meterRegistry.get("ocr.blank.images").counter().count());
+
+    }
+
+    @Test
+    public void givenNoisyPageWithDust_whenIsBlank_thenReturnTrue() {
+
+        BufferedImage page = createPage(BufferedImage.TYPE_BYTE_GRAY, Color.WHITE);
+        Random random = new Random(42);
+        for (int y = 0; y < page.getHeight(); y++) {
+            for (int x = 0; x < page.getWidth(); x++) {
+                page.getRaster().setSample(x, y, 0, 235 + random.nextInt(20));
+            }
+        }
+        Graphics2D graphics = page.createGraphics();
+        graphics.setColor(Color.DARK_GRAY);
+        for (int i = 0; i < 5; i++) {
+            graphics.fillOval(random.nextInt(page.getWidth()), random.nextInt(page.getHeight()), 3, 3);
+        }
+        graphics.dispose();
+
+        Assertions.assertTrue(detector.isBlank(page));
+
+    }
+
+    @Test
+    public void givenPageWithSingleLine_whenIsBlank_thenReturnFalse() {
+
+        for (int type : new int[]{BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_BYTE_INDEXED}) {
+            BufferedImage page = createPage(type, Color.WHITE);
+            write(page, "Invoice number 2024-0117", 900);
+
+            Assertions.assertFalse(detector.isBlank(page), "Text not found in image of type " + type);
+        }
+
+    }
+
+    @Test
+    public void givenSampleImage_whenIsBlank_thenReturnFalse() throws IOException {
+
+        BufferedImage image = ImageIO.read(new File("src/test/resources/sample_text_png.png"));
+
+        Assertions.assertFalse(detector.isBlank(image));
+        Assertions.assertEquals(0, meterRegistry.get("ocr.blank.images").counter().count());
+
+    }
+
+    @Test
+    public void givenDifferentSettings_whenFingerprint_thenTellDetectorsApart() {
+
+        Assertions.assertEquals(detector.fingerprint(), new BlankImageDetector(true, 16, 48, meterRegistry).fingerprint());
+        Assertions.assertNotEquals(detector.fingerprint(), new BlankImageDetector(true, 32, 48, meterRegistry).fingerprint());
+        Assertions.assertNotEquals(detector.fingerprint(), new BlankImageDetector(true, 16, 64, meterRegistry).fingerprint());
+        Assertions.assertNotEquals(detector.fingerprint(), new BlankImageDetector(false, 16, 48, meterRegistry).fingerprint());
+
+    }
+
+    @Test
+    public void givenDisabledDetector_whenIsBlank_thenReturnFalse() {
+
+        BlankImageDetector disabled = new BlankImageDetector(false, 16, 48, meterRegistry);
+
+        Assertions.assertFalse(disabled.isBlank(createPage(BufferedImage.TYPE_BYTE_GRAY, Color.WHITE)));
+
+    }
+
+}
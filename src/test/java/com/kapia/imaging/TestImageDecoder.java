@@ -0,0 +1,198 @@
+package com.kapia.imaging;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class TestImageDecoder {
+
+    private static final int TARGET_DPI = 50;
+    private static final int SCAN_DPI = 150;
+
+    private MeterRegistry meterRegistry;
+    private ImageDecoder decoder;
+
+    @BeforeEach
+    public void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        decoder = new ImageDecoder(true, true, TARGET_DPI, meterRegistry);
+    }
+
+    private static byte[] encode(int width, int height, String format) throws IOException {
+        return encode(width, height, format, 0);
+    }
+
+    private static byte[] encode(int width, int height, String format, int dpi) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(200, 220, 255));
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(Color.RED);
+        graphics.fillRect(width / 4, height / 4, width / 2, height / 2);
+        graphics.dispose();
+        return encode(image, format, dpi);
+    }
+
+    /*
+
+        Writes the resolution into the pHYs chunk of a PNG or the JFIF header of a JPEG. The writers do not
+        convert the pixel size of the standard metadata tree correctly, so the native trees are used. A dpi
+        of 0 writes no resolution.
+
+     */
+
+    public static byte[] encode(BufferedImage image, String format, int dpi) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), param);
+        if (dpi > 0) {
+            String formatName = metadata.getNativeMetadataFormatName();
+            IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(formatName);
+            if (format.equals("png")) {
+                IIOMetadataNode physicalSize = new IIOMetadataNode("pHYs");
+                String pixelsPerMetre = Long.toString(Math.round(dpi / 0.0254));
+                physicalSize.setAttribute("pixelsPerUnitXAxis", pixelsPerMetre);
+                physicalSize.setAttribute("pixelsPerUnitYAxis", pixelsPerMetre);
+                physicalSize.setAttribute("unitSpecifier", "meter");
+                root.appendChild(physicalSize);
+            } else {
+                IIOMetadataNode jfif = (IIOMetadataNode) root.getElementsByTagName("app0JFIF").item(0);
+                jfif.setAttribute("resUnits", "1");
+                jfif.setAttribute("Xdensity", Integer.toString(dpi));
+                jfif.setAttribute("Ydensity", Integer.toString(dpi));
+            }
+            metadata.setFromTree(formatName, root);
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, metadata), param);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+
+    private BufferedImage decode(byte[] bytes, boolean atTargetResolution) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            return decoder.decode(input, atTargetResolution);
+        }
+    }
+
+    @Test
+    public void givenHighDpiJpeg_whenDecodeAtTargetResolution_thenSubsampleIntoGrayscale() throws IOException {
+
+        BufferedImage image = decode(encode(2000, 1400, "jpeg", SCAN_DPI), true);
+
+        Assertions.assertEquals(BufferedImage.TYPE_BYTE_GRAY, image.getType());
+        Assertions.assertEquals(667, image.getWidth());
+        Assertions.assertEquals(467, image.getHeight());
+        Assertions.assertEquals(1, meterRegistry.get("ocr.decode.subsampled").counter().count());
+
+    }
+
+    @Test
+    public void givenHighDpiPng_whenDecodeAtTargetResolution_thenSubsampleKeepingType() throws IOException {
+
+        BufferedImage image = decode(encode(1400, 2000, "png", SCAN_DPI), true);
+
+        Assertions.assertEquals(467, image.getWidth());
+        Assertions.assertEquals(667, image.getHeight());
+        Assertions.assertNotEquals(BufferedImage.TYPE_BYTE_GRAY, image.getType());
+
+    }
+
+    @Test
+    public void givenHighDpiImage_whenDecodeAtFullResolution_thenKeepSize() throws IOException {
+
+        BufferedImage image = decode(encode(2000, 1400, "jpeg", SCAN_DPI), false);
+
+        Assertions.assertEquals(2000, image.getWidth());
+        Assertions.assertEquals(1400, image.getHeight());
+        Assertions.assertEquals(BufferedImage.TYPE_BYTE_GRAY, image.getType());
+        Assertions.assertEquals(0, meterRegistry.get("ocr.decode.subsampled").counter().count());
+
+    }
+
+    @Test
+    public void givenLargeImageWithoutResolution_whenDecodeAtTargetResolution_thenKeepSize() throws IOException {
+
+        BufferedImage image = decode(encode(2000, 1400, "png"), true);
+
+        Assertions.assertEquals(2000, image.getWidth());
+        Assertions.assertEquals(1400, image.getHeight());
+        Assertions.assertEquals(0, meterRegistry.get("ocr.decode.subsampled").counter().count());
+
+    }
+
+    @Test
+    public void givenHighDpiImage_whenDecodeWithDefaultSettings_thenKeepResolution() throws IOException {
+
+        File file = new File("src/test/resources/sample_text_png.png");
+        BufferedImage expected = ImageIO.read(file);
+        ImageDecoder defaultDecoder = new ImageDecoder(false, true, 300, new SimpleMeterRegistry());
+        BufferedImage image;
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(encode(expected, "png", 600)))) {
+            image = defaultDecoder.decode(input, true);
+        }
+
+        Assertions.assertEquals(expected.getWidth(), image.getWidth());
+        Assertions.assertEquals(expected.getHeight(), image.getHeight());
+        for (int y = 0; y < expected.getHeight(); y += 7) {
+            for (int x = 0; x < expected.getWidth(); x += 7) {
+                Assertions.assertEquals(expected.getRGB(x, y), image.getRGB(x, y));
+            }
+        }
+
+    }
+
+    @Test
+    public void givenDifferentSettings_whenFingerprint_thenTellDecodersApart() {
+
+        Assertions.assertEquals(new ImageDecoder(false, true, 300, new SimpleMeterRegistry()).fingerprint(), new ImageDecoder(false, true, 150, new SimpleMeterRegistry()).fingerprint());
+        Assertions.assertNotEquals(decoder.fingerprint(), new ImageDecoder(true, true, 300, new SimpleMeterRegistry()).fingerprint());
+        Assertions.assertNotEquals(decoder.fingerprint(), new ImageDecoder(false, true, TARGET_DPI, new SimpleMeterRegistry()).fingerprint());
+        Assertions.assertNotEquals(decoder.fingerprint(), new ImageDecoder(true, false, TARGET_DPI, new SimpleMeterRegistry()).fingerprint());
+
+    }
+
+    @Test
+    public void givenSmallImage_whenDecodeAtTargetResolution_thenKeepSize() throws IOException {
+
+        File file = new File("src/test/resources/sample_text_bmp.bmp");
+        BufferedImage expected = ImageIO.read(file);
+        BufferedImage image = decode(Files.readAllBytes(file.toPath()), true);
+
+        Assertions.assertEquals(expected.getWidth(), image.getWidth());
+        Assertions.assertEquals(expected.getHeight(), image.getHeight());
+        Assertions.assertEquals(expected.getRGB(10, 10), image.getRGB(10, 10));
+
+    }
+
+    @Test
+    public void givenUnknownFormat_whenDecode_thenReturnNull() throws IOException {
+
+        Assertions.assertNull(decode("some text".getBytes(), true));
+
+    }
+
+}
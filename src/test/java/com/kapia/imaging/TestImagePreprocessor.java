@@ -0,0 +1,236 @@
+package com.kapia.imaging;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+public class TestImagePreprocessor {
+
+    private MeterRegistry meterRegistry;
+    private ImagePreprocessor imagePreprocessor;
+
+    @BeforeEach
+    public void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        imagePreprocessor = new ImagePreprocessor("", 300, 5, 31, meterRegistry);
+    }
+
+    @Test
+    public void givenNoDefaultStages_whenPipeline_thenReturnEmptyPipeline() {
+
+        Assertions.assertTrue(imagePreprocessor.getDefaultPipeline().isEmpty());
+        Assertions.assertTrue(imagePreprocessor.pipeline(null).isEmpty());
+        Assertions.assertTrue(imagePreprocessor.pipeline("none").isEmpty());
+
+    }
+
+    @Test
+    public void givenStagesWithoutGrayscale_whenPipeline_thenPrependGrayscale() {
+
+        PreprocessingPipeline pipeline = imagePreprocessor.pipeline("deskew, OTSU");
+
+        Assertions.assertEquals("grayscale,deskew,otsu", pipeline.name());
+
+    }
+
+    @Test
+    public void givenDifferentStageSettings_whenFingerprint_thenTellPipelinesApart() {
+
+        ImagePreprocessor otherPreprocessor = new ImagePreprocessor("", 600, 10, 15, meterRegistry);
+        PreprocessingPipeline pipeline = imagePreprocessor.pipeline("dpi,deskew,adaptive");
+        PreprocessingPipeline otherPipeline = otherPreprocessor.pipeline("dpi,deskew,adaptive");
+
+        Assertions.assertEquals(pipeline.name(), otherPipeline.name());
+        Assertions.assertNotEquals(pipeline.fingerprint(), otherPipeline.fingerprint());
+        Assertions.assertEquals(pipeline.fingerprint(), new ImagePreprocessor("", 300, 5, 31, meterRegistry).pipeline("dpi,deskew,adaptive").fingerprint());
+
+    }
+
+    @Test
+    public void givenUnknownStage_whenPipeline_thenThrowInvalidPreprocessingException() {
+
+        Assertions.assertThrows(InvalidPreprocessingException.class, () -> imagePreprocessor.pipeline("grayscale,sharpen"));
+
+    }
+
+    @Test
+    public void givenColorImage_whenProcess_thenReturnBinaryGrayscaleImageAndRecordTimings() {
+
+        BufferedImage image = new BufferedImage(40, 20, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(new Color(250, 240, 230));
+        graphics.fillRect(0, 0, 40, 20);
+        graphics.setColor(new Color(20, 30, 90));
+        graphics.fillRect(10, 5, 20, 10);
+        graphics.dispose();
+
+        BufferedImage result = imagePreprocessor.process(image, imagePreprocessor.pipeline("otsu"));
+
+        Assertions.assertEquals(BufferedImage.TYPE_BYTE_GRAY, result.getType());
+        Assertions.assertEquals(255, result.getRaster().getSample(0, 0, 0));
+        Assertions.assertEquals(0, result.getRaster().getSample(15, 10, 0));
+        Assertions.assertEquals(1, meterRegistry.get("ocr.preprocessing").tag("stage", "grayscale").timer().count());
+        Assertions.assertEquals(1, meterRegistry.get("ocr.preprocessing").tag("stage", "otsu").timer().count());
+
+    }
+
+    @Test
+    public void givenPackedRgbImage_whenGrayscale_thenMatchLuminance() {
+
+        BufferedImage image = new BufferedImage(2, 1, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, 0xff0000);
+        image.setRGB(1, 0, 0xffffff);
+
+        BufferedImage result = new GrayscaleStage().apply(image);
+
+        Assertions.assertEquals((255 * 77) >> 8, result.getRaster().getSample(0, 0, 0));
+        Assertions.assertEquals(255, result.getRaster().getSample(1, 0, 0));
+
+    }
+
+    @Test
+    public void givenSpeckle_whenDenoise_thenRemoveIt() {
+
+        BufferedImage image = filledGrayImage(5, 5, 255);
+        image.getRaster().setSample(2, 2, 0, 0);
+
+        BufferedImage result = new MedianDenoiseStage().apply(image);
+
+        Assertions.assertEquals(255, result.getRaster().getSample(2, 2, 0));
+
+    }
+
+    @Test
+    public void givenUnevenlyLitText_whenAdaptiveBinarization_thenKeepTextAndDropGradient() {
+
+        BufferedImage image = GrayImages.create(200, 50);
+        for (int y = 0; y < 50; y++) {
+            for (int x = 0; x < 200; x++) {
+                image.getRaster().setSample(x, y, 0, 90 + x);
+            }
+        }
+        for (int x = 150; x < 155; x++) {
+            for (int y = 20; y < 30; y++) {
+                image.getRaster().setSample(x, y, 0, 120);
+            }
+        }
+
+        BufferedImage result = new AdaptiveBinarizationStage(31, 15).apply(image);
+
+        Assertions.assertEquals(0, result.getRaster().getSample(152, 25, 0));
+        Assertions.assertEquals(255, result.getRaster().getSample(20, 25, 0));
+        Assertions.assertEquals(255, result.getRaster().getSample(190, 25, 0));
+
+    }
+
+    @Test
+    public void givenSkewedLines_whenEstimateAngle_thenReturnSkew() {
+
+        BufferedImage image = filledGrayImage(400, 300, 255);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setTransform(AffineTransform.getRotateInstance(Math.toRadians(3), 200, 150));
+        graphics.setColor(Color.BLACK);
+        for (int y = 40; y < 260; y += 30) {
+            graphics.fillRect(40, y, 320, 6);
+        }
+        graphics.dispose();
+
+        DeskewStage deskewStage = new DeskewStage(5);
+
+        Assertions.assertEquals(3.0, deskewStage.estimateAngle(image), 0.5);
+        Assertions.assertEquals(0.0, deskewStage.estimateAngle(deskewStage.apply(image)), 0.5);
+
+    }
+
+    @Test
+    public void givenArraysOverRetainedSize_whenTakeScratchBuffers_thenDoNotKeepThem() {
+
+        Assertions.assertSame(ScratchBuffers.bytes(1024), ScratchBuffers.bytes(512));
+        Assertions.assertSame(ScratchBuffers.ints(1024), ScratchBuffers.ints(512));
+
+        byte[] largeBytes = ScratchBuffers.bytes(ScratchBuffers.MAX_RETAINED_BYTES + 1);
+        int[] largeInts = ScratchBuffers.ints(ScratchBuffers.MAX_RETAINED_BYTES / Integer.BYTES + 1);
+
+        Assertions.assertNotSame(largeBytes, ScratchBuffers.bytes(ScratchBuffers.MAX_RETAINED_BYTES + 1));
+        Assertions.assertNotSame(largeInts, ScratchBuffers.ints(ScratchBuffers.MAX_RETAINED_BYTES / Integer.BYTES + 1));
+        Assertions.assertTrue(ScratchBuffers.bytes(1).length <= ScratchBuffers.MAX_RETAINED_BYTES);
+        Assertions.assertTrue(ScratchBuffers.ints(1).length <= ScratchBuffers.MAX_RETAINED_BYTES / Integer.BYTES);
+
+    }
+
+    @Test
+    public void givenLargeImage_whenNormalizeDpi_thenScaleToA4AtTargetDpi() {
+
+        BufferedImage large = filledGrayImage(1000, 1600, 128);
+        BufferedImage small = filledGrayImage(100, 160, 128);
+        DpiNormalizationStage stage = new DpiNormalizationStage(100);
+
+        BufferedImage scaledDown = stage.apply(large);
+        BufferedImage scaledUp = stage.apply(small);
+
+        Assertions.assertEquals(1169, scaledDown.getHeight());
+        Assertions.assertEquals(128, scaledDown.getRaster().getSample(100, 100, 0));
+        Assertions.assertEquals(320, scaledUp.getHeight());
+        Assertions.assertEquals(128, scaledUp.getRaster().getSample(50, 50, 0));
+
+    }
+
+    @Test
+    public void givenDpiStage_whenProcessWithTransform_thenMapPointsBackToUpload() {
+
+        BufferedImage upload = filledGrayImage(100, 160, 128);
+        ImagePreprocessor preprocessor = new ImagePreprocessor("", 100, 5, 31, meterRegistry);
+
+        PreprocessedImage preprocessed = preprocessor.processWithTransform(upload, preprocessor.pipeline("dpi"));
+        Point2D corner = preprocessed.toSource().transform(new Point2D.Double(preprocessed.image().getWidth(), preprocessed.image().getHeight()), null);
+
+        Assertions.assertEquals(320, preprocessed.image().getHeight());
+        Assertions.assertEquals(100, corner.getX(), 0.001);
+        Assertions.assertEquals(160, corner.getY(), 0.001);
+
+    }
+
+    @Test
+    public void givenSkewedLines_whenProcessWithTransform_thenMapPointsBackToSkewedPositions() {
+
+        AffineTransform skew = AffineTransform.getRotateInstance(Math.toRadians(3), 200, 150);
+        BufferedImage image = filledGrayImage(400, 300, 255);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setTransform(skew);
+        graphics.setColor(Color.BLACK);
+        for (int y = 40; y < 260; y += 30) {
+            graphics.fillRect(40, y, 320, 6);
+        }
+        graphics.dispose();
+
+        PreprocessedImage preprocessed = imagePreprocessor.processWithTransform(image, imagePreprocessor.pipeline("deskew"));
+        Point2D lineStart = new Point2D.Double(40, 40);
+
+        Assertions.assertTrue(preprocessed.toSource().transform(lineStart, null).distance(skew.transform(lineStart, null)) < 3);
+
+    }
+
+    @Test
+    public void givenFilterStages_whenProcessWithTransform_thenKeepCoordinates() {
+
+        PreprocessedImage preprocessed = imagePreprocessor.processWithTransform(filledGrayImage(50, 50, 200), imagePreprocessor.pipeline("denoise,otsu"));
+
+        Assertions.assertTrue(preprocessed.toSource().isIdentity());
+
+    }
+
+    private static BufferedImage filledGrayImage(int width, int height, int value) {
+        BufferedImage image = GrayImages.create(width, height);
+        Arrays.fill(GrayImages.pixels(image), (byte) value);
+        return image;
+    }
+
+}
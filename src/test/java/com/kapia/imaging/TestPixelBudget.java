@@ -0,0 +1,111 @@
+package com.kapia.imaging;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class TestPixelBudget {
+
+    private MeterRegistry meterRegistry;
+    private PixelBudget budget;
+
+    @BeforeEach
+    public void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        budget = new PixelBudget(10_000_000, Duration.ofMillis(100), meterRegistry);
+    }
+
+    @Test
+    public void givenImageLargerThanBudget_whenAcquire_thenThrowImageTooLargeException() {
+
+        ImageTooLargeException exception = Assertions.assertThrows(ImageTooLargeException.class, () -> budget.acquire(12_000_000));
+
+        Assertions.assertEquals("Image cannot have more than 10 megapixels", exception.getMessage());
+        Assertions.assertEquals(1, meterRegistry.get("ocr.decode.pixel.budget.rejected").tag("reason", "too_large").counter().count());
+        Assertions.assertEquals(0, budget.getUtilization());
+
+    }
+
+    @Test
+    public void givenExhaustedBudget_whenAcquire_thenThrowRejectedExecutionException() {
+
+        try (PixelBudget.Permit permit = budget.acquire(8_000_000)) {
+            Assertions.assertEquals(0.8, budget.getUtilization(), 1e-9);
+            Assertions.assertThrows(RejectedExecutionException.class, () -> budget.acquire(4_000_000));
+        }
+
+        Assertions.assertEquals(1, meterRegistry.get("ocr.decode.pixel.budget.rejected").tag("reason", "timeout").counter().count());
+        Assertions.assertEquals(0, budget.getUtilization());
+
+    }
+
+    @Test
+    public void givenExhaustedBudget_whenTryAcquire_thenRejectWithoutWaiting() {
+
+        MeterRegistry patientRegistry = new SimpleMeterRegistry();
+        PixelBudget patientBudget = new PixelBudget(10_000_000, Duration.ofMinutes(1), patientRegistry);
+
+        try (PixelBudget.Permit permit = patientBudget.acquire(8_000_000)) {
+            long start = System.nanoTime();
+            Assertions.assertThrows(RejectedExecutionException.class, () -> patientBudget.tryAcquire(4_000_000));
+            Assertions.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        }
+        try (PixelBudget.Permit permit = patientBudget.tryAcquire(4_000_000)) {
+            Assertions.assertEquals(0.4, patientBudget.getUtilization(), 1e-9);
+        }
+
+    }
+
+    @Test
+    public void givenShorterMaxWait_whenAcquire_thenWaitNoLongerThanGiven() {
+
+        PixelBudget patientBudget = new PixelBudget(10_000_000, Duration.ofMinutes(1), new SimpleMeterRegistry());
+
+        try (PixelBudget.Permit permit = patientBudget.acquire(8_000_000)) {
+            long start = System.nanoTime();
+            Assertions.assertThrows(RejectedExecutionException.class, () -> patientBudget.acquire(4_000_000, TimeUnit.MILLISECONDS.toNanos(50)));
+            Assertions.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        }
+
+    }
+
+    @Test
+    public void givenWaitingImage_whenPermitReleased_thenAdmitImage() throws Exception {
+
+        MeterRegistry patientRegistry = new SimpleMeterRegistry();
+        PixelBudget patientBudget = new PixelBudget(10_000_000, Duration.ofSeconds(10), patientRegistry);
+        PixelBudget.Permit permit = patientBudget.acquire(6_000_000);
+
+        CompletableFuture<PixelBudget.Permit> waiting = CompletableFuture.supplyAsync(() -> patientBudget.acquire(6_000_000));
+        while (patientRegistry.get("ocr.decode.pixel.budget.queued").gauge().value() < 1) {
+            Thread.onSpinWait();
+        }
+        Assertions.assertFalse(waiting.isDone());
+
+        permit.close();
+        permit.close();
+
+        try (PixelBudget.Permit admitted = waiting.get(5, TimeUnit.SECONDS)) {
+            Assertions.assertEquals(0.6, patientBudget.getUtilization(), 1e-9);
+        }
+        Assertions.assertEquals(0, patientBudget.getUtilization());
+
+    }
+
+    @Test
+    public void givenSmallImage_whenAcquire_thenTakeAtLeastOnePermit() {
+
+        try (PixelBudget.Permit permit = budget.acquire(0)) {
+            Assertions.assertTrue(budget.getUtilization() > 0);
+        }
+
+    }
+
+}
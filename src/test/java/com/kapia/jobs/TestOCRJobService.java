@@ -0,0 +1,112 @@
+package com.kapia.jobs;
+
+import com.kapia.exceptionhandling.ResponseExceptionHandler;
+import com.kapia.ocr.OCRPriority;
+import com.kapia.ocr.OCRService;
+import com.kapia.util.DirectBufferPool;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.sourceforge.tess4j.TesseractException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class TestOCRJobService {
+
+    private static final String EXPECTED_TEXT = "It was the best of times";
+
+    private final MockMultipartFile image = new MockMultipartFile("image", "image.png", "image/png", new byte[]{1, 2, 3});
+
+    private OCRService ocrService;
+    private OCRJobService ocrJobService;
+    private DirectBufferPool bufferPool;
+
+    @BeforeEach
+    public void init() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        bufferPool = new DirectBufferPool(DataSize.ofMegabytes(1), DataSize.ofMegabytes(1), meterRegistry);
+        ocrService = mock(OCRService.class);
+        when(ocrService.readUpload(any())).thenAnswer(invocation -> {
+            MultipartFile file = invocation.getArgument(0);
+            return bufferPool.read(file.getInputStream(), file.getSize());
+        });
+        OCRJobStore jobStore = new OCRJobStore(10, 1, meterRegistry);
+        ocrJobService = new OCRJobService(ocrService, jobStore);
+    }
+
+    @Test
+    public void givenImage_whenSubmit_thenJobCompletesWithText() throws Exception {
+        when(ocrService.submitImageBuffer(any(ByteBuffer.class), any())).thenReturn(CompletableFuture.completedFuture(EXPECTED_TEXT));
+
+        OCRJob job = ocrJobService.submit(image);
+        OCRJob completed = awaitCompletion(job.id());
+
+        Assertions.assertEquals(OCRJobStatus.DONE, completed.status());
+        Assertions.assertEquals(EXPECTED_TEXT, completed.text());
+        verify(ocrService, times(1)).submitImageBuffer(any(ByteBuffer.class), eq(OCRPriority.FREE));
+        Assertions.assertEquals(DirectBufferPool.MIN_SIZE_CLASS, bufferPool.getPooledBytes());
+    }
+
+    @Test
+    public void givenTesseractException_whenSubmit_thenJobFails() throws Exception {
+        when(ocrService.submitImageBuffer(any(ByteBuffer.class), any())).thenReturn(CompletableFuture.failedFuture(new TesseractException("Error processing the image")));
+
+        OCRJob job = ocrJobService.submit(image);
+        OCRJob completed = awaitCompletion(job.id());
+
+        Assertions.assertEquals(OCRJobStatus.FAILED, completed.status());
+        Assertions.assertEquals(ResponseExceptionHandler.getErrorProcessingImage(), completed.error());
+    }
+
+    @Test
+    public void givenExhaustedPixelBudget_whenSubmit_thenRejectAndReleaseUpload() throws Exception {
+        when(ocrService.submitImageBuffer(any(ByteBuffer.class), any())).thenThrow(new RejectedExecutionException("Pixel budget exhausted"));
+
+        Assertions.assertThrows(RejectedExecutionException.class, () -> ocrJobService.submit(image));
+        Assertions.assertEquals(DirectBufferPool.MIN_SIZE_CLASS, bufferPool.getPooledBytes());
+    }
+
+    @Test
+    public void givenUnknownId_whenFind_thenReturnEmpty() {
+        Assertions.assertTrue(ocrJobService.find("unknown").isEmpty());
+    }
+
+    @Test
+    public void givenRedisJobQueue_whenSubmitAndFind_thenUseQueue() throws Exception {
+        RedisJobQueue jobQueue = mock(RedisJobQueue.class);
+        OCRJob queued = OCRJob.pending("queued");
+        when(jobQueue.submit(image.getBytes(), OCRPriority.PRO)).thenReturn(queued);
+        when(jobQueue.find("queued")).thenReturn(Optional.of(queued));
+        OCRJobService queueingService = new OCRJobService(ocrService, new OCRJobStore(10, 1, new SimpleMeterRegistry()), jobQueue);
+
+        Assertions.assertSame(queued, queueingService.submit(image, OCRPriority.PRO));
+        Assertions.assertEquals(Optional.of(queued), queueingService.find("queued"));
+        verify(ocrService, never()).readUpload(any());
+        verify(ocrService, never()).submitImageBuffer(any(ByteBuffer.class), any());
+    }
+
+    private OCRJob awaitCompletion(String id) throws InterruptedException {
+        Instant deadline = Instant.now().plus(Duration.ofSeconds(5));
+        while (Instant.now().isBefore(deadline)) {
+            OCRJob job = ocrJobService.find(id).orElseThrow();
+            if (job.status() != OCRJobStatus.PENDING) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Job did not complete in time");
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.kapia.jobs;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+public class TestOCRJobStore {
+
+    private static final String TEXT = "It was the best of times";
+
+    @Test
+    public void givenPendingJob_whenComplete_thenReturnResult() {
+        OCRJobStore store = new OCRJobStore(Duration.ofMinutes(10), 1024, Clock.systemUTC(), new SimpleMeterRegistry());
+        OCRJob job = OCRJob.pending("id");
+
+        store.add(job);
+        Assertions.assertEquals(OCRJobStatus.PENDING, store.find("id").orElseThrow().status());
+
+        store.complete(job.done(TEXT));
+        OCRJob completed = store.find("id").orElseThrow();
+
+        Assertions.assertEquals(OCRJobStatus.DONE, completed.status());
+        Assertions.assertEquals(TEXT, completed.text());
+    }
+
+    @Test
+    public void givenExpiredJob_whenFind_thenReturnEmpty() {
+        Clock future = Clock.fixed(Instant.now().plus(Duration.ofMinutes(11)), ZoneOffset.UTC);
+        OCRJobStore store = new OCRJobStore(Duration.ofMinutes(10), 1024, future, new SimpleMeterRegistry());
+        OCRJob job = OCRJob.pending("id");
+
+        store.add(job);
+        store.complete(job.done(TEXT));
+
+        Assertions.assertTrue(store.find("id").isEmpty());
+        Assertions.assertEquals(0, store.getStoredBytes());
+    }
+
+    @Test
+    public void givenFullStore_whenComplete_thenEvictOldestJob() {
+        OCRJob first = OCRJob.pending("first");
+        OCRJob second = OCRJob.pending("second");
+        long capacity = first.done(TEXT).estimatedSize() + second.done(TEXT).estimatedSize() - 1;
+        OCRJobStore store = new OCRJobStore(Duration.ofMinutes(10), capacity, Clock.systemUTC(), new SimpleMeterRegistry());
+
+        store.add(first);
+        store.add(second);
+        store.complete(first.done(TEXT));
+        store.complete(second.done(TEXT));
+
+        Assertions.assertTrue(store.find("first").isEmpty());
+        Assertions.assertTrue(store.find("second").isPresent());
+    }
+
+    @Test
+    public void givenRemovedJob_whenComplete_thenDoNotStoreResult() {
+        OCRJobStore store = new OCRJobStore(Duration.ofMinutes(10), 1024, Clock.systemUTC(), new SimpleMeterRegistry());
+        OCRJob job = OCRJob.pending("id");
+
+        store.add(job);
+        store.remove("id");
+        store.complete(job.done(TEXT));
+
+        Assertions.assertTrue(store.find("id").isEmpty());
+        Assertions.assertEquals(0, store.getStoredBytes());
+    }
+
+}
@@ -0,0 +1,198 @@
+package com.kapia.jobs;
+
+import com.kapia.exceptionhandling.ResponseExceptionHandler;
+import com.kapia.ocr.OCRPriority;
+import com.kapia.ocr.OCRService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.sourceforge.tess4j.TesseractException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class TestOCRJobWorker {
+
+    private static final String EXPECTED_TEXT = "It was the best of times";
+    private static final String CONSUMER = "worker-1";
+
+    private final AtomicInteger messageIds = new AtomicInteger();
+
+    private MeterRegistry meterRegistry;
+    private RedisJobQueue jobQueue;
+    private OCRService ocrService;
+
+    @BeforeEach
+    public void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        jobQueue = mock(RedisJobQueue.class);
+        ocrService = mock(OCRService.class);
+        when(jobQueue.claim(anyString(), any(), anyString(), anyInt())).thenReturn(new RedisJobQueue.ClaimedJobs("0-0", List.of()));
+        when(jobQueue.startAttempt(any())).thenReturn(1L);
+    }
+
+    private OCRJobWorker createWorker(int concurrency) {
+        return new OCRJobWorker(jobQueue, ocrService, CONSUMER, concurrency, Duration.ofMinutes(5), Duration.ZERO, 3, meterRegistry);
+    }
+
+    private RedisJobQueue.QueuedJob createJob() {
+        int id = messageIds.incrementAndGet();
+        return new RedisJobQueue.QueuedJob(id + "-0", "job-" + id, OCRPriority.PRO, new byte[]{1, 2, 3});
+    }
+
+    private List<RedisJobQueue.QueuedJob> createJobs(int count) {
+        List<RedisJobQueue.QueuedJob> jobs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            jobs.add(createJob());
+        }
+        return jobs;
+    }
+
+    private static void awaitIdle(OCRJobWorker worker) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (worker.getActiveJobs() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(0, worker.getActiveJobs());
+    }
+
+    @Test
+    public void givenQueuedJob_whenPoll_thenStoreResult() throws Exception {
+        RedisJobQueue.QueuedJob job = createJob();
+        when(jobQueue.read(eq(CONSUMER), eq(2), any())).thenReturn(List.of(job));
+        when(ocrService.submitImageBytes(job.image(), OCRPriority.PRO)).thenReturn(CompletableFuture.completedFuture(EXPECTED_TEXT));
+        OCRJobWorker worker = createWorker(2);
+
+        worker.poll();
+        awaitIdle(worker);
+
+        verify(jobQueue).createGroup();
+        verify(jobQueue).complete(job, EXPECTED_TEXT);
+        Assertions.assertEquals(1, meterRegistry.get("ocr.worker.jobs").tag("result", "done").counter().count());
+    }
+
+    @Test
+    public void givenBusyWorker_whenPoll_thenReadOnlyFreeSlots() throws Exception {
+        CompletableFuture<String> release = new CompletableFuture<>();
+        when(jobQueue.read(eq(CONSUMER), anyInt(), any())).thenAnswer(invocation -> createJobs(invocation.getArgument(1)));
+        when(ocrService.submitImageBytes(any(), any())).thenAnswer(invocation -> release.thenApply(text -> text));
+        OCRJobWorker worker = createWorker(2);
+
+        worker.poll();
+        Assertions.assertEquals(2, worker.getActiveJobs());
+        worker.poll();
+
+        verify(jobQueue, times(1)).read(eq(CONSUMER), eq(2), any());
+        verify(jobQueue, times(1)).read(eq(CONSUMER), anyInt(), any());
+
+        release.complete(EXPECTED_TEXT);
+        awaitIdle(worker);
+        worker.poll();
+
+        verify(jobQueue, times(2)).read(eq(CONSUMER), eq(2), any());
+        verify(jobQueue, timeout(5000).times(4)).complete(any(), eq(EXPECTED_TEXT));
+    }
+
+    @Test
+    public void givenUnacknowledgedJob_whenPoll_thenClaimBeforeReading() throws Exception {
+        RedisJobQueue.QueuedJob claimed = createJob();
+        when(jobQueue.claim(eq(CONSUMER), eq(Duration.ofMinutes(5)), eq("0-0"), eq(2))).thenReturn(new RedisJobQueue.ClaimedJobs("0-0", List.of(claimed)));
+        when(jobQueue.read(eq(CONSUMER), anyInt(), any())).thenReturn(List.of());
+        when(ocrService.submitImageBytes(any(), any())).thenReturn(CompletableFuture.completedFuture(EXPECTED_TEXT));
+        OCRJobWorker worker = createWorker(2);
+
+        worker.poll();
+        awaitIdle(worker);
+
+        verify(jobQueue).read(eq(CONSUMER), eq(1), any());
+        verify(jobQueue).complete(claimed, EXPECTED_TEXT);
+        Assertions.assertEquals(1, meterRegistry.get("ocr.worker.claimed").counter().count());
+    }
+
+    @Test
+    public void givenFailingJob_whenPoll_thenStoreError() throws Exception {
+        RedisJobQueue.QueuedJob job = createJob();
+        when(jobQueue.read(eq(CONSUMER), anyInt(), any())).thenReturn(List.of(job));
+        when(ocrService.submitImageBytes(any(), any())).thenReturn(CompletableFuture.failedFuture(new TesseractException("Error processing the image")));
+        OCRJobWorker worker = createWorker(1);
+
+        worker.poll();
+        awaitIdle(worker);
+
+        verify(jobQueue).fail(job, ResponseExceptionHandler.getErrorProcessingImage());
+        verify(jobQueue, never()).complete(any(), any());
+    }
+
+    @Test
+    public void givenRejectedJob_whenPoll_thenLeaveUnacknowledged() throws Exception {
+        RedisJobQueue.QueuedJob job = createJob();
+        when(jobQueue.read(eq(CONSUMER), anyInt(), any())).thenReturn(List.of(job));
+        when(ocrService.submitImageBytes(any(), any())).thenReturn(CompletableFuture.failedFuture(new RejectedExecutionException("OCR job was dropped for a job of a higher priority")));
+        OCRJobWorker worker = createWorker(1);
+
+        worker.poll();
+        awaitIdle(worker);
+
+        verify(jobQueue, never()).complete(any(), any());
+        verify(jobQueue, never()).fail(any(), any());
+        verify(jobQueue, never()).acknowledge(any());
+        verify(jobQueue).defer(job, CONSUMER, Duration.ofMinutes(5));
+        Assertions.assertEquals(1, meterRegistry.get("ocr.worker.jobs").tag("result", "deferred").counter().count());
+    }
+
+    @Test
+    public void givenRejectedSubmission_whenPoll_thenDeferUntilNextClaimPass() throws Exception {
+        RedisJobQueue.QueuedJob job = createJob();
+        when(jobQueue.read(eq(CONSUMER), anyInt(), any())).thenReturn(List.of(job));
+        when(ocrService.submitImageBytes(any(), any())).thenThrow(new RejectedExecutionException("Pixel budget exhausted"));
+        OCRJobWorker worker = new OCRJobWorker(jobQueue, ocrService, CONSUMER, 1, Duration.ofMinutes(5), Duration.ofSeconds(30), 3, meterRegistry);
+
+        worker.poll();
+
+        Assertions.assertEquals(0, worker.getActiveJobs());
+        verify(jobQueue).defer(job, CONSUMER, Duration.ofSeconds(270));
+        verify(jobQueue, never()).acknowledge(any());
+        verify(jobQueue, never()).fail(any(), any());
+    }
+
+    @Test
+    public void givenUnreachableRedis_whenStartAttempt_thenGiveSlotBack() throws Exception {
+        RedisJobQueue.QueuedJob job = createJob();
+        when(jobQueue.read(eq(CONSUMER), anyInt(), any())).thenReturn(List.of(job));
+        when(jobQueue.startAttempt(job)).thenThrow(new RejectedExecutionException("OCR job queue is unavailable"));
+        OCRJobWorker worker = createWorker(1);
+
+        worker.poll();
+
+        Assertions.assertEquals(0, worker.getActiveJobs());
+        verifyNoInteractions(ocrService);
+    }
+
+    @Test
+    public void givenExhaustedOrExpiredJob_whenPoll_thenSkipRecognition() throws Exception {
+        RedisJobQueue.QueuedJob exhausted = createJob();
+        RedisJobQueue.QueuedJob expired = createJob();
+        when(jobQueue.read(eq(CONSUMER), anyInt(), any())).thenReturn(List.of(exhausted, expired));
+        when(jobQueue.startAttempt(exhausted)).thenReturn(4L);
+        when(jobQueue.startAttempt(expired)).thenReturn(0L);
+        OCRJobWorker worker = createWorker(2);
+
+        worker.poll();
+        awaitIdle(worker);
+
+        verify(jobQueue).fail(exhausted, "OCR job failed after 3 attempts");
+        verify(jobQueue).acknowledge(expired);
+        verifyNoInteractions(ocrService);
+    }
+
+}
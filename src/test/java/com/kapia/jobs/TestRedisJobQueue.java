@@ -0,0 +1,125 @@
+package com.kapia.jobs;
+
+import com.kapia.ocr.OCRPriority;
+import com.redis.testcontainers.RedisContainer;
+import io.lettuce.core.RedisClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+@Testcontainers(disabledWithoutDocker = true)
+public class TestRedisJobQueue {
+
+    private static final String TEXT = "It was the best of times";
+    private static final byte[] IMAGE = {1, 2, 3};
+
+    @Container
+    private static final RedisContainer REDIS_CONTAINER = new RedisContainer(DockerImageName.parse("redis:latest")).withExposedPorts(6379);
+
+    private RedisClient redisClient;
+    private RedisJobQueue jobQueue;
+
+    @BeforeEach
+    public void init() {
+        redisClient = RedisClient.create(REDIS_CONTAINER.getRedisURI());
+        redisClient.connect().sync().flushall();
+        jobQueue = new RedisJobQueue(redisClient, Duration.ofMinutes(10), 2, new SimpleMeterRegistry());
+        jobQueue.createGroup();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jobQueue.close();
+        redisClient.shutdown();
+    }
+
+    @Test
+    public void givenSubmittedJob_whenReadAndComplete_thenStoreResultAndRemoveEntry() {
+        OCRJob job = jobQueue.submit(IMAGE, OCRPriority.PRO);
+
+        Assertions.assertEquals(OCRJobStatus.PENDING, jobQueue.find(job.id()).orElseThrow().status());
+
+        List<RedisJobQueue.QueuedJob> jobs = jobQueue.read("worker-1", 10, Duration.ofMillis(100));
+        Assertions.assertEquals(1, jobs.size());
+        Assertions.assertEquals(job.id(), jobs.get(0).jobId());
+        Assertions.assertEquals(OCRPriority.PRO, jobs.get(0).priority());
+        Assertions.assertArrayEquals(IMAGE, jobs.get(0).image());
+        Assertions.assertEquals(1, jobQueue.startAttempt(jobs.get(0)));
+
+        jobQueue.complete(jobs.get(0), TEXT);
+
+        OCRJob completed = jobQueue.find(job.id()).orElseThrow();
+        Assertions.assertEquals(OCRJobStatus.DONE, completed.status());
+        Assertions.assertEquals(TEXT, completed.text());
+        Assertions.assertNotNull(completed.completedAt());
+        Assertions.assertEquals(0, redisClient.connect().sync().xlen(RedisJobQueue.STREAM));
+    }
+
+    @Test
+    public void givenJobReadByAnotherWorker_whenRead_thenDeliverOnlyOnce() {
+        jobQueue.submit(IMAGE, OCRPriority.FREE);
+
+        Assertions.assertEquals(1, jobQueue.read("worker-1", 10, Duration.ofMillis(100)).size());
+        Assertions.assertTrue(jobQueue.read("worker-2", 10, Duration.ofMillis(100)).isEmpty());
+    }
+
+    @Test
+    public void givenUnacknowledgedJob_whenClaimAfterIdleTime_thenRedeliverToOtherWorker() throws InterruptedException {
+        OCRJob job = jobQueue.submit(IMAGE, OCRPriority.FREE);
+        RedisJobQueue.QueuedJob delivered = jobQueue.read("worker-1", 10, Duration.ofMillis(100)).get(0);
+        jobQueue.startAttempt(delivered);
+
+        Assertions.assertTrue(jobQueue.claim("worker-2", Duration.ofMinutes(1), "0-0", 10).jobs().isEmpty());
+        Thread.sleep(200);
+        RedisJobQueue.ClaimedJobs claimed = jobQueue.claim("worker-2", Duration.ofMillis(100), "0-0", 10);
+
+        Assertions.assertEquals(1, claimed.jobs().size());
+        Assertions.assertEquals(job.id(), claimed.jobs().get(0).jobId());
+        Assertions.assertEquals("0-0", claimed.cursor());
+        Assertions.assertEquals(2, jobQueue.startAttempt(claimed.jobs().get(0)));
+
+        jobQueue.fail(claimed.jobs().get(0), "Error processing the image");
+        Assertions.assertEquals(OCRJobStatus.FAILED, jobQueue.find(job.id()).orElseThrow().status());
+        Assertions.assertTrue(jobQueue.claim("worker-3", Duration.ZERO, "0-0", 10).jobs().isEmpty());
+    }
+
+    @Test
+    public void givenDeferredJob_whenClaim_thenRedeliverSoonerWithoutCountingAttempt() {
+        OCRJob job = jobQueue.submit(IMAGE, OCRPriority.FREE);
+        RedisJobQueue.QueuedJob delivered = jobQueue.read("worker-1", 10, Duration.ofMillis(100)).get(0);
+        Assertions.assertEquals(1, jobQueue.startAttempt(delivered));
+
+        jobQueue.defer(delivered, "worker-1", Duration.ofMinutes(4));
+        RedisJobQueue.ClaimedJobs claimed = jobQueue.claim("worker-2", Duration.ofMinutes(3), "0-0", 10);
+
+        Assertions.assertEquals(1, claimed.jobs().size());
+        Assertions.assertEquals(job.id(), claimed.jobs().get(0).jobId());
+        Assertions.assertEquals(1, jobQueue.startAttempt(claimed.jobs().get(0)));
+    }
+
+    @Test
+    public void givenFullQueue_whenSubmit_thenThrowRejectedExecutionException() {
+        jobQueue.submit(IMAGE, OCRPriority.FREE);
+        jobQueue.submit(IMAGE, OCRPriority.FREE);
+
+        Assertions.assertThrows(RejectedExecutionException.class, () -> jobQueue.submit(IMAGE, OCRPriority.FREE));
+        Assertions.assertEquals(2, redisClient.connect().sync().xlen(RedisJobQueue.STREAM));
+        Assertions.assertEquals(2, redisClient.connect().sync().keys("ocr:job:*").size());
+    }
+
+    @Test
+    public void givenUnknownOrExpiredJob_whenFindOrStartAttempt_thenReturnNothing() {
+        Assertions.assertTrue(jobQueue.find("unknown").isEmpty());
+        Assertions.assertEquals(0, jobQueue.startAttempt(new RedisJobQueue.QueuedJob("1-0", "unknown", OCRPriority.FREE, IMAGE)));
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.kapia.ocr;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.time.Duration;
+
+public class TestDeadlinePolicy {
+
+    private DeadlinePolicy deadlinePolicy;
+
+    @BeforeEach
+    public void init() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("pricing.plans.free.deadline.in.seconds", "10")
+                .withProperty("pricing.plans.pro.deadline.in.seconds", "60");
+        deadlinePolicy = new DeadlinePolicy(environment, Duration.ofSeconds(30));
+    }
+
+    @Test
+    public void givenVerifiedPlan_whenResolveTimeout_thenReturnDeadlineOfPlan() {
+        MockHttpServletRequest freeRequest = new MockHttpServletRequest();
+        freeRequest.addHeader("x-api-key", "PRunverified");
+        MockHttpServletRequest proRequest = new MockHttpServletRequest();
+        proRequest.setAttribute(OCRPriority.REQUEST_ATTRIBUTE, OCRPriority.PRO);
+
+        Assertions.assertEquals(Duration.ofSeconds(10), deadlinePolicy.resolveTimeout(freeRequest));
+        Assertions.assertEquals(Duration.ofSeconds(30), deadlinePolicy.resolveTimeout(proRequest));
+    }
+
+    @Test
+    public void givenDeadlineHeader_whenResolveTimeout_thenReturnRequestedDeadlineUpToMaximum() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(DeadlinePolicy.DEADLINE_HEADER, "1500");
+        MockHttpServletRequest longRequest = new MockHttpServletRequest();
+        longRequest.addHeader(DeadlinePolicy.DEADLINE_HEADER, "600000");
+
+        Assertions.assertEquals(Duration.ofMillis(1500), deadlinePolicy.resolveTimeout(request));
+        Assertions.assertEquals(Duration.ofSeconds(30), deadlinePolicy.resolveTimeout(longRequest));
+    }
+
+    @Test
+    public void givenInvalidDeadlineHeader_whenResolveTimeout_thenThrowInvalidDeadlineException() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(DeadlinePolicy.DEADLINE_HEADER, "soon");
+        MockHttpServletRequest negativeRequest = new MockHttpServletRequest();
+        negativeRequest.addHeader(DeadlinePolicy.DEADLINE_HEADER, "-1");
+
+        Assertions.assertThrows(InvalidDeadlineException.class, () -> deadlinePolicy.resolveTimeout(request));
+        Assertions.assertThrows(InvalidDeadlineException.class, () -> deadlinePolicy.resolveTimeout(negativeRequest));
+    }
+
+    @Test
+    public void givenExpiredDeadline_whenRecognitionMonitorCalled_thenCancel() {
+        RecognitionMonitor running = new RecognitionMonitor(Deadline.after(Duration.ofMinutes(1)));
+        RecognitionMonitor expired = new RecognitionMonitor(Deadline.after(Duration.ZERO));
+
+        Assertions.assertFalse(running.cancel.invoke(null, 10));
+        Assertions.assertFalse(running.isCancelled());
+        Assertions.assertTrue(expired.cancel.invoke(null, 10));
+        Assertions.assertTrue(expired.isCancelled());
+        Assertions.assertFalse(Deadline.NONE.isExpired());
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.kapia.ocr;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+
+public class TestDirectImageBuffer {
+
+    private DirectImageBuffer imageBuffer;
+
+    @BeforeEach
+    public void init() {
+        imageBuffer = new DirectImageBuffer();
+    }
+
+    @Test
+    public void givenGrayImage_whenWrite_thenWriteOneBytePerPixel() {
+
+        BufferedImage image = new BufferedImage(3, 2, BufferedImage.TYPE_BYTE_GRAY);
+        image.getRaster().setSample(1, 0, 0, 100);
+        image.getRaster().setSample(2, 1, 0, 200);
+
+        int bitsPerPixel = imageBuffer.write(image);
+        ByteBuffer buffer = imageBuffer.getBuffer();
+
+        Assertions.assertEquals(8, bitsPerPixel);
+        Assertions.assertTrue(buffer.isDirect());
+        Assertions.assertEquals(6, buffer.remaining());
+        Assertions.assertEquals(100, buffer.get(1) & 0xff);
+        Assertions.assertEquals(200, buffer.get(5) & 0xff);
+
+    }
+
+    @Test
+    public void givenBgrImage_whenWrite_thenWriteRgbBytes() {
+
+        BufferedImage image = new BufferedImage(2, 1, BufferedImage.TYPE_3BYTE_BGR);
+        image.setRGB(0, 0, 0x102030);
+        image.setRGB(1, 0, 0x405060);
+
+        int bitsPerPixel = imageBuffer.write(image);
+        ByteBuffer buffer = imageBuffer.getBuffer();
+
+        Assertions.assertEquals(24, bitsPerPixel);
+        Assertions.assertEquals(6, buffer.remaining());
+        Assertions.assertArrayEquals(new byte[]{0x10, 0x20, 0x30, 0x40, 0x50, 0x60}, toArray(buffer));
+
+    }
+
+    @Test
+    public void givenPackedRgbImage_whenWrite_thenWriteRgbBytes() {
+
+        BufferedImage image = new BufferedImage(1, 2, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, 0x0a0b0c);
+        image.setRGB(0, 1, 0x0d0e0f);
+
+        int bitsPerPixel = imageBuffer.write(image);
+
+        Assertions.assertEquals(24, bitsPerPixel);
+        Assertions.assertArrayEquals(new byte[]{0x0a, 0x0b, 0x0c, 0x0d, 0x0e, 0x0f}, toArray(imageBuffer.getBuffer()));
+
+    }
+
+    @Test
+    public void givenSmallerImage_whenWrite_thenReuseBuffer() {
+
+        imageBuffer.write(new BufferedImage(10, 10, BufferedImage.TYPE_BYTE_GRAY));
+        ByteBuffer first = imageBuffer.getBuffer();
+        imageBuffer.write(new BufferedImage(5, 5, BufferedImage.TYPE_BYTE_GRAY));
+
+        Assertions.assertSame(first, imageBuffer.getBuffer());
+        Assertions.assertEquals(25, imageBuffer.getBuffer().remaining());
+
+    }
+
+    @Test
+    public void givenUnsupportedLayout_whenWrite_thenReturnUnsupported() {
+
+        BufferedImage binary = new BufferedImage(4, 4, BufferedImage.TYPE_BYTE_BINARY);
+
+        Assertions.assertEquals(DirectImageBuffer.UNSUPPORTED, imageBuffer.write(binary));
+
+    }
+
+    @Test
+    public void givenGraySubimage_whenWrite_thenWriteOnlyItsPixels() {
+
+        BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                image.getRaster().setSample(x, y, 0, y * 4 + x);
+            }
+        }
+
+        int bitsPerPixel = imageBuffer.write(image.getSubimage(1, 2, 2, 2));
+
+        Assertions.assertEquals(8, bitsPerPixel);
+        Assertions.assertArrayEquals(new byte[]{9, 10, 13, 14}, toArray(imageBuffer.getBuffer()));
+
+    }
+
+    @Test
+    public void givenRgbSubimages_whenWrite_thenWriteOnlyTheirPixels() {
+
+        BufferedImage bgr = new BufferedImage(3, 3, BufferedImage.TYPE_3BYTE_BGR);
+        BufferedImage packed = new BufferedImage(3, 3, BufferedImage.TYPE_INT_RGB);
+        for (BufferedImage image : new BufferedImage[]{bgr, packed}) {
+            image.setRGB(1, 1, 0x010203);
+            image.setRGB(2, 1, 0x040506);
+            image.setRGB(1, 2, 0x070809);
+            image.setRGB(2, 2, 0x0a0b0c);
+        }
+        byte[] expected = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12};
+
+        Assertions.assertEquals(24, imageBuffer.write(bgr.getSubimage(1, 1, 2, 2)));
+        Assertions.assertArrayEquals(expected, toArray(imageBuffer.getBuffer()));
+        Assertions.assertEquals(24, imageBuffer.write(packed.getSubimage(1, 1, 2, 2)));
+        Assertions.assertArrayEquals(expected, toArray(imageBuffer.getBuffer()));
+
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+}
@@ -0,0 +1,249 @@
+package com.kapia.ocr;
+
+import com.kapia.exceptionhandling.ResponseExceptionHandler;
+import com.kapia.imaging.PixelBudget;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.sourceforge.tess4j.TesseractException;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class TestDocumentService {
+
+    private static final int WINDOW = 2;
+
+    private OCRService ocrService;
+    private PixelBudget pixelBudget;
+    private DocumentService documentService;
+
+    @BeforeEach
+    public void init() {
+        ocrService = mock(OCRService.class);
+        pixelBudget = new PixelBudget(100_000_000, Duration.ofSeconds(10), new SimpleMeterRegistry());
+        documentService = new DocumentService(ocrService, new OCRExecutor(4, 10, new SimpleMeterRegistry()), pixelBudget, 5, WINDOW, 72);
+    }
+
+    @Test
+    public void givenTiff_whenProcessPages_thenReturnResultsInPageOrder() throws Exception {
+
+        MockMultipartFile document = new MockMultipartFile("document", "document.tiff", "image/tiff", createTiff(4));
+        AtomicInteger calls = new AtomicInteger();
+        when(ocrService.processPage(any(), any())).thenAnswer(invocation -> "page " + calls.incrementAndGet());
+
+        List<DocumentPageResult> results = processDocument(document);
+
+        Assertions.assertEquals(4, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            Assertions.assertEquals(i + 1, results.get(i).page());
+            Assertions.assertNotNull(results.get(i).text());
+        }
+        verify(ocrService, times(4)).processPage(any(), any());
+
+    }
+
+    @Test
+    public void givenPdf_whenProcessPages_thenRenderEveryPage() throws Exception {
+
+        MockMultipartFile document = new MockMultipartFile("document", "document.pdf", "application/pdf", createPdf(3));
+        when(ocrService.processPage(any(), any())).thenReturn("text");
+
+        List<DocumentPageResult> results = processDocument(document);
+
+        Assertions.assertEquals(3, results.size());
+        Assertions.assertEquals(DocumentPageResult.success(3, "text"), results.get(2));
+
+    }
+
+    @Test
+    public void givenSlowRecognition_whenProcessPages_thenRecognizeAtMostWindowPagesAtOnce() throws Exception {
+
+        MockMultipartFile document = new MockMultipartFile("document", "document.tiff", "image/tiff", createTiff(5));
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(ocrService.processPage(any(), any())).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(50);
+            running.decrementAndGet();
+            return "text";
+        });
+
+        processDocument(document);
+
+        Assertions.assertTrue(maxRunning.get() <= WINDOW);
+
+    }
+
+    @Test
+    public void givenFailingPage_whenProcessPages_thenReportErrorForThatPage() throws Exception {
+
+        MockMultipartFile document = new MockMultipartFile("document", "document.tiff", "image/tiff", createTiff(2));
+        documentService = new DocumentService(ocrService, new OCRExecutor(1, 10, new SimpleMeterRegistry()), pixelBudget, 5, 1, 72);
+        when(ocrService.processPage(any(), any()))
+                .thenReturn("text")
+                .thenThrow(new TesseractException("Error processing the image"));
+
+        List<DocumentPageResult> results = processDocument(document);
+
+        Assertions.assertEquals(DocumentPageResult.success(1, "text"), results.get(0));
+        Assertions.assertEquals(DocumentPageResult.failure(2, ResponseExceptionHandler.getErrorProcessingImage()), results.get(1));
+
+    }
+
+    @Test
+    public void givenPages_whenProcessPages_thenHoldPixelBudgetUntilRecognized() throws Exception {
+
+        MockMultipartFile document = new MockMultipartFile("document", "document.tiff", "image/tiff", createTiff(3));
+        List<Double> utilization = new ArrayList<>();
+        when(ocrService.processPage(any(), any())).thenAnswer(invocation -> {
+            synchronized (utilization) {
+                utilization.add(pixelBudget.getUtilization());
+            }
+            return "text";
+        });
+
+        processDocument(document);
+
+        Assertions.assertEquals(3, utilization.size());
+        Assertions.assertTrue(utilization.stream().allMatch(share -> share > 0));
+        Assertions.assertEquals(0, pixelBudget.getUtilization());
+
+    }
+
+    @Test
+    public void givenExhaustedPixelBudget_whenProcessPages_thenReportPageAsFailed() throws Exception {
+
+        MockMultipartFile document = new MockMultipartFile("document", "document.tiff", "image/tiff", createTiff(1));
+        PixelBudget exhaustedBudget = new PixelBudget(1000, Duration.ofMillis(10), new SimpleMeterRegistry());
+        documentService = new DocumentService(ocrService, new OCRExecutor(1, 10, new SimpleMeterRegistry()), exhaustedBudget, 5, 1, 72);
+
+        try (PixelBudget.Permit permit = exhaustedBudget.acquire(1000)) {
+            List<DocumentPageResult> results = processDocument(document);
+
+            Assertions.assertEquals(DocumentPageResult.failure(1, ResponseExceptionHandler.getOcrQueueFull()), results.get(0));
+        }
+        verify(ocrService, never()).processPage(any(), any());
+
+    }
+
+    @Test
+    public void givenDeadline_whenProcessPages_thenPassItToEveryPage() throws Exception {
+
+        MockMultipartFile document = new MockMultipartFile("document", "document.tiff", "image/tiff", createTiff(2));
+        Deadline deadline = Deadline.after(Duration.ofMinutes(1));
+        when(ocrService.processPage(any(), any())).thenReturn("text");
+
+        processDocument(document, deadline, false);
+
+        verify(ocrService, times(2)).processPage(any(), eq(deadline));
+
+    }
+
+    @Test
+    public void givenTimedOutPage_whenProcessPagesWithPartialResults_thenReturnPartialText() throws Exception {
+
+        MockMultipartFile document = new MockMultipartFile("document", "document.tiff", "image/tiff", createTiff(1));
+        when(ocrService.processPage(any(), any())).thenThrow(new OCRTimeoutException("partial text"));
+
+        List<DocumentPageResult> results = processDocument(document, Deadline.after(Duration.ofMinutes(1)), true);
+
+        Assertions.assertEquals(DocumentPageResult.partial(1, "partial text"), results.get(0));
+
+    }
+
+    @Test
+    public void givenExpiredDeadline_whenProcessPages_thenTimeOutEveryPageWithoutDecoding() throws Exception {
+
+        MockMultipartFile document = new MockMultipartFile("document", "document.tiff", "image/tiff", createTiff(3));
+        Deadline deadline = Deadline.after(Duration.ofMillis(1));
+        Thread.sleep(5);
+
+        List<DocumentPageResult> results = processDocument(document, deadline, false);
+
+        Assertions.assertEquals(3, results.size());
+        Assertions.assertTrue(results.stream().allMatch(result -> new OCRTimeoutException("").getMessage().equals(result.error())));
+        Assertions.assertEquals(0, pixelBudget.getUtilization());
+        verify(ocrService, never()).processPage(any(), any());
+
+    }
+
+    @Test
+    public void givenTooManyPages_whenOpen_thenThrowDocumentTooLargeException() throws IOException {
+
+        MockMultipartFile document = new MockMultipartFile("document", "document.tiff", "image/tiff", createTiff(6));
+
+        Assertions.assertThrows(DocumentTooLargeException.class, () -> documentService.open(document));
+
+    }
+
+    @Test
+    public void givenInvalidDocument_whenOpen_thenThrowIOException() {
+
+        MockMultipartFile document = new MockMultipartFile("document", "document.pdf", "application/pdf", new byte[]{1, 2, 3});
+
+        Assertions.assertThrows(IOException.class, () -> documentService.open(document));
+
+    }
+
+    private List<DocumentPageResult> processDocument(MockMultipartFile document) throws IOException {
+        List<DocumentPageResult> results = new ArrayList<>();
+        try (DocumentPages pages = documentService.open(document)) {
+            documentService.processPages(pages, results::add);
+        }
+        return results;
+    }
+
+    private List<DocumentPageResult> processDocument(MockMultipartFile document, Deadline deadline, boolean partialResults) throws IOException {
+        List<DocumentPageResult> results = new ArrayList<>();
+        try (DocumentPages pages = documentService.open(document)) {
+            documentService.processPages(pages, OCRPriority.FREE, deadline, partialResults, results::add);
+        }
+        return results;
+    }
+
+    static byte[] createTiff(int pageCount) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("tiff").next();
+        try (ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(outputStream)) {
+            writer.setOutput(imageOutputStream);
+            writer.prepareWriteSequence(null);
+            for (int i = 0; i < pageCount; i++) {
+                writer.writeToSequence(new IIOImage(new BufferedImage(20, 20, BufferedImage.TYPE_BYTE_GRAY), null, null), null);
+            }
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] createPdf(int pageCount) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 0; i < pageCount; i++) {
+                document.addPage(new PDPage());
+            }
+            document.save(outputStream);
+        }
+        return outputStream.toByteArray();
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.kapia.ocr;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestFairWorkQueue {
+
+    private static final int[] WEIGHTS = {8, 4, 2, 1};
+
+    private static FairWorkQueue.PrioritizedTask task(OCRPriority priority) {
+        return new FairWorkQueue.PrioritizedTask(priority, () -> {
+        }, () -> {
+        });
+    }
+
+    private static List<OCRPriority> drain(FairWorkQueue queue, int count) {
+        List<OCRPriority> order = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            order.add(((FairWorkQueue.PrioritizedTask) queue.poll()).priority());
+        }
+        return order;
+    }
+
+    @Test
+    public void givenQueuedPriorities_whenPoll_thenShareWorkersByWeight() {
+        FairWorkQueue queue = new FairWorkQueue(100, WEIGHTS);
+        for (int i = 0; i < 20; i++) {
+            queue.offer(task(OCRPriority.FREE));
+            queue.offer(task(OCRPriority.PRO));
+        }
+
+        List<OCRPriority> order = drain(queue, 10);
+
+        Assertions.assertEquals(8, order.stream().filter(OCRPriority.PRO::equals).count());
+        Assertions.assertEquals(2, order.stream().filter(OCRPriority.FREE::equals).count());
+        Assertions.assertEquals(OCRPriority.PRO, order.get(0));
+    }
+
+    @Test
+    public void givenIdlePriority_whenItResumes_thenDoNotCatchUpOnMissedTurns() {
+        FairWorkQueue queue = new FairWorkQueue(100, WEIGHTS);
+        for (int i = 0; i < 10; i++) {
+            queue.offer(task(OCRPriority.FREE));
+        }
+        drain(queue, 8);
+        for (int i = 0; i < 10; i++) {
+            queue.offer(task(OCRPriority.BASIC));
+        }
+
+        List<OCRPriority> order = drain(queue, 4);
+
+        Assertions.assertTrue(order.contains(OCRPriority.FREE));
+    }
+
+    @Test
+    public void givenFullQueue_whenOfferHigherPriority_thenShedNewestLowerPriorityJob() {
+        FairWorkQueue queue = new FairWorkQueue(2, WEIGHTS);
+        AtomicInteger shed = new AtomicInteger();
+        FairWorkQueue.PrioritizedTask oldest = new FairWorkQueue.PrioritizedTask(OCRPriority.FREE, () -> {
+        }, () -> shed.addAndGet(1));
+        FairWorkQueue.PrioritizedTask newest = new FairWorkQueue.PrioritizedTask(OCRPriority.FREE, () -> {
+        }, () -> shed.addAndGet(10));
+        queue.offer(oldest);
+        queue.offer(newest);
+
+        Assertions.assertTrue(queue.offer(task(OCRPriority.PRO)));
+        Assertions.assertEquals(10, shed.get());
+        Assertions.assertFalse(queue.offer(task(OCRPriority.FREE)));
+        Assertions.assertEquals(1, queue.size(OCRPriority.FREE));
+        Assertions.assertEquals(1, queue.size(OCRPriority.PRO));
+        Assertions.assertSame(queue.peek(), queue.poll());
+    }
+
+    @Test
+    public void givenFullQueue_whenOfferHelper_thenKeepEveryQueuedJob() {
+        FairWorkQueue queue = new FairWorkQueue(2, WEIGHTS);
+        AtomicInteger shed = new AtomicInteger();
+        queue.offer(new FairWorkQueue.PrioritizedTask(OCRPriority.FREE, () -> {
+        }, shed::incrementAndGet));
+        queue.offer(new FairWorkQueue.PrioritizedTask(OCRPriority.PRO, () -> {
+        }, shed::incrementAndGet));
+
+        Assertions.assertFalse(queue.offer(() -> {
+        }));
+        Assertions.assertEquals(0, shed.get());
+        Assertions.assertEquals(1, queue.size(OCRPriority.FREE));
+        Assertions.assertEquals(1, queue.size(OCRPriority.PRO));
+        Assertions.assertEquals(0, queue.size(OCRPriority.ADMIN));
+    }
+
+}
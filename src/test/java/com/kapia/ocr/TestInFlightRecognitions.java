@@ -0,0 +1,135 @@
+package com.kapia.ocr;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.sourceforge.tess4j.TesseractException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestInFlightRecognitions {
+
+    private static final String KEY = "digest:configuration";
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void init() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private double coalesced() {
+        return meterRegistry.get("ocr.coalesced").counter().count();
+    }
+
+    @Test
+    public void givenConcurrentIdenticalRequests_whenSubmit_thenRecognizeOnceWithoutBlocking() throws Exception {
+        InFlightRecognitions inFlightRecognitions = new InFlightRecognitions(true, meterRegistry);
+        CompletableFuture<String> recognition = new CompletableFuture<>();
+        AtomicInteger recognitions = new AtomicInteger();
+        InFlightRecognitions.Recognition start = () -> {
+            recognitions.incrementAndGet();
+            return recognition;
+        };
+
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(inFlightRecognitions.submit(KEY, start));
+        }
+        Assertions.assertTrue(results.stream().noneMatch(CompletableFuture::isDone));
+        recognition.complete("text");
+
+        for (CompletableFuture<String> result : results) {
+            Assertions.assertEquals("text", result.get(5, TimeUnit.SECONDS));
+        }
+        Assertions.assertEquals(1, recognitions.get());
+        Assertions.assertEquals(3.0, coalesced());
+        Assertions.assertEquals("again", inFlightRecognitions.submit(KEY, () -> CompletableFuture.completedFuture("again")).get());
+    }
+
+    @Test
+    public void givenFailingRecognition_whenSubmit_thenFailEveryWaitingRequest() throws Exception {
+        InFlightRecognitions inFlightRecognitions = new InFlightRecognitions(true, meterRegistry);
+        CompletableFuture<String> recognition = new CompletableFuture<>();
+
+        CompletableFuture<String> first = inFlightRecognitions.submit(KEY, () -> recognition);
+        CompletableFuture<String> second = inFlightRecognitions.submit(KEY, () -> recognition);
+        recognition.completeExceptionally(new TesseractException("Error processing the image"));
+
+        ExecutionException firstException = Assertions.assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        ExecutionException secondException = Assertions.assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+        Assertions.assertInstanceOf(TesseractException.class, firstException.getCause());
+        Assertions.assertInstanceOf(TesseractException.class, secondException.getCause());
+    }
+
+    @Test
+    public void givenRejectedRecognition_whenSubmit_thenForgetIt() throws Exception {
+        InFlightRecognitions inFlightRecognitions = new InFlightRecognitions(true, meterRegistry);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> inFlightRecognitions.submit(KEY, () -> {
+            throw new IllegalStateException("OCR queue is full");
+        }));
+
+        Assertions.assertEquals("text", inFlightRecognitions.submit(KEY, () -> CompletableFuture.completedFuture("text")).get());
+        Assertions.assertEquals(0.0, coalesced());
+    }
+
+    @Test
+    public void givenRequestsWithDifferentDeadlines_whenSubmit_thenKeepDeadlinePerRequest() throws Exception {
+        InFlightRecognitions inFlightRecognitions = new InFlightRecognitions(true, meterRegistry);
+        CompletableFuture<String> timingOut = new CompletableFuture<>();
+        AtomicInteger recognitions = new AtomicInteger();
+
+        CompletableFuture<String> first = inFlightRecognitions.submit(KEY, Deadline.after(Duration.ofMinutes(1)), () -> {
+            recognitions.incrementAndGet();
+            return timingOut;
+        });
+        CompletableFuture<String> impatient = inFlightRecognitions.submit(KEY, Deadline.after(Duration.ofMillis(50)), () -> {
+            recognitions.incrementAndGet();
+            return CompletableFuture.completedFuture("text");
+        });
+        CompletableFuture<String> patient = inFlightRecognitions.submit(KEY, Deadline.after(Duration.ofMinutes(1)), () -> {
+            recognitions.incrementAndGet();
+            return CompletableFuture.completedFuture("text");
+        });
+
+        ExecutionException impatientException = Assertions.assertThrows(ExecutionException.class, () -> impatient.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals("", ((OCRTimeoutException) impatientException.getCause()).getPartialText());
+        Assertions.assertFalse(first.isDone());
+        timingOut.completeExceptionally(new OCRTimeoutException("partial text of the first request"));
+
+        ExecutionException firstException = Assertions.assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals("partial text of the first request", ((OCRTimeoutException) firstException.getCause()).getPartialText());
+        Assertions.assertEquals("text", patient.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(2, recognitions.get());
+        Assertions.assertEquals(2.0, coalesced());
+    }
+
+    @Test
+    public void givenDisabledCoalescing_whenSubmit_thenRecognizeEveryRequest() throws Exception {
+        InFlightRecognitions inFlightRecognitions = new InFlightRecognitions(false, meterRegistry);
+        AtomicInteger recognitions = new AtomicInteger();
+        CompletableFuture<String> recognition = new CompletableFuture<>();
+
+        inFlightRecognitions.submit(KEY, () -> {
+            recognitions.incrementAndGet();
+            return recognition;
+        });
+        inFlightRecognitions.submit(KEY, () -> {
+            recognitions.incrementAndGet();
+            return recognition;
+        });
+
+        Assertions.assertEquals(2, recognitions.get());
+        Assertions.assertEquals(0.0, coalesced());
+    }
+
+}
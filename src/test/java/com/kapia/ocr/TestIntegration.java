@@ -26,7 +26,9 @@ import org.testcontainers.utility.DockerImageName;
 import java.io.File;
 import java.nio.file.Files;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -106,6 +108,9 @@ public class TestIntegration {
         part.getHeaders().setContentType(MediaType.IMAGE_PNG);
 
         MvcResult mvcResult = mockMvc.perform(multipart(OCR_ENDPOINT).file(multipartFile).part(part).contentType(MediaType.MULTIPART_FORM_DATA))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvcResult = mockMvc.perform(asyncDispatch(mvcResult))
                 .andExpect(status().isOk())
                 .andReturn();
 
@@ -121,6 +126,9 @@ public class TestIntegration {
         part.getHeaders().setContentType(MediaType.IMAGE_JPEG);
 
         MvcResult mvcResult = mockMvc.perform(multipart(OCR_ENDPOINT).file(multipartFile).part(part).contentType(MediaType.MULTIPART_FORM_DATA))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvcResult = mockMvc.perform(asyncDispatch(mvcResult))
                 .andExpect(status().isOk())
                 .andReturn();
 
@@ -136,6 +144,9 @@ public class TestIntegration {
         part.getHeaders().setContentType(MediaType.IMAGE_JPEG);
 
         MvcResult mvcResult = mockMvc.perform(multipart(OCR_ENDPOINT).file(multipartFile).part(part).contentType(MediaType.MULTIPART_FORM_DATA))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvcResult = mockMvc.perform(asyncDispatch(mvcResult))
                 .andExpect(status().isOk())
                 .andReturn();
 
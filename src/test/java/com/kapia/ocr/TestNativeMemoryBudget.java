@@ -0,0 +1,117 @@
+package com.kapia.ocr;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class TestNativeMemoryBudget {
+
+    private static NativeMemoryBudget createBudget(long budgetInBytes, long modelMemory, Duration waitTimeout) {
+        return new NativeMemoryBudget(budgetInBytes, 8, waitTimeout, () -> modelMemory, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void givenImage_whenEstimate_thenCountPixelsOfEveryEngine() {
+        NativeMemoryBudget budget = createBudget(0, 0, Duration.ZERO);
+        BufferedImage image = new BufferedImage(100, 50, BufferedImage.TYPE_BYTE_GRAY);
+
+        Assertions.assertEquals(40_000, budget.estimate(image, 1));
+        Assertions.assertEquals(120_000, budget.estimate(image, 3));
+    }
+
+    @Test
+    public void givenReservation_whenClosed_thenReleaseMemory() {
+        NativeMemoryBudget budget = createBudget(1000, 0, Duration.ZERO);
+
+        try (NativeMemoryBudget.Reservation reservation = budget.reserve(600)) {
+            Assertions.assertEquals(600, budget.getReserved());
+            reservation.close();
+            Assertions.assertEquals(0, budget.getReserved());
+        }
+        Assertions.assertEquals(0, budget.getReserved());
+    }
+
+    @Test
+    public void givenExhaustedBudget_whenReserve_thenRejectAfterTimeout() {
+        NativeMemoryBudget budget = createBudget(1000, 300, Duration.ofMillis(50));
+
+        try (NativeMemoryBudget.Reservation reservation = budget.reserve(500)) {
+            Assertions.assertThrows(RejectedExecutionException.class, () -> budget.reserve(300));
+        }
+        Assertions.assertEquals(0, budget.getReserved());
+    }
+
+    @Test
+    public void givenExhaustedBudget_whenDeadlinePasses_thenTimeOutBeforeWaitTimeout() {
+        NativeMemoryBudget budget = createBudget(1000, 0, Duration.ofSeconds(10));
+
+        try (NativeMemoryBudget.Reservation reservation = budget.reserve(800)) {
+            long start = System.nanoTime();
+            Assertions.assertThrows(OCRTimeoutException.class, () -> budget.reserve(500, Deadline.after(Duration.ofMillis(100))));
+            Assertions.assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos());
+        }
+        Assertions.assertEquals(0, budget.getReserved());
+    }
+
+    @Test
+    public void givenExpiredDeadline_whenMemoryIsFree_thenReserveWithoutWaiting() {
+        NativeMemoryBudget budget = createBudget(1000, 0, Duration.ofSeconds(10));
+
+        try (NativeMemoryBudget.Reservation first = budget.reserve(500);
+             NativeMemoryBudget.Reservation second = budget.reserve(300, Deadline.after(Duration.ZERO))) {
+            Assertions.assertEquals(800, budget.getReserved());
+        }
+    }
+
+    @Test
+    public void givenExhaustedBudget_whenMemoryReleased_thenAdmitWaitingReservation() throws Exception {
+        NativeMemoryBudget budget = createBudget(1000, 0, Duration.ofSeconds(10));
+        NativeMemoryBudget.Reservation first = budget.reserve(800);
+
+        CompletableFuture<NativeMemoryBudget.Reservation> second = CompletableFuture.supplyAsync(() -> budget.reserve(500));
+        Thread.sleep(100);
+        Assertions.assertFalse(second.isDone());
+
+        first.close();
+        second.get(5, TimeUnit.SECONDS).close();
+        Assertions.assertEquals(0, budget.getReserved());
+    }
+
+    @Test
+    public void givenReservationLargerThanBudget_whenNothingReserved_thenAdmit() {
+        NativeMemoryBudget budget = createBudget(1000, 0, Duration.ZERO);
+
+        try (NativeMemoryBudget.Reservation reservation = budget.reserve(5000)) {
+            Assertions.assertEquals(5000, reservation.getBytes());
+            Assertions.assertThrows(RejectedExecutionException.class, () -> budget.reserve(1));
+        }
+    }
+
+    @Test
+    public void givenUnlimitedBudget_whenReserve_thenOnlyAccount() {
+        NativeMemoryBudget budget = createBudget(0, 0, Duration.ZERO);
+
+        try (NativeMemoryBudget.Reservation first = budget.reserve(1L << 40);
+             NativeMemoryBudget.Reservation second = budget.reserve(1L << 40)) {
+            Assertions.assertEquals(1L << 41, budget.getReserved());
+        }
+    }
+
+    @Test
+    public void givenLinux_whenReadResidentSetSize_thenReturnPositiveValue() {
+        double residentSetSize = NativeMemoryBudget.readResidentSetSize();
+
+        if (System.getProperty("os.name").toLowerCase().contains("linux")) {
+            Assertions.assertTrue(residentSetSize > 0);
+        } else {
+            Assertions.assertTrue(Double.isNaN(residentSetSize));
+        }
+    }
+
+}
@@ -1,26 +1,50 @@
 package com.kapia.ocr;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kapia.cache.OCRResultCache;
+import com.kapia.exceptionhandling.ResponseExceptionHandler;
+import com.kapia.imaging.BlankImageDetector;
+import com.kapia.imaging.ImageDecoder;
+import com.kapia.imaging.ImagePreprocessor;
+import com.kapia.imaging.PixelBudget;
+import com.kapia.ratelimiting.RateLimitExceededException;
+import com.kapia.ratelimiting.TokenCharge;
+import com.kapia.util.DirectBufferPool;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import net.sourceforge.tess4j.TesseractException;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.*;
 
-@ContextConfiguration(classes = {OCRController.class, OCRService.class})
+@ContextConfiguration(classes = {OCRController.class, OCRService.class, OCRProfiles.class, OCRExecutor.class, StripRecognizer.class, InFlightRecognitions.class, NativeMemoryBudget.class, OrientationDetector.class, BlankImageDetector.class, ImageDecoder.class, PixelBudget.class, DeadlinePolicy.class, DocumentService.class, ImagePreprocessor.class, DirectBufferPool.class, SimpleMeterRegistry.class, ObjectMapper.class})
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
 public class TestOCRController {
@@ -29,12 +53,24 @@ public class TestOCRController {
     private static final String FILE_PATH = "src/test/resources/sample_text_jpeg.jpeg";
     private static final String CONTENT_TYPE = "image/jpeg";
 
-    @InjectMocks
+    @MockBean
+    private TesseractEnginePoolRegistry tesseractEnginePoolRegistry;
+
+    @MockBean
+    private OCRResultCache ocrResultCache;
+
     private OCRController ocrController;
 
     @Mock
     private OCRService ocrService;
 
+    @BeforeEach
+    public void init() {
+        OCRExecutor ocrExecutor = new OCRExecutor(1, 2, new SimpleMeterRegistry());
+        DocumentService documentService = new DocumentService(ocrService, ocrExecutor, new PixelBudget(100_000_000, Duration.ofSeconds(10), new SimpleMeterRegistry()), 10, 2, 72);
+        ocrController = new OCRController(ocrService, ocrExecutor, documentService, new ObjectMapper(), new DeadlinePolicy(new MockEnvironment(), Duration.ofSeconds(120)));
+    }
+
     @Test
     public void givenImage_whenProcessImage_thenReturnResponse() throws Exception {
 
@@ -49,14 +85,14 @@ public class TestOCRController {
                 """;
         HttpStatus expectedStatus = HttpStatus.OK;
 
-        when(ocrService.processImage(any())).thenReturn(expectedText);
+        when(ocrService.submitImage(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(expectedText));
 
-        ResponseEntity<String> response = ocrController.processImage(multipartFile);
+        ResponseEntity<String> response = ocrController.processImage(multipartFile, null, null, null, new MockHttpServletRequest()).get();
 
         Assertions.assertEquals(expectedText, response.getBody());
         Assertions.assertEquals(expectedStatus, response.getStatusCode());
 
-        verify(ocrService, times(1)).processImage(any());
+        verify(ocrService, times(1)).submitImage(any(), any(), any());
 
     }
 
@@ -66,11 +102,12 @@ public class TestOCRController {
         File file = new File(FILE_PATH);
         MockMultipartFile multipartFile = new MockMultipartFile(PART_NAME, file.getName(), CONTENT_TYPE, Files.readAllBytes(file.toPath()));
 
-        when(ocrService.processImage(any())).thenThrow(new IOException());
+        when(ocrService.submitImage(any(), any(), any())).thenReturn(CompletableFuture.failedFuture(new IOException()));
 
-        Assertions.assertThrows(IOException.class, () -> ocrController.processImage(multipartFile));
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> ocrController.processImage(multipartFile, null, null, null, new MockHttpServletRequest()).get());
+        Assertions.assertInstanceOf(IOException.class, exception.getCause());
 
-        verify(ocrService, times(1)).processImage(any());
+        verify(ocrService, times(1)).submitImage(any(), any(), any());
     }
 
     @Test
@@ -79,13 +116,222 @@ public class TestOCRController {
         File file = new File(FILE_PATH);
         MockMultipartFile multipartFile = new MockMultipartFile(PART_NAME, file.getName(), CONTENT_TYPE, Files.readAllBytes(file.toPath()));
 
-        given(ocrService.processImage(any())).willAnswer(invocation -> {
-            throw new TesseractException("Error processing the image");
-        });
+        given(ocrService.submitImage(any(), any(), any())).willReturn(CompletableFuture.failedFuture(new TesseractException("Error processing the image")));
+
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> ocrController.processImage(multipartFile, null, null, null, new MockHttpServletRequest()).get());
+        Assertions.assertInstanceOf(TesseractException.class, exception.getCause());
+
+        verify(ocrService, times(1)).submitImage(any(), any(), any());
+
+    }
+
+    @Test
+    public void givenTimeout_whenProcessImage_thenThrowTimeout() throws TesseractException, IOException {
+
+        MockMultipartFile multipartFile = new MockMultipartFile(PART_NAME, "image.jpeg", CONTENT_TYPE, new byte[]{1});
+
+        when(ocrService.submitImage(any(), any(), any())).thenReturn(CompletableFuture.failedFuture(new OCRTimeoutException("It was the best")));
+
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> ocrController.processImage(multipartFile, null, null, null, new MockHttpServletRequest()).get());
+        Assertions.assertInstanceOf(OCRTimeoutException.class, exception.getCause());
+
+    }
+
+    @Test
+    public void givenTimeoutAndPartialResultsAccepted_whenProcessImage_thenReturnPartialText() throws Exception {
+
+        MockMultipartFile multipartFile = new MockMultipartFile(PART_NAME, "image.jpeg", CONTENT_TYPE, new byte[]{1});
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(DeadlinePolicy.DEADLINE_HEADER, "500");
+        request.addHeader(DeadlinePolicy.PARTIAL_RESULTS_HEADER, "true");
+
+        when(ocrService.submitImage(any(), any(), any())).thenReturn(CompletableFuture.failedFuture(new OCRTimeoutException("It was the best")));
+
+        ResponseEntity<String> response = ocrController.processImage(multipartFile, null, null, null, request).get();
+
+        Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Assertions.assertEquals("It was the best", response.getBody());
+        Assertions.assertEquals("true", response.getHeaders().getFirst("X-OCR-Partial"));
+        verify(ocrService, times(1)).submitImage(eq(multipartFile), argThat(options -> options.partialResults() && options.deadline().isBounded()), eq(OCRPriority.FREE));
+
+    }
+
+    @Test
+    public void givenImages_whenProcessBatch_thenStreamResultsInOrder() throws Exception {
+
+        MockMultipartFile first = new MockMultipartFile(PART_NAME, "first.jpeg", CONTENT_TYPE, new byte[]{1});
+        MockMultipartFile second = new MockMultipartFile(PART_NAME, "second.jpeg", CONTENT_TYPE, new byte[]{2});
+
+        when(ocrService.submitImage(eq(first), any(), any())).thenReturn(CompletableFuture.completedFuture("first text"));
+        when(ocrService.submitImage(eq(second), any(), any())).thenThrow(new IOException());
+
+        ResponseEntity<StreamingResponseBody> response = ocrController.processBatch(List.of(first, second), new MockHttpServletRequest());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        response.getBody().writeTo(outputStream);
+
+        String[] lines = outputStream.toString().split("\n");
+        Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Assertions.assertEquals(2, lines.length);
+        Assertions.assertEquals("{\"index\":0,\"filename\":\"first.jpeg\",\"text\":\"first text\"}", lines[0]);
+        Assertions.assertEquals("{\"index\":1,\"filename\":\"second.jpeg\",\"error\":\"" + ResponseExceptionHandler.getErrorReadingImage() + "\"}", lines[1]);
+
+    }
+
+    @Test
+    public void givenDeadline_whenProcessBatch_thenApplyItToEveryImage() throws Exception {
+
+        MockMultipartFile first = new MockMultipartFile(PART_NAME, "first.jpeg", CONTENT_TYPE, new byte[]{1});
+        MockMultipartFile second = new MockMultipartFile(PART_NAME, "second.jpeg", CONTENT_TYPE, new byte[]{2});
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(DeadlinePolicy.DEADLINE_HEADER, "5000");
+        request.addHeader(DeadlinePolicy.PARTIAL_RESULTS_HEADER, "true");
+
+        when(ocrService.submitImage(eq(first), any(), any())).thenReturn(CompletableFuture.failedFuture(new OCRTimeoutException("It was the best")));
+        when(ocrService.submitImage(eq(second), any(), any())).thenReturn(CompletableFuture.failedFuture(new OCRTimeoutException("")));
+
+        ResponseEntity<StreamingResponseBody> response = ocrController.processBatch(List.of(first, second), request);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        response.getBody().writeTo(outputStream);
+
+        String[] lines = outputStream.toString().split("\n");
+        Assertions.assertEquals("{\"index\":0,\"filename\":\"first.jpeg\",\"text\":\"It was the best\",\"partial\":true}", lines[0]);
+        Assertions.assertEquals("{\"index\":1,\"filename\":\"second.jpeg\",\"text\":\"\",\"partial\":true}", lines[1]);
+        verify(ocrService, times(2)).submitImage(any(), argThat(options -> options.partialResults() && options.deadline().remainingNanos() <= Duration.ofSeconds(5).toNanos()), eq(OCRPriority.FREE));
+
+    }
+
+    @Test
+    public void givenInvalidDeadline_whenProcessBatch_thenThrowInvalidDeadlineException() {
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(DeadlinePolicy.DEADLINE_HEADER, "soon");
+
+        Assertions.assertThrows(InvalidDeadlineException.class, () -> ocrController.processBatch(List.of(), request));
+
+    }
+
+    @Test
+    public void givenBatchLargerThanQueue_whenProcessBatch_thenProcessEveryImage() throws Exception {
+
+        List<MultipartFile> images = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            images.add(new MockMultipartFile(PART_NAME, i + ".jpeg", CONTENT_TYPE, new byte[]{(byte) i}));
+        }
+        when(ocrService.submitImage(any(MultipartFile.class), any(), any())).thenReturn(CompletableFuture.completedFuture("text"));
+
+        ResponseEntity<StreamingResponseBody> response = ocrController.processBatch(images, new MockHttpServletRequest());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        response.getBody().writeTo(outputStream);
+
+        String[] lines = outputStream.toString().split("\n");
+        Assertions.assertEquals(6, lines.length);
+        for (int i = 0; i < 6; i++) {
+            Assertions.assertEquals("{\"index\":" + i + ",\"filename\":\"" + i + ".jpeg\",\"text\":\"text\"}", lines[i]);
+        }
+
+    }
+
+    @Test
+    public void givenTiffDocument_whenProcessDocument_thenStreamResultsPerPage() throws Exception {
+
+        MockMultipartFile document = new MockMultipartFile("document", "document.tiff", "image/tiff", TestDocumentService.createTiff(3));
+
+        when(ocrService.processPage(any(), any())).thenReturn("page text");
+
+        ResponseEntity<StreamingResponseBody> response = ocrController.processDocument(document, new MockHttpServletRequest(), new MockHttpServletResponse());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        response.getBody().writeTo(outputStream);
+
+        String[] lines = outputStream.toString().split("\n");
+        Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Assertions.assertEquals(3, lines.length);
+        Assertions.assertEquals("{\"page\":1,\"text\":\"page text\"}", lines[0]);
+        Assertions.assertEquals("{\"page\":3,\"text\":\"page text\"}", lines[2]);
+
+    }
+
+    @Test
+    public void givenRateLimitedRequest_whenProcessDocument_thenChargeOneTokenPerPage() throws Exception {
+
+        MockMultipartFile document = new MockMultipartFile("document", "document.tiff", "image/tiff", TestDocumentService.createTiff(3));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        List<Long> charged = new ArrayList<>();
+        request.setAttribute(TokenCharge.REQUEST_ATTRIBUTE, (TokenCharge) (tokens, response) -> charged.add(tokens));
+
+        when(ocrService.processPage(any(), any())).thenReturn("page text");
+
+        ocrController.processDocument(document, request, new MockHttpServletResponse());
+
+        Assertions.assertEquals(List.of(2L), charged);
+
+    }
+
+    @Test
+    public void givenDocumentOverRemainingLimit_whenProcessDocument_thenThrowRateLimitExceededException() throws Exception {
+
+        MockMultipartFile document = new MockMultipartFile("document", "document.tiff", "image/tiff", TestDocumentService.createTiff(3));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(TokenCharge.REQUEST_ATTRIBUTE, (TokenCharge) (tokens, response) -> false);
+
+        Assertions.assertThrows(RateLimitExceededException.class, () -> ocrController.processDocument(document, request, new MockHttpServletResponse()));
+        verify(ocrService, never()).processPage(any(), any());
+
+    }
+
+    @Test
+    public void givenRegions_whenProcessRegions_thenReturnTextPerRegion() throws Exception {
+
+        File file = new File(FILE_PATH);
+        MockMultipartFile multipartFile = new MockMultipartFile(PART_NAME, file.getName(), CONTENT_TYPE, Files.readAllBytes(file.toPath()));
+        List<RegionResult> expectedResults = List.of(
+                new RegionResult(0, 0, 100, 20, "It was the best of"),
+                new RegionResult(0, 20, 100, 20, "times, it was the worst"));
+
+        when(ocrService.submitRegions(any(), any(), any(), any())).thenReturn(CompletableFuture.completedFuture(expectedResults));
+
+        ResponseEntity<List<RegionResult>> response = ocrController.processRegions(multipartFile, "0,0,100,20;0,20,100,20", null, null, new MockHttpServletRequest()).get();
+
+        Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Assertions.assertEquals(expectedResults, response.getBody());
+        verify(ocrService, times(1)).submitRegions(eq(multipartFile), eq(List.of(new OCRRegion(0, 0, 100, 20), new OCRRegion(0, 20, 100, 20))), argThat(options -> options.language() == null && options.deadline().isBounded()), eq(OCRPriority.FREE));
+
+    }
+
+    @Test
+    public void givenMalformedRegions_whenProcessRegions_thenThrowInvalidRegionException() {
+
+        MockMultipartFile multipartFile = new MockMultipartFile(PART_NAME, "image.jpeg", CONTENT_TYPE, new byte[]{1});
+
+        Assertions.assertThrows(InvalidRegionException.class, () -> ocrController.processRegions(multipartFile, "0,0,100", null, null, new MockHttpServletRequest()));
+        Assertions.assertThrows(InvalidRegionException.class, () -> ocrController.processRegions(multipartFile, "0,0,-5,20", null, null, new MockHttpServletRequest()));
+        Assertions.assertThrows(InvalidRegionException.class, () -> ocrController.processRegions(multipartFile, " ; ", null, null, new MockHttpServletRequest()));
+
+    }
+
+    @Test
+    public void givenFormat_whenProcessStructured_thenReturnResultWithMediaType() throws Exception {
+
+        File file = new File(FILE_PATH);
+        MockMultipartFile multipartFile = new MockMultipartFile(PART_NAME, file.getName(), CONTENT_TYPE, Files.readAllBytes(file.toPath()));
+        byte[] expectedResult = "{\"blocks\":[],\"text\":\"\"}".getBytes();
+
+        when(ocrService.submitStructured(any(), any(), eq(StructuredFormat.JSON), any())).thenReturn(CompletableFuture.completedFuture(expectedResult));
+
+        ResponseEntity<byte[]> response = ocrController.processStructured(multipartFile, "json", null, "eng+deu", null, new MockHttpServletRequest()).get();
+
+        Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Assertions.assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+        Assertions.assertArrayEquals(expectedResult, response.getBody());
+        verify(ocrService, times(1)).submitStructured(eq(multipartFile), argThat(options -> "eng+deu".equals(options.language()) && options.deadline().isBounded()), eq(StructuredFormat.JSON), eq(OCRPriority.FREE));
+
+    }
+
+    @Test
+    public void givenUnknownFormat_whenProcessStructured_thenThrowInvalidOutputFormatException() {
 
-        Assertions.assertThrows(TesseractException.class, () -> ocrController.processImage(multipartFile));
+        MockMultipartFile multipartFile = new MockMultipartFile(PART_NAME, "image.jpeg", CONTENT_TYPE, new byte[]{1});
 
-        verify(ocrService, times(1)).processImage(any());
+        Assertions.assertThrows(InvalidOutputFormatException.class, () -> ocrController.processStructured(multipartFile, "xml", null, null, null, new MockHttpServletRequest()));
 
     }
 
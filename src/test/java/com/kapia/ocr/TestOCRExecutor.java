@@ -0,0 +1,90 @@
+package com.kapia.ocr;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+public class TestOCRExecutor {
+
+    private MeterRegistry meterRegistry;
+    private OCRExecutor ocrExecutor;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    public void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        ocrExecutor = new OCRExecutor(1, 1, meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        ocrExecutor.close();
+    }
+
+    @Test
+    public void givenTask_whenSubmit_thenRunOnWorkerThread() throws Exception {
+        String threadName = ocrExecutor.submit(() -> Thread.currentThread().getName()).get();
+
+        Assertions.assertTrue(threadName.startsWith("ocr-worker-"));
+    }
+
+    @Test
+    public void givenFailingTask_whenSubmit_thenCompleteExceptionally() {
+        CompletableFuture<String> future = ocrExecutor.submit(() -> {
+            throw new IOException("File could not be read");
+        });
+
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, future::get);
+        Assertions.assertInstanceOf(IOException.class, exception.getCause());
+    }
+
+    @Test
+    public void givenFullQueue_whenSubmit_thenReject() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        ocrExecutor.submit(() -> {
+            started.countDown();
+            release.await();
+            return "running";
+        });
+        started.await();
+        ocrExecutor.submit(() -> "queued");
+
+        Assertions.assertThrows(RejectedExecutionException.class, () -> ocrExecutor.submit(() -> "rejected"));
+        Assertions.assertEquals(1.0, meterRegistry.get("ocr.executor.rejected").counter().count());
+        Assertions.assertEquals(1.0, meterRegistry.get("ocr.executor.queued").gauge().value());
+    }
+
+    @Test
+    public void givenFullQueue_whenSubmitHigherPriority_thenShedFreeJob() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        ocrExecutor.submit(() -> {
+            started.countDown();
+            release.await();
+            return "running";
+        }, OCRPriority.PRO);
+        started.await();
+        CompletableFuture<String> free = ocrExecutor.submit(() -> "free", OCRPriority.FREE);
+
+        CompletableFuture<String> pro = ocrExecutor.submit(() -> "pro", OCRPriority.PRO);
+
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, free::get);
+        Assertions.assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+        Assertions.assertEquals(1.0, meterRegistry.get("ocr.scheduler.shed").tag("priority", "free").counter().count());
+        Assertions.assertEquals(1.0, meterRegistry.get("ocr.scheduler.queued").tag("priority", "pro").gauge().value());
+
+        release.countDown();
+        Assertions.assertEquals("pro", pro.get());
+        Assertions.assertEquals(2, meterRegistry.get("ocr.scheduler.wait").tag("priority", "pro").timer().count());
+    }
+
+}
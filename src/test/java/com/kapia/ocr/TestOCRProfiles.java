@@ -0,0 +1,49 @@
+package com.kapia.ocr;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+public class TestOCRProfiles {
+
+    private static final String TESSDATA_PATH = "tessdata";
+
+    @Test
+    public void givenConfiguredProfile_whenGet_thenReturnEngineSettings() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("ocr.profiles.fast-digits.datapath", "tessdata_fast")
+                .withProperty("ocr.profiles.fast-digits.psm", "7")
+                .withProperty("ocr.profiles.fast-digits.whitelist", "0123456789")
+                .withProperty("ocr.profiles.fast-digits.preprocessing", "otsu");
+
+        OCRProfiles profiles = new OCRProfiles(TESSDATA_PATH, "fast-digits", environment);
+        OCRProfile profile = profiles.get("fast-digits");
+
+        Assertions.assertEquals(new EngineConfig("tessdata_fast", EngineConfig.DEFAULT_LANGUAGE, 7, EngineConfig.DEFAULT_OCR_ENGINE_MODE, "0123456789"), profile.engineConfig());
+        Assertions.assertEquals("otsu", profile.preprocessing());
+    }
+
+    @Test
+    public void givenNoProfile_whenGet_thenReturnDefaultProfile() {
+        OCRProfiles profiles = new OCRProfiles(TESSDATA_PATH, "", new MockEnvironment());
+
+        Assertions.assertEquals(new EngineConfig(TESSDATA_PATH, EngineConfig.DEFAULT_LANGUAGE), profiles.get(null).engineConfig());
+        Assertions.assertNull(profiles.get(null).preprocessing());
+        Assertions.assertTrue(profiles.getProfiles().isEmpty());
+    }
+
+    @Test
+    public void givenUnknownProfile_whenGet_thenThrowInvalidProfileException() {
+        OCRProfiles profiles = new OCRProfiles(TESSDATA_PATH, "best-document", new MockEnvironment());
+
+        Assertions.assertThrows(InvalidProfileException.class, () -> profiles.get("fast-digits"));
+    }
+
+    @Test
+    public void givenInvalidPageSegMode_whenCreate_thenThrowIllegalArgumentException() {
+        MockEnvironment environment = new MockEnvironment().withProperty("ocr.profiles.broken.psm", "14");
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new OCRProfiles(TESSDATA_PATH, "broken", environment));
+    }
+
+}
@@ -1,5 +1,16 @@
 package com.kapia.ocr;
 
+import com.kapia.cache.OCRResultCache;
+import com.kapia.imaging.BlankImageDetector;
+import com.kapia.imaging.ImageDecoder;
+import com.kapia.imaging.ImagePreprocessor;
+import com.kapia.imaging.PixelBudget;
+import com.kapia.imaging.InvalidPreprocessingException;
+import com.kapia.imaging.PreprocessingPipeline;
+import com.kapia.imaging.TestImageDecoder;
+import com.kapia.util.DirectBufferPool;
+import com.kapia.util.HashingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import net.sourceforge.tess4j.TesseractException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,12 +23,26 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.util.unit.DataSize;
 
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
-@ContextConfiguration(classes = {OCRService.class})
+@ContextConfiguration(classes = {OCRService.class, OCRConfig.class, OCRProfiles.class, OCRExecutor.class, StripRecognizer.class, InFlightRecognitions.class, NativeMemoryBudget.class, OrientationDetector.class, BlankImageDetector.class, ImageDecoder.class, PixelBudget.class, OCRResultCache.class, ImagePreprocessor.class, DirectBufferPool.class, HashingService.class, SimpleMeterRegistry.class})
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
 public class TestOCRService {
@@ -30,8 +55,9 @@ public class TestOCRService {
 
     @BeforeEach
     public void init() {
-        ocrService = new OCRService();
-        org.springframework.test.util.ReflectionTestUtils.setField(ocrService, "TESSDATA_PATH", TESSDATA_PATH);
+        OCRResultCache resultCache = new OCRResultCache(false, 0, new HashingService(), new SimpleMeterRegistry());
+        EngineConfig engineConfig = new EngineConfig(TESSDATA_PATH, EngineConfig.DEFAULT_LANGUAGE);
+        ocrService = createService(engineConfig, resultCache);
     }
 
     @Test
@@ -54,6 +80,16 @@ public class TestOCRService {
 
     }
 
+    @Test
+    public void givenHighDpiImage_whenProcessImage_thenReturnSameText() throws IOException, TesseractException {
+
+        File file = new File("src/test/resources/sample_text_png.png");
+        byte[] highDpiImage = TestImageDecoder.encode(ImageIO.read(file), "png", 600);
+
+        Assertions.assertEquals(ocrService.processImageBytes(Files.readAllBytes(file.toPath())), ocrService.processImageBytes(highDpiImage));
+
+    }
+
     @Test
     public void givenNoImage_whenProcessImage_thenThrowIllegalArgumentException() {
 
@@ -69,4 +105,177 @@ public class TestOCRService {
 
     }
 
+    @Test
+    public void givenCachedResult_whenProcessImage_thenReturnTextWithoutDecoding() throws IOException, TesseractException {
+
+        byte[] notAnImage = "some text".getBytes();
+        EngineConfig engineConfig = new EngineConfig(TESSDATA_PATH, EngineConfig.DEFAULT_LANGUAGE);
+        OCRResultCache resultCache = new OCRResultCache(true, 1024 * 1024, new HashingService(), new SimpleMeterRegistry());
+        OCRService cachingService = createService(engineConfig, resultCache);
+        resultCache.put(resultCache.key(notAnImage, cachingService.configurationOf(PreprocessingPipeline.NONE, engineConfig)), "cached text");
+
+        Assertions.assertEquals("cached text", cachingService.processImageBytes(notAnImage));
+
+    }
+
+    @Test
+    public void givenBlankImage_whenProcessImageBytes_thenReturnEmptyTextWithoutRecognition() throws IOException, TesseractException {
+
+        OCRService service = createService(new EngineConfig("missing-tessdata", EngineConfig.DEFAULT_LANGUAGE), new OCRResultCache(false, 0, new HashingService(), new SimpleMeterRegistry()));
+
+        Assertions.assertEquals("", service.processImageBytes(createBlankPage()));
+
+    }
+
+    @Test
+    public void givenExhaustedPixelBudget_whenSubmitImage_thenWaitForPermitBeforeQueuing() throws Exception {
+
+        SimpleMeterRegistry budgetRegistry = new SimpleMeterRegistry();
+        PixelBudget pixelBudget = new PixelBudget(2_000_000, Duration.ofSeconds(10), budgetRegistry);
+        OCRService service = createService(new EngineConfig("missing-tessdata", EngineConfig.DEFAULT_LANGUAGE), new OCRResultCache(false, 0, new HashingService(), new SimpleMeterRegistry()), pixelBudget);
+        byte[] blankPage = createBlankPage();
+
+        PixelBudget.Permit permit = pixelBudget.acquire(2_000_000);
+        CompletableFuture<CompletableFuture<String>> submission = CompletableFuture.supplyAsync(() -> {
+            try {
+                return service.submitImageBytes(blankPage, OCRPriority.FREE);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+        while (budgetRegistry.get("ocr.decode.pixel.budget.queued").gauge().value() < 1) {
+            Thread.onSpinWait();
+        }
+        Assertions.assertFalse(submission.isDone());
+        permit.close();
+
+        Assertions.assertEquals("", submission.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(0, pixelBudget.getUtilization());
+
+    }
+
+    @Test
+    public void givenExhaustedPixelBudget_whenDeadlinePasses_thenThrowOCRTimeoutException() throws Exception {
+
+        PixelBudget pixelBudget = new PixelBudget(2_000_000, Duration.ofSeconds(10), new SimpleMeterRegistry());
+        OCRService service = createService(new EngineConfig("missing-tessdata", EngineConfig.DEFAULT_LANGUAGE), new OCRResultCache(false, 0, new HashingService(), new SimpleMeterRegistry()), pixelBudget);
+        ByteBuffer blankPage = ByteBuffer.wrap(createBlankPage());
+
+        try (PixelBudget.Permit permit = pixelBudget.acquire(2_000_000)) {
+            long start = System.nanoTime();
+            Assertions.assertThrows(OCRTimeoutException.class, () -> service.submitImageBuffer(blankPage, PreprocessingPipeline.NONE, new EngineConfig("missing-tessdata", EngineConfig.DEFAULT_LANGUAGE), Deadline.after(Duration.ofMillis(50)), OCRPriority.FREE));
+            Assertions.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        }
+
+    }
+
+    @Test
+    public void givenIdenticalUploads_whenSubmitImage_thenQueueOneRecognition() throws Exception {
+
+        OCRExecutor ocrExecutor = new OCRExecutor(1, 1, new SimpleMeterRegistry());
+        OCRService service = createService(new EngineConfig("missing-tessdata", EngineConfig.DEFAULT_LANGUAGE), new OCRResultCache(false, 0, new HashingService(), new SimpleMeterRegistry()),
+                new PixelBudget(100_000_000, Duration.ofSeconds(10), new SimpleMeterRegistry()), ocrExecutor);
+        byte[] blankPage = createBlankPage();
+        CountDownLatch release = new CountDownLatch(1);
+        ocrExecutor.submit(() -> release.await(5, TimeUnit.SECONDS), OCRPriority.ADMIN);
+
+        try {
+            List<CompletableFuture<String>> results = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                results.add(service.submitImageBytes(blankPage, OCRPriority.FREE));
+            }
+            release.countDown();
+
+            for (CompletableFuture<String> result : results) {
+                Assertions.assertEquals("", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            ocrExecutor.close();
+        }
+
+    }
+
+    @Test
+    public void givenRegionOutsideOfImage_whenProcessRegions_thenThrowInvalidRegionException() throws IOException {
+
+        File file = new File("src/test/resources/sample_text_png.png");
+        MultipartFile multipartFile = new MockMultipartFile("file", file.getName(), "image/png", Files.readAllBytes(file.toPath()));
+        List<OCRRegion> regions = List.of(new OCRRegion(100000, 100000, 10, 10));
+
+        Assertions.assertThrows(InvalidRegionException.class, () -> ocrService.processRegions(multipartFile, regions));
+
+    }
+
+    @Test
+    public void givenUnknownPreprocessingStage_whenProcessImage_thenThrowInvalidPreprocessingException() throws IOException {
+
+        File file = new File("src/test/resources/sample_text_png.png");
+        MultipartFile multipartFile = new MockMultipartFile("file", file.getName(), "image/png", Files.readAllBytes(file.toPath()));
+
+        Assertions.assertThrows(InvalidPreprocessingException.class, () -> ocrService.processImage(multipartFile, new OCROptions(null, null, "grayscale,sharpen")));
+
+    }
+
+    @Test
+    public void givenUnknownLanguage_whenProcessImage_thenThrowInvalidLanguageException() throws IOException {
+
+        File file = new File("src/test/resources/sample_text_png.png");
+        MultipartFile multipartFile = new MockMultipartFile("file", file.getName(), "image/png", Files.readAllBytes(file.toPath()));
+
+        Assertions.assertThrows(InvalidLanguageException.class, () -> ocrService.processImage(multipartFile, new OCROptions(null, "eng+xyz", null)));
+        Assertions.assertThrows(InvalidLanguageException.class, () -> ocrService.processImage(multipartFile, new OCROptions(null, "../eng", null)));
+
+    }
+
+    @Test
+    public void givenUnknownProfile_whenProcessImage_thenThrowInvalidProfileException() throws IOException {
+
+        File file = new File("src/test/resources/sample_text_png.png");
+        MultipartFile multipartFile = new MockMultipartFile("file", file.getName(), "image/png", Files.readAllBytes(file.toPath()));
+
+        Assertions.assertThrows(InvalidProfileException.class, () -> ocrService.processImage(multipartFile, new OCROptions("fast-digits", null, null)));
+
+    }
+
+    private static byte[] createBlankPage() throws IOException {
+        BufferedImage blankPage = new BufferedImage(850, 1100, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = blankPage.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, blankPage.getWidth(), blankPage.getHeight());
+        graphics.dispose();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(blankPage, "png", output);
+        return output.toByteArray();
+    }
+
+    private static OCRService createService(EngineConfig engineConfig, OCRResultCache resultCache) {
+        return createService(engineConfig, resultCache, new PixelBudget(100_000_000, Duration.ofSeconds(10), new SimpleMeterRegistry()));
+    }
+
+    private static OCRService createService(EngineConfig engineConfig, OCRResultCache resultCache, PixelBudget pixelBudget) {
+        return createService(engineConfig, resultCache, pixelBudget, new OCRExecutor(1, 1, new SimpleMeterRegistry()));
+    }
+
+    private static OCRService createService(EngineConfig engineConfig, OCRResultCache resultCache, PixelBudget pixelBudget, OCRExecutor ocrExecutor) {
+        TesseractEnginePool enginePool = new TesseractEnginePool(engineConfig, 1, Duration.ofSeconds(30), new SimpleMeterRegistry());
+        TesseractEnginePoolRegistry enginePools = new TesseractEnginePoolRegistry(enginePool, 1, Duration.ofSeconds(30), 2, 1024 * 1024 * 1024, new SimpleMeterRegistry());
+        NativeMemoryBudget nativeMemoryBudget = new NativeMemoryBudget(enginePools, 2048, 8, 10, new SimpleMeterRegistry());
+        StripRecognizer stripRecognizer = new StripRecognizer(enginePools, ocrExecutor, nativeMemoryBudget, true, 16, 600, 40, new SimpleMeterRegistry());
+        return new OCRService(enginePools, new OCRProfiles(engineConfig, List.of()), resultCache, createImagePreprocessor(), createBufferPool(), stripRecognizer, new InFlightRecognitions(true, new SimpleMeterRegistry()),
+                nativeMemoryBudget,
+                new OrientationDetector(enginePools, Map.of(), false, 1024, 2.0, 1.0, new SimpleMeterRegistry()),
+                new BlankImageDetector(true, 16, 48, new SimpleMeterRegistry()),
+                new ImageDecoder(false, true, 300, new SimpleMeterRegistry()),
+                pixelBudget,
+                ocrExecutor);
+    }
+
+    private static DirectBufferPool createBufferPool() {
+        return new DirectBufferPool(DataSize.ofMegabytes(1), DataSize.ofMegabytes(1), new SimpleMeterRegistry());
+    }
+
+    private static ImagePreprocessor createImagePreprocessor() {
+        return new ImagePreprocessor("", 300, 5, 31, new SimpleMeterRegistry());
+    }
+
 }
@@ -0,0 +1,71 @@
+package com.kapia.ocr;
+
+import com.kapia.imaging.ImagePreprocessor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.sourceforge.tess4j.TesseractException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.context.ApplicationContext;
+
+import java.io.IOException;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class TestOCRWarmUp {
+
+    private MeterRegistry meterRegistry;
+    private TesseractEnginePoolRegistry enginePools;
+    private OCRService ocrService;
+    private OCRExecutor ocrExecutor;
+
+    @BeforeEach
+    public void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        enginePools = mock(TesseractEnginePoolRegistry.class);
+        ocrService = mock(OCRService.class);
+        ocrExecutor = new OCRExecutor(2, 10, meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ocrExecutor.close();
+    }
+
+    private OCRWarmUp createWarmUp(boolean enabled) {
+        return new OCRWarmUp(enginePools, ocrService, ocrExecutor, new ImagePreprocessor("", 300, 5, 31, meterRegistry),
+                mock(ApplicationContext.class), enabled, 2, 3, "superuser", "superuser", meterRegistry);
+    }
+
+    @Test
+    public void givenEnabledWarmUp_whenRun_thenPrestartEnginesAndRecognizeSamples() throws IOException, TesseractException {
+        when(ocrService.processImageUncached(any(), any())).thenReturn("text");
+
+        createWarmUp(true).run(new DefaultApplicationArguments());
+
+        verify(enginePools, times(1)).prestart();
+        // 2 bundled samples, 3 preprocessing pipelines, 2 iterations
+        verify(ocrService, times(12)).processImageUncached(any(), any());
+        Assertions.assertEquals(1, meterRegistry.get("ocr.warmup").timer().count());
+    }
+
+    @Test
+    public void givenDisabledWarmUp_whenRun_thenDoNothing() {
+        createWarmUp(false).run(new DefaultApplicationArguments());
+
+        verifyNoInteractions(enginePools, ocrService);
+    }
+
+    @Test
+    public void givenMissingNativeLibrary_whenRun_thenFinishWithoutFailingStartup() throws TesseractException {
+        when(enginePools.prestart()).thenThrow(new UnsatisfiedLinkError("tesseract"));
+
+        Assertions.assertDoesNotThrow(() -> createWarmUp(true).run(new DefaultApplicationArguments()));
+        verifyNoInteractions(ocrService);
+    }
+
+}
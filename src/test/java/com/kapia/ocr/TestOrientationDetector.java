@@ -0,0 +1,178 @@
+package com.kapia.ocr;
+
+import com.kapia.imaging.ImageRotation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.sourceforge.tess4j.TesseractException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class TestOrientationDetector {
+
+    @TempDir
+    private Path tessdata;
+
+    private MeterRegistry meterRegistry;
+    private TesseractEnginePoolRegistry enginePools;
+    private Orientation detectedOrientation;
+
+    @BeforeEach
+    public void init() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        for (String model : List.of("eng", "rus", "osd")) {
+            Files.write(tessdata.resolve(model + ".traineddata"), new byte[16]);
+        }
+        TesseractEnginePool.EngineFactory engineFactory = config -> {
+            TesseractEngine engine = mock(TesseractEngine.class);
+            when(engine.isHealthy()).thenReturn(true);
+            when(engine.detectOrientation(any())).thenAnswer(invocation -> detectedOrientation);
+            return engine;
+        };
+        EngineConfig defaultConfig = new EngineConfig(tessdata.toString(), EngineConfig.DEFAULT_LANGUAGE);
+        TesseractEnginePool defaultPool = new TesseractEnginePool(defaultConfig, 1, Duration.ofMillis(100), meterRegistry, engineFactory);
+        enginePools = new TesseractEnginePoolRegistry(defaultPool, 1, Duration.ofMillis(100), 4, Long.MAX_VALUE, meterRegistry, engineFactory);
+    }
+
+    private OrientationDetector createDetector(boolean enabled) {
+        Map<String, String> scriptLanguages = Map.of("Cyrillic", "rus", "Arabic", "ara");
+        return new OrientationDetector(enginePools, scriptLanguages, enabled, 64, 2.0, 1.0, meterRegistry);
+    }
+
+    private static BufferedImage createImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, y * width + x);
+            }
+        }
+        return image;
+    }
+
+    @Test
+    public void givenUprightImage_whenOrient_thenKeepImageAndLanguage() {
+        detectedOrientation = new Orientation(0, 10f, "Latin", 5f);
+        BufferedImage image = createImage(120, 80);
+
+        OrientationDetector.OrientedImage oriented = createDetector(true).orient(image, enginePools.getDefaultConfig());
+
+        Assertions.assertSame(image, oriented.image());
+        Assertions.assertSame(enginePools.getDefaultConfig(), oriented.engineConfig());
+        Assertions.assertEquals(1, meterRegistry.get("ocr.osd").timer().count());
+    }
+
+    @Test
+    public void givenQuarterTurnedImage_whenOrient_thenRotateBack() {
+        detectedOrientation = new Orientation(90, 10f, "Latin", 5f);
+        BufferedImage image = createImage(120, 80);
+        int topLeft = image.getRGB(0, 0);
+
+        OrientationDetector.OrientedImage oriented = createDetector(true).orient(image, enginePools.getDefaultConfig());
+
+        Assertions.assertEquals(80, oriented.image().getWidth());
+        Assertions.assertEquals(120, oriented.image().getHeight());
+        Assertions.assertEquals(topLeft, oriented.image().getRGB(0, 119));
+        Assertions.assertEquals(1, meterRegistry.get("ocr.osd.rotated").tag("degrees", "270").counter().count());
+    }
+
+    @Test
+    public void givenLowConfidence_whenOrient_thenKeepImage() {
+        detectedOrientation = new Orientation(180, 0.5f, "Cyrillic", 5f);
+        BufferedImage image = createImage(120, 80);
+
+        OrientationDetector.OrientedImage oriented = createDetector(true).orient(image, enginePools.getDefaultConfig());
+
+        Assertions.assertSame(image, oriented.image());
+        Assertions.assertSame(enginePools.getDefaultConfig(), oriented.engineConfig());
+    }
+
+    @Test
+    public void givenInstalledScriptLanguage_whenOrient_thenSwitchLanguage() {
+        detectedOrientation = new Orientation(0, 10f, "Cyrillic", 5f);
+
+        OrientationDetector.OrientedImage oriented = createDetector(true).orient(createImage(120, 80), enginePools.getDefaultConfig());
+
+        Assertions.assertEquals("rus", oriented.engineConfig().language());
+    }
+
+    @Test
+    public void givenMissingScriptLanguageOrRequestedLanguage_whenOrient_thenKeepLanguage() {
+        OrientationDetector detector = createDetector(true);
+
+        detectedOrientation = new Orientation(0, 10f, "Arabic", 5f);
+        Assertions.assertEquals("eng", detector.orient(createImage(120, 80), enginePools.getDefaultConfig()).engineConfig().language());
+
+        detectedOrientation = new Orientation(0, 10f, "Cyrillic", 5f);
+        EngineConfig requested = enginePools.resolveConfig("eng+rus");
+        Assertions.assertSame(requested, detector.orient(createImage(120, 80), requested).engineConfig());
+    }
+
+    @Test
+    public void givenNoDetectedText_whenOrient_thenKeepImage() {
+        detectedOrientation = null;
+        BufferedImage image = createImage(120, 80);
+
+        Assertions.assertSame(image, createDetector(true).orient(image, enginePools.getDefaultConfig()).image());
+    }
+
+    @Test
+    public void givenDisabledOrMissingModel_whenOrient_thenSkipDetection() throws IOException, TesseractException {
+        Assertions.assertFalse(createDetector(false).isEnabled());
+
+        Files.delete(tessdata.resolve("osd.traineddata"));
+        OrientationDetector detector = createDetector(true);
+        BufferedImage image = createImage(120, 80);
+
+        Assertions.assertFalse(detector.isEnabled());
+        Assertions.assertSame(image, detector.orient(image, enginePools.getDefaultConfig()).image());
+        Assertions.assertEquals(0, meterRegistry.get("ocr.osd").timer().count());
+    }
+
+    @Test
+    public void givenDifferentSettings_whenFingerprint_thenTellConfigurationsApart() throws IOException {
+        EngineConfig defaultConfig = enginePools.getDefaultConfig();
+        String fingerprint = createDetector(true).fingerprint(defaultConfig);
+
+        Assertions.assertEquals("", createDetector(false).fingerprint(defaultConfig));
+        Assertions.assertEquals(fingerprint, createDetector(true).fingerprint(defaultConfig));
+        Assertions.assertNotEquals(fingerprint, new OrientationDetector(enginePools, Map.of("Cyrillic", "rus"), true, 64, 2.0, 1.0, meterRegistry).fingerprint(defaultConfig));
+        Assertions.assertNotEquals(fingerprint, new OrientationDetector(enginePools, Map.of("Cyrillic", "rus", "Arabic", "ara"), true, 64, 3.0, 1.0, meterRegistry).fingerprint(defaultConfig));
+
+        Files.write(tessdata.resolve("ara.traineddata"), new byte[32]);
+        Assertions.assertNotEquals(fingerprint, createDetector(true).fingerprint(defaultConfig));
+    }
+
+    @Test
+    public void givenImage_whenRotateByQuarterTurns_thenMovePixels() {
+        BufferedImage image = createImage(3, 2);
+        int[] original = image.getRGB(0, 0, 3, 2, null, 0, 3);
+
+        BufferedImage clockwise = ImageRotation.rotate(image, 90);
+        Assertions.assertEquals(original[0], clockwise.getRGB(1, 0));
+        Assertions.assertEquals(original[3], clockwise.getRGB(0, 0));
+
+        BufferedImage counterClockwise = ImageRotation.rotate(image, 270);
+        Assertions.assertEquals(original[2], counterClockwise.getRGB(0, 0));
+        Assertions.assertEquals(original[0], counterClockwise.getRGB(0, 2));
+
+        BufferedImage halfTurned = ImageRotation.rotate(image, 180);
+        Assertions.assertSame(image, halfTurned);
+        Assertions.assertEquals(original[5], halfTurned.getRGB(0, 0));
+        Assertions.assertEquals(original[0], halfTurned.getRGB(2, 1));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ImageRotation.rotate(image, 45));
+    }
+
+}
@@ -0,0 +1,204 @@
+package com.kapia.ocr;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.sourceforge.tess4j.TesseractException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+public class TestStripRecognizer {
+
+    private static final EngineConfig ENGINE_CONFIG = new EngineConfig("tessdata", EngineConfig.DEFAULT_LANGUAGE);
+
+    private MeterRegistry meterRegistry;
+    private TesseractEnginePoolRegistry enginePools;
+    private NativeMemoryBudget nativeMemoryBudget;
+    private Set<String> threads;
+    private Set<Long> reservedDuringRecognition;
+
+    @BeforeEach
+    public void init() throws TesseractException {
+        meterRegistry = new SimpleMeterRegistry();
+        threads = ConcurrentHashMap.newKeySet();
+        reservedDuringRecognition = ConcurrentHashMap.newKeySet();
+        nativeMemoryBudget = new NativeMemoryBudget(0, 8, Duration.ZERO, () -> 0, meterRegistry);
+        TesseractEngine engine = mock(TesseractEngine.class);
+        when(engine.recognize(any(), isNull(), any())).thenAnswer(invocation -> {
+            BufferedImage image = invocation.getArgument(0);
+            threads.add(Thread.currentThread().getName());
+            reservedDuringRecognition.add(nativeMemoryBudget.getReserved());
+            Thread.sleep(20);
+            return image.getRaster().getParent() == null ? "whole page\n" : "strip at " + stripTop(image) + "\n";
+        });
+        enginePools = mock(TesseractEnginePoolRegistry.class);
+        when(enginePools.execute(any(), any())).thenAnswer(invocation -> {
+            TesseractEnginePool.EngineCallback<?> callback = invocation.getArgument(1);
+            return callback.doWithEngine(engine);
+        });
+    }
+
+    private static int stripTop(BufferedImage strip) {
+        return -strip.getRaster().getSampleModelTranslateY();
+    }
+
+    private static BufferedImage createPage(int width, int height, int... textRows) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(Color.BLACK);
+        for (int row : textRows) {
+            graphics.fillRect(10, row, width - 20, 10);
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    @Test
+    public void givenBlankRowsNearCuts_whenSplit_thenCutAtBlankRowsWithoutOverlap() {
+        BufferedImage image = createPage(100, 400, 95, 110, 195, 210, 295, 310);
+
+        List<Rectangle> strips = StripRecognizer.split(image, 4, 20);
+
+        Assertions.assertEquals(4, strips.size());
+        Assertions.assertEquals(0, strips.get(0).y);
+        for (int i = 1; i < strips.size(); i++) {
+            Rectangle previous = strips.get(i - 1);
+            Assertions.assertEquals(previous.y + previous.height, strips.get(i).y);
+        }
+        Assertions.assertEquals(400, strips.get(3).y + strips.get(3).height);
+        Assertions.assertEquals(105, strips.get(1).y);
+    }
+
+    @Test
+    public void givenTextAcrossCut_whenSplit_thenOverlapStrips() {
+        BufferedImage image = createPage(100, 200);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.BLACK);
+        graphics.fillRect(10, 50, 80, 100);
+        graphics.dispose();
+
+        List<Rectangle> strips = StripRecognizer.split(image, 2, 20);
+
+        Assertions.assertEquals(new Rectangle(0, 0, 100, 120), strips.get(0));
+        Assertions.assertEquals(new Rectangle(0, 80, 100, 120), strips.get(1));
+    }
+
+    @Test
+    public void givenRepeatedLinesInOverlap_whenMerge_thenDropThemFromNextStrip() {
+        String merged = StripRecognizer.merge(List.of(
+                "It was the best of\ntimes, it was the worst\n",
+                "times, it was the worst\nof times, it was the age\n",
+                "\n",
+                "of wisdom\n"), List.of(
+                new Rectangle(0, 0, 100, 120),
+                new Rectangle(0, 80, 100, 120),
+                new Rectangle(0, 200, 100, 100),
+                new Rectangle(0, 300, 100, 100)));
+
+        Assertions.assertEquals("It was the best of\ntimes, it was the worst\nof times, it was the age\nof wisdom\n", merged);
+    }
+
+    @Test
+    public void givenRepeatedLinesAtCleanCut_whenMerge_thenKeepThem() {
+        String merged = StripRecognizer.merge(List.of(
+                "Subtotal\nTotal\n",
+                "Total\nSignature\n"), List.of(
+                new Rectangle(0, 0, 100, 100),
+                new Rectangle(0, 100, 100, 100)));
+
+        Assertions.assertEquals("Subtotal\nTotal\nTotal\nSignature\n", merged);
+    }
+
+    @Test
+    public void givenRepeatedLinesBeyondOverlap_whenMerge_thenDropOnlyLinesInOverlap() {
+        String upper = "a\nb\nc\nd\ne\nf\ng\nh\ni\nj\n";
+
+        // Ten lines in 500 rows and 40 shared rows allow one line in the overlap and one cut in half
+        String merged = StripRecognizer.merge(List.of(upper, "i\nj\nk\n"), List.of(
+                new Rectangle(0, 0, 100, 500),
+                new Rectangle(0, 460, 100, 500)));
+        String repeated = StripRecognizer.merge(List.of(upper, "h\ni\nj\nk\n"), List.of(
+                new Rectangle(0, 0, 100, 500),
+                new Rectangle(0, 460, 100, 500)));
+
+        Assertions.assertEquals("a\nb\nc\nd\ne\nf\ng\nh\ni\nj\nk\n", merged);
+        Assertions.assertEquals(upper + "h\ni\nj\nk\n", repeated);
+    }
+
+    @Test
+    public void givenSmallImage_whenRecognize_thenRecognizeWholeImage() throws TesseractException {
+        StripRecognizer stripRecognizer = new StripRecognizer(enginePools, new OCRExecutor(4, 4, meterRegistry), nativeMemoryBudget, true, 1, 100, 20, meterRegistry);
+
+        Assertions.assertEquals("whole page\n", stripRecognizer.recognize(createPage(100, 150), ENGINE_CONFIG));
+        Assertions.assertEquals(0.0, meterRegistry.get("ocr.tiles.images").counter().count());
+    }
+
+    @Test
+    public void givenLargeImage_whenRecognize_thenRecognizeStripsInParallel() throws TesseractException {
+        StripRecognizer stripRecognizer = new StripRecognizer(enginePools, new OCRExecutor(4, 4, meterRegistry), nativeMemoryBudget, true, 0, 100, 20, meterRegistry);
+
+        String text = stripRecognizer.recognize(createPage(100, 400, 50, 150, 250, 350), ENGINE_CONFIG);
+
+        Assertions.assertEquals(4, text.lines().count());
+        Assertions.assertTrue(text.startsWith("strip at 0\n"));
+        Assertions.assertTrue(threads.size() > 1);
+        Assertions.assertEquals(1.0, meterRegistry.get("ocr.tiles.images").counter().count());
+        Assertions.assertEquals(4.0, meterRegistry.get("ocr.tiles.strips").counter().count());
+    }
+
+    @Test
+    public void givenLargeImage_whenRecognize_thenReserveNativeMemoryPerStrip() throws TesseractException {
+        StripRecognizer stripRecognizer = new StripRecognizer(enginePools, new OCRExecutor(4, 4, meterRegistry), nativeMemoryBudget, true, 0, 100, 20, meterRegistry);
+        BufferedImage page = createPage(100, 400, 50, 150, 250, 350);
+
+        stripRecognizer.recognize(page, ENGINE_CONFIG);
+
+        Assertions.assertFalse(reservedDuringRecognition.isEmpty());
+        Assertions.assertTrue(reservedDuringRecognition.stream().allMatch(reserved -> reserved > 0 && reserved < nativeMemoryBudget.estimate(page, 4)));
+        Assertions.assertEquals(0, nativeMemoryBudget.getReserved());
+    }
+
+    @Test
+    public void givenFailingStrip_whenRecognize_thenThrowTesseractException() throws TesseractException {
+        doThrow(new TesseractException("Error processing the image")).when(enginePools).execute(any(), any());
+        StripRecognizer stripRecognizer = new StripRecognizer(enginePools, new OCRExecutor(4, 4, meterRegistry), nativeMemoryBudget, true, 0, 100, 20, meterRegistry);
+
+        Assertions.assertThrows(TesseractException.class, () -> stripRecognizer.recognize(createPage(100, 400), ENGINE_CONFIG));
+    }
+
+    @Test
+    public void givenTimedOutStrip_whenRecognize_thenThrowTimeoutWithMergedPartialText() throws TesseractException {
+        TesseractEngine engine = mock(TesseractEngine.class);
+        when(engine.recognize(any(), isNull(), any())).thenAnswer(invocation -> {
+            int top = stripTop(invocation.getArgument(0));
+            if (top > 0) {
+                throw new OCRTimeoutException("partial at " + top + "\n");
+            }
+            return "strip at 0\n";
+        });
+        doAnswer(invocation -> {
+            TesseractEnginePool.EngineCallback<?> callback = invocation.getArgument(1);
+            return callback.doWithEngine(engine);
+        }).when(enginePools).execute(any(), any());
+        StripRecognizer stripRecognizer = new StripRecognizer(enginePools, new OCRExecutor(4, 4, meterRegistry), nativeMemoryBudget, true, 0, 200, 0, meterRegistry);
+
+        OCRTimeoutException exception = Assertions.assertThrows(OCRTimeoutException.class,
+                () -> stripRecognizer.recognize(createPage(100, 400, 50, 250), ENGINE_CONFIG, Deadline.after(Duration.ofSeconds(1))));
+
+        Assertions.assertEquals("strip at 0\npartial at 200\n", exception.getPartialText());
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.kapia.ocr;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.kapia.imaging.ImagePreprocessor;
+import com.kapia.imaging.PreprocessedImage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+public class TestStructuredResultWriter {
+
+    private static byte[] writePage(StructuredFormat format) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (StructuredResultWriter writer = new StructuredResultWriter(format.createGenerator(output))) {
+            writer.startBlock(new Rectangle(10, 10, 200, 60), 90f);
+            writer.startLine(new Rectangle(10, 10, 200, 20), 91f);
+            writer.word("It", new Rectangle(10, 10, 20, 20), 95.5f);
+            writer.word("was", new Rectangle(40, 10, 40, 20), 88f);
+            writer.startLine(new Rectangle(10, 40, 200, 20), 92f);
+            writer.word("the", new Rectangle(10, 40, 40, 20), 93f);
+            writer.startBlock(new Rectangle(10, 100, 200, 20), 80f);
+            writer.startLine(new Rectangle(10, 100, 200, 20), 80f);
+            writer.word("best", new Rectangle(10, 100, 50, 20), 80f);
+            writer.finish("It was\nthe\n\nbest\n");
+        }
+        return output.toByteArray();
+    }
+
+    @Test
+    public void givenBlocksLinesAndWords_whenFinish_thenWriteNestedJson() throws IOException {
+        JsonNode page = new ObjectMapper().readTree(writePage(StructuredFormat.JSON));
+
+        Assertions.assertEquals("It was\nthe\n\nbest\n", page.get("text").asText());
+        Assertions.assertEquals(2, page.get("blocks").size());
+        JsonNode firstBlock = page.get("blocks").get(0);
+        Assertions.assertEquals(2, firstBlock.get("lines").size());
+        JsonNode firstWord = firstBlock.get("lines").get(0).get("words").get(0);
+        Assertions.assertEquals("It", firstWord.get("text").asText());
+        Assertions.assertEquals(10, firstWord.get("x").asInt());
+        Assertions.assertEquals(20, firstWord.get("width").asInt());
+        Assertions.assertEquals(95.5, firstWord.get("confidence").asDouble(), 0.001);
+        Assertions.assertEquals("best", page.get("blocks").get(1).get("lines").get(0).get("words").get(0).get("text").asText());
+    }
+
+    @Test
+    public void givenCborFormat_whenFinish_thenWriteSameDocument() throws IOException {
+        JsonNode json = new ObjectMapper().readTree(writePage(StructuredFormat.JSON));
+        JsonNode cbor = new ObjectMapper(new CBORFactory()).readTree(writePage(StructuredFormat.CBOR));
+
+        Assertions.assertEquals(json.toString(), cbor.toString());
+    }
+
+    @Test
+    public void givenWordWithoutLine_whenFinish_thenOpenLineAndBlock() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (StructuredResultWriter writer = new StructuredResultWriter(StructuredFormat.JSON.createGenerator(output))) {
+            writer.word("alone", new Rectangle(0, 0, 10, 10), 50f);
+            writer.finish("alone\n");
+        }
+
+        JsonNode page = new ObjectMapper().readTree(output.toByteArray());
+        Assertions.assertEquals("alone", page.get("blocks").get(0).get("lines").get(0).get("words").get(0).get("text").asText());
+    }
+
+    @Test
+    public void givenImageScaledByDpiStage_whenFinish_thenWriteBoxesInUploadCoordinates() throws IOException {
+        ImagePreprocessor imagePreprocessor = new ImagePreprocessor("", 100, 5, 31, new SimpleMeterRegistry());
+        PreprocessedImage preprocessed = imagePreprocessor.processWithTransform(new BufferedImage(100, 160, BufferedImage.TYPE_BYTE_GRAY), imagePreprocessor.pipeline("dpi"));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (StructuredResultWriter writer = new StructuredResultWriter(StructuredFormat.JSON.createGenerator(output), preprocessed.toSource())) {
+            writer.word("scaled", new Rectangle(20, 40, 60, 20), 90f);
+            writer.finish("scaled\n");
+        }
+
+        JsonNode word = new ObjectMapper().readTree(output.toByteArray()).get("blocks").get(0).get("lines").get(0).get("words").get(0);
+        Assertions.assertEquals(320, preprocessed.image().getHeight());
+        Assertions.assertEquals(10, word.get("x").asInt());
+        Assertions.assertEquals(20, word.get("y").asInt());
+        Assertions.assertEquals(30, word.get("width").asInt());
+        Assertions.assertEquals(10, word.get("height").asInt());
+    }
+
+    @Test
+    public void givenEmptyPage_whenFinish_thenWriteNoBlocks() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (StructuredResultWriter writer = new StructuredResultWriter(StructuredFormat.JSON.createGenerator(output))) {
+            writer.finish("");
+        }
+
+        Assertions.assertEquals("{\"blocks\":[],\"text\":\"\"}", output.toString());
+    }
+
+}
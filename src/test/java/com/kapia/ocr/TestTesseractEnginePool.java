@@ -0,0 +1,161 @@
+package com.kapia.ocr;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.sourceforge.tess4j.TesseractException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.Mockito.*;
+
+public class TestTesseractEnginePool {
+
+    private static final EngineConfig ENGINE_CONFIG = new EngineConfig("tessdata", EngineConfig.DEFAULT_LANGUAGE);
+
+    private MeterRegistry meterRegistry;
+    private AtomicInteger createdEngines;
+
+    @BeforeEach
+    public void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        createdEngines = new AtomicInteger();
+    }
+
+    private TesseractEnginePool createPool(int size) {
+        return new TesseractEnginePool(ENGINE_CONFIG, size, Duration.ofMillis(100), meterRegistry, config -> {
+            createdEngines.incrementAndGet();
+            TesseractEngine engine = mock(TesseractEngine.class);
+            when(engine.isHealthy()).thenReturn(true);
+            return engine;
+        });
+    }
+
+    @Test
+    public void givenReleasedEngine_whenBorrowAgain_thenReuseEngine() throws TesseractException {
+        TesseractEnginePool pool = createPool(2);
+
+        TesseractEngine first = pool.borrow();
+        pool.release(first);
+        TesseractEngine second = pool.borrow();
+
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals(1, createdEngines.get());
+        Assertions.assertEquals(1, pool.getBorrowedCount());
+        Assertions.assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void givenExhaustedPool_whenBorrow_thenThrowAfterTimeout() throws TesseractException {
+        TesseractEnginePool pool = createPool(1);
+
+        pool.borrow();
+
+        Assertions.assertThrows(TesseractException.class, pool::borrow);
+        Assertions.assertEquals(1, createdEngines.get());
+    }
+
+    @Test
+    public void givenFailingCallback_whenExecute_thenEvictEngine() throws TesseractException {
+        TesseractEnginePool pool = createPool(1);
+
+        Assertions.assertThrows(TesseractException.class, () -> pool.execute(engine -> {
+            throw new TesseractException("Error processing the image");
+        }));
+
+        Assertions.assertEquals(0, pool.getBorrowedCount());
+        Assertions.assertEquals(0, pool.getIdleCount());
+        Assertions.assertEquals(1.0, meterRegistry.get("ocr.pool.evictions").counter().count());
+
+        Assertions.assertEquals("text", pool.execute(engine -> "text"));
+        Assertions.assertEquals(2, createdEngines.get());
+    }
+
+    @Test
+    public void givenTimedOutCallback_whenExecute_thenReleaseEngine() throws TesseractException {
+        TesseractEnginePool pool = createPool(1);
+
+        Assertions.assertThrows(OCRTimeoutException.class, () -> pool.execute(engine -> {
+            throw new OCRTimeoutException("partial");
+        }));
+
+        Assertions.assertEquals(0, pool.getBorrowedCount());
+        Assertions.assertEquals(1, pool.getIdleCount());
+        Assertions.assertEquals(0.0, meterRegistry.get("ocr.pool.evictions").counter().count());
+        Assertions.assertEquals(1, createdEngines.get());
+    }
+
+    @Test
+    public void givenVirtualThread_whenExecute_thenRefuseToRunTesseract() throws Exception {
+        TesseractEnginePool pool = createPool(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread.ofVirtual().start(() -> {
+            try {
+                pool.execute(engine -> "text");
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        }).join();
+
+        Assertions.assertInstanceOf(IllegalStateException.class, failure.get());
+        Assertions.assertEquals(0, createdEngines.get());
+    }
+
+    @Test
+    public void givenEmptyPool_whenPrestart_thenOpenEveryEngine() throws TesseractException {
+        TesseractEnginePool pool = createPool(3);
+
+        Assertions.assertEquals(3, pool.prestart());
+
+        Assertions.assertEquals(3, createdEngines.get());
+        Assertions.assertEquals(3, pool.getIdleCount());
+        Assertions.assertEquals(0, pool.getBorrowedCount());
+    }
+
+    @Test
+    public void givenUnhealthyIdleEngine_whenBorrow_thenCreateNewEngine() throws TesseractException {
+        TesseractEnginePool pool = createPool(1);
+
+        TesseractEngine engine = pool.borrow();
+        pool.release(engine);
+        when(engine.isHealthy()).thenReturn(false);
+
+        TesseractEngine replacement = pool.borrow();
+
+        Assertions.assertNotSame(engine, replacement);
+        verify(engine, times(1)).close();
+    }
+
+    @Test
+    public void givenBorrowedEngine_whenReadMetrics_thenReportBorrowedAndIdle() throws TesseractException {
+        TesseractEnginePool pool = createPool(2);
+
+        TesseractEngine first = pool.borrow();
+        TesseractEngine second = pool.borrow();
+        pool.release(second);
+
+        Assertions.assertEquals(1.0, meterRegistry.get("ocr.pool.borrowed").gauge().value());
+        Assertions.assertEquals(1.0, meterRegistry.get("ocr.pool.idle").gauge().value());
+        Assertions.assertEquals(2, meterRegistry.get("ocr.pool.wait").timer().count());
+
+        pool.release(first);
+    }
+
+    @Test
+    public void givenSecondPoolOfSameConfiguration_whenClosed_thenKeepMetersOfFirstPool() {
+        TesseractEnginePool first = createPool(1);
+        TesseractEnginePool second = createPool(1);
+
+        second.close();
+
+        Assertions.assertNotNull(meterRegistry.find("ocr.pool.borrowed").tag("pool", ENGINE_CONFIG.poolName()).gauge());
+        first.close();
+        Assertions.assertNull(meterRegistry.find("ocr.pool.borrowed").tag("pool", ENGINE_CONFIG.poolName()).gauge());
+    }
+
+}
@@ -0,0 +1,174 @@
+package com.kapia.ocr;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.sourceforge.tess4j.TesseractException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+public class TestTesseractEnginePoolRegistry {
+
+    private static final int MODEL_SIZE = 1024;
+
+    @TempDir
+    private Path tessdata;
+
+    private MeterRegistry meterRegistry;
+    private List<TesseractEngine> createdEngines;
+
+    @BeforeEach
+    public void init() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        createdEngines = new ArrayList<>();
+        for (String model : List.of("eng", "deu", "fra", "spa")) {
+            Files.write(tessdata.resolve(model + ".traineddata"), new byte[MODEL_SIZE]);
+        }
+    }
+
+    private TesseractEnginePoolRegistry createRegistry(int maxPools, long memoryBudgetInBytes) {
+        TesseractEnginePool.EngineFactory engineFactory = config -> {
+            TesseractEngine engine = mock(TesseractEngine.class);
+            when(engine.isHealthy()).thenReturn(true);
+            createdEngines.add(engine);
+            return engine;
+        };
+        EngineConfig defaultConfig = new EngineConfig(tessdata.toString(), EngineConfig.DEFAULT_LANGUAGE);
+        TesseractEnginePool defaultPool = new TesseractEnginePool(defaultConfig, 1, Duration.ofMillis(100), meterRegistry, engineFactory);
+        return new TesseractEnginePoolRegistry(defaultPool, 1, Duration.ofMillis(100), maxPools, memoryBudgetInBytes, meterRegistry, engineFactory);
+    }
+
+    @Test
+    public void givenNoLanguage_whenResolveConfig_thenReturnDefaultConfig() {
+        TesseractEnginePoolRegistry registry = createRegistry(2, Long.MAX_VALUE);
+
+        Assertions.assertSame(registry.getDefaultConfig(), registry.resolveConfig(null));
+        Assertions.assertSame(registry.getDefaultConfig(), registry.resolveConfig(""));
+        Assertions.assertSame(registry.getDefaultConfig(), registry.resolveConfig("eng"));
+        Assertions.assertEquals(List.of("eng", "deu"), registry.resolveConfig("eng+deu").models());
+    }
+
+    @Test
+    public void givenMissingOrMalformedLanguage_whenResolveConfig_thenThrowInvalidLanguageException() {
+        TesseractEnginePoolRegistry registry = createRegistry(2, Long.MAX_VALUE);
+
+        Assertions.assertThrows(InvalidLanguageException.class, () -> registry.resolveConfig("eng+jpn"));
+        Assertions.assertThrows(InvalidLanguageException.class, () -> registry.resolveConfig("../eng"));
+        Assertions.assertThrows(InvalidLanguageException.class, () -> registry.resolveConfig("eng+"));
+    }
+
+    @Test
+    public void givenLanguageUsedTwice_whenExecute_thenCreatePoolOnce() throws TesseractException {
+        TesseractEnginePoolRegistry registry = createRegistry(2, Long.MAX_VALUE);
+        EngineConfig config = registry.resolveConfig("eng+deu");
+
+        registry.execute(config, engine -> "first");
+        registry.execute(config, engine -> "second");
+
+        Assertions.assertEquals(1, createdEngines.size());
+        Assertions.assertEquals(1, registry.getLoadedPoolCount());
+        Assertions.assertEquals(2 * MODEL_SIZE, registry.getEstimatedMemory());
+        Assertions.assertEquals(1.0, meterRegistry.get("ocr.languages.requests").tag("result", "cold").counter().count());
+        Assertions.assertEquals(1.0, meterRegistry.get("ocr.languages.requests").tag("result", "hit").counter().count());
+        Assertions.assertEquals(1, meterRegistry.get("ocr.languages.load").tag("language", "eng+deu").timer().count());
+    }
+
+    @Test
+    public void givenTooManyPools_whenExecute_thenUnloadLeastRecentlyUsed() throws TesseractException {
+        TesseractEnginePoolRegistry registry = createRegistry(2, Long.MAX_VALUE);
+        EngineConfig deu = registry.resolveConfig("deu");
+        EngineConfig fra = registry.resolveConfig("fra");
+        EngineConfig spa = registry.resolveConfig("spa");
+
+        registry.execute(deu, engine -> "deu");
+        registry.execute(fra, engine -> "fra");
+        registry.execute(deu, engine -> "deu");
+        registry.execute(spa, engine -> "spa");
+
+        Assertions.assertEquals(2, registry.getLoadedPoolCount());
+        verify(createdEngines.get(1), times(1)).close();
+        verify(createdEngines.get(0), never()).close();
+        Assertions.assertEquals(1.0, meterRegistry.get("ocr.languages.unloads").counter().count());
+    }
+
+    @Test
+    public void givenMemoryBudgetExceeded_whenExecute_thenUnloadPoolAfterUse() throws TesseractException {
+        TesseractEnginePoolRegistry registry = createRegistry(8, MODEL_SIZE);
+        EngineConfig config = registry.resolveConfig("deu+fra");
+
+        Assertions.assertEquals("text", registry.execute(config, engine -> {
+            Assertions.assertEquals(1, registry.getLoadedPoolCount());
+            return "text";
+        }));
+
+        Assertions.assertEquals(0, registry.getLoadedPoolCount());
+        Assertions.assertEquals(0, registry.getEstimatedMemory());
+        verify(createdEngines.get(0), times(1)).close();
+    }
+
+    @Test
+    public void givenPinnedProfile_whenExecute_thenUsePreloadedEngine() throws TesseractException {
+        TesseractEnginePoolRegistry registry = createRegistry(0, 0);
+        EngineConfig profile = new EngineConfig(tessdata.toString(), "eng", 7, EngineConfig.DEFAULT_OCR_ENGINE_MODE, "0123456789");
+
+        registry.pin(profile);
+        Assertions.assertEquals(1, createdEngines.size());
+
+        Assertions.assertEquals("text", registry.execute(profile, engine -> "text"));
+        Assertions.assertEquals(1, createdEngines.size());
+        Assertions.assertEquals(0, registry.getLoadedPoolCount());
+        Assertions.assertEquals(profile.withLanguage("eng+deu"), registry.resolveConfig(profile, "eng+deu"));
+    }
+
+    @Test
+    public void givenProfileOfDefaultLanguage_whenPin_thenReportItsOwnPoolMetrics() throws TesseractException {
+        TesseractEnginePoolRegistry registry = createRegistry(0, 0);
+        EngineConfig profile = new EngineConfig(tessdata.toString(), "eng", 7, EngineConfig.DEFAULT_OCR_ENGINE_MODE, "0123456789");
+
+        registry.pin(profile);
+
+        Assertions.assertNotEquals(registry.getDefaultConfig().poolName(), profile.poolName());
+        Assertions.assertEquals(1.0, meterRegistry.get("ocr.pool.idle").tag("pool", profile.poolName()).gauge().value());
+        Assertions.assertEquals(0.0, meterRegistry.get("ocr.pool.idle").tag("pool", registry.getDefaultConfig().poolName()).gauge().value());
+    }
+
+    @Test
+    public void givenLanguagePoolOfDefaultLanguage_whenUnloaded_thenKeepMetersOfDefaultPool() throws TesseractException {
+        TesseractEnginePoolRegistry registry = createRegistry(0, 0);
+        EngineConfig profile = new EngineConfig(tessdata.toString(), "deu", 7, EngineConfig.DEFAULT_OCR_ENGINE_MODE, "");
+        EngineConfig profileInEnglish = registry.resolveConfig(profile, "eng");
+        String defaultPool = registry.getDefaultConfig().poolName();
+
+        registry.execute(profileInEnglish, engine -> "text");
+
+        Assertions.assertEquals(0, registry.getLoadedPoolCount());
+        Assertions.assertNull(meterRegistry.find("ocr.pool.idle").tag("pool", profileInEnglish.poolName()).gauge());
+        Assertions.assertNotNull(meterRegistry.find("ocr.pool.idle").tag("pool", defaultPool).gauge());
+        Assertions.assertNotNull(meterRegistry.find("ocr.pool.borrowed").tag("pool", defaultPool).gauge());
+        Assertions.assertNotNull(meterRegistry.find("ocr.pool.wait").tag("pool", defaultPool).timer());
+        Assertions.assertNotNull(meterRegistry.find("ocr.pool.evictions").tag("pool", defaultPool).counter());
+    }
+
+    @Test
+    public void givenDefaultLanguage_whenExecute_thenNeverUnloadDefaultPool() throws TesseractException {
+        TesseractEnginePoolRegistry registry = createRegistry(0, 0);
+
+        registry.execute(registry.getDefaultConfig(), engine -> "text");
+        registry.execute(registry.getDefaultConfig(), engine -> "text");
+
+        Assertions.assertEquals(1, createdEngines.size());
+        Assertions.assertEquals(0, registry.getLoadedPoolCount());
+        verify(createdEngines.get(0), never()).close();
+    }
+
+}
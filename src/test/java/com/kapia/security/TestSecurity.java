@@ -46,6 +46,7 @@ public class TestSecurity {
     private final static String OPENAPI_ENDPOINT = "/v3/api-docs";
     private final static String SWAGGER_UI_ENDPOINT = "/swagger-ui.html";
     private final static String ACTUATOR_ENDPOINT = "/actuator";
+    private final static String READINESS_ENDPOINT = "/actuator/health/readiness";
 
     private final String VALID_USERNAME = "username";
     private final String VALID_PASSWORD = "password";
@@ -202,4 +203,13 @@ public class TestSecurity {
                 .andExpect(status().isUnauthorized());
 
     }
+
+    @Test
+    @WithAnonymousUser
+    public void givenReadinessRequestWithNoAuthorisation_whenGetReadiness_thenReturnsReadiness() throws Exception {
+
+        mockMvc.perform(request(HttpMethod.GET, READINESS_ENDPOINT))
+                .andExpect(status().isOk());
+
+    }
 }
@@ -0,0 +1,110 @@
+package com.kapia.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+public class TestDirectBufferPool {
+
+    private static final int MAX_SIZE = 1024 * 1024;
+
+    private MeterRegistry meterRegistry;
+    private DirectBufferPool bufferPool;
+
+    @BeforeEach
+    public void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        bufferPool = new DirectBufferPool(DataSize.ofBytes(MAX_SIZE), DataSize.ofBytes(2 * MAX_SIZE), meterRegistry);
+    }
+
+    @Test
+    public void givenUpload_whenRead_thenReturnDirectBufferWithContent() throws IOException {
+
+        byte[] upload = {1, 2, 3, 4, 5};
+
+        try (PooledBuffer pooledBuffer = bufferPool.read(new ByteArrayInputStream(upload), upload.length)) {
+            ByteBuffer buffer = pooledBuffer.buffer();
+            byte[] content = new byte[buffer.remaining()];
+            buffer.duplicate().get(content);
+
+            Assertions.assertTrue(buffer.isDirect());
+            Assertions.assertArrayEquals(upload, content);
+        }
+
+    }
+
+    @Test
+    public void givenReleasedBuffer_whenReadAgain_thenReuseBuffer() throws IOException {
+
+        ByteBuffer first;
+        try (PooledBuffer pooledBuffer = bufferPool.read(new ByteArrayInputStream(new byte[1000]), 1000)) {
+            first = pooledBuffer.buffer();
+        }
+        Assertions.assertEquals(DirectBufferPool.MIN_SIZE_CLASS, bufferPool.getPooledBytes());
+
+        try (PooledBuffer pooledBuffer = bufferPool.read(new ByteArrayInputStream(new byte[2000]), 2000)) {
+            Assertions.assertSame(first, pooledBuffer.buffer());
+            Assertions.assertEquals(2000, pooledBuffer.buffer().remaining());
+        }
+
+        Assertions.assertEquals(1.0, meterRegistry.get("ocr.upload.buffers.allocations").counter().count());
+        Assertions.assertEquals(1.0, meterRegistry.get("ocr.upload.buffers.reuses").counter().count());
+
+    }
+
+    @Test
+    public void givenUploadLargerThanExpected_whenRead_thenGrowBuffer() throws IOException {
+
+        byte[] upload = new byte[3 * DirectBufferPool.MIN_SIZE_CLASS];
+        upload[upload.length - 1] = 7;
+
+        try (PooledBuffer pooledBuffer = bufferPool.read(new ByteArrayInputStream(upload), 10)) {
+            Assertions.assertEquals(upload.length, pooledBuffer.buffer().remaining());
+            Assertions.assertEquals(7, pooledBuffer.buffer().get(upload.length - 1));
+        }
+
+    }
+
+    @Test
+    public void givenUploadLargerThanLargestSizeClass_whenRelease_thenDoNotPoolBuffer() throws IOException {
+
+        int size = 2 * MAX_SIZE;
+
+        try (PooledBuffer pooledBuffer = bufferPool.read(new ByteArrayInputStream(new byte[size]), size)) {
+            Assertions.assertEquals(size, pooledBuffer.buffer().remaining());
+        }
+
+        Assertions.assertEquals(0, bufferPool.getPooledBytes());
+
+    }
+
+    @Test
+    public void givenBufferedImage_whenReadWithImageIO_thenDecodeWithoutCopy() throws IOException {
+
+        File file = new File("src/test/resources/sample_text_png.png");
+        BufferedImage expected = ImageIO.read(file);
+
+        try (InputStream inputStream = new FileInputStream(file);
+             PooledBuffer pooledBuffer = bufferPool.read(inputStream, file.length())) {
+            BufferedImage decoded = ImageIO.read(new ByteBufferImageInputStream(pooledBuffer.buffer()));
+
+            Assertions.assertEquals(expected.getWidth(), decoded.getWidth());
+            Assertions.assertEquals(expected.getHeight(), decoded.getHeight());
+            Assertions.assertEquals(expected.getRGB(10, 10), decoded.getRGB(10, 10));
+        }
+
+    }
+
+}